@@ -20,6 +20,7 @@
 
 package org.xwiki.contrib.bookversions;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -375,6 +376,16 @@ public interface BookVersionsManager
     DocumentReference getVersionedCollectionReference(DocumentReference documentReference)
         throws XWikiException, QueryException;
 
+    /**
+     * Get the versioned collection (book or library) references of several pages at once.
+     *
+     * @param documentReferences the pages from which to take the collection references
+     * @return the versioned collection reference of each page, or null for the pages not part of a collection
+     * @throws QueryException If any exception occurs while querying the database.
+     */
+    Map<DocumentReference, DocumentReference> getVersionedCollectionReferences(
+        Collection<DocumentReference> documentReferences) throws QueryException;
+
     /**
      * Query pages under a given document, having a given class, ordered by descending creation date.
      *
@@ -669,6 +680,26 @@ public interface BookVersionsManager
      */
     String publish(DocumentReference configurationReference) throws JobException;
 
+    /**
+     * Continue an interrupted publication from its last checkpoint.
+     *
+     * @param configurationReference the configuration reference
+     * @return the publication job's ID
+     * @throws JobException if an error occurs while manipulating the publication job
+     * @since 1.31
+     */
+    String resumePublication(DocumentReference configurationReference) throws JobException;
+
+    /**
+     * Check if an interrupted publication of the provided configuration can be resumed.
+     *
+     * @param configurationReference the configuration reference
+     * @return true if a checkpoint of the publication exists
+     * @throws XWikiException if an error occurs while checking the checkpoint existence
+     * @since 1.31
+     */
+    boolean hasPublicationCheckpoint(DocumentReference configurationReference) throws XWikiException;
+
     /**
      * Load the configuration for the publication saved in a document.
      *
@@ -705,6 +736,20 @@ public interface BookVersionsManager
     void publishInternal(DocumentReference configurationReference, DocumentReference userReference, Locale userLocale)
         throws XWikiException, QueryException, ComponentLookupException, ParseException;
 
+    /**
+     * Execute the publication process with the provided configuration, or continue it from its last checkpoint.
+     *
+     * @param configurationReference The configuration reference
+     * @param userReference the user executing the job
+     * @param userLocale the user's locale
+     * @param resume true to skip the pages already processed by the interrupted publication
+     * @throws XWikiException could occur if loadPublicationConfiguration has an issue
+     * @throws QueryException If any exception occurs while querying the database.
+     * @since 1.31
+     */
+    void publishInternal(DocumentReference configurationReference, DocumentReference userReference, Locale userLocale,
+        boolean resume) throws XWikiException, QueryException, ComponentLookupException, ParseException;
+
     /**
      * Execute the removal of the given version content process.
      *
@@ -0,0 +1,224 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.stability.Unstable;
+
+/**
+ * The context of the transformation of the content of a page at publication time, shared by all the
+ * {@link PublicationTransformationStage}s.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+@Unstable
+public class PublicationTransformationContext
+{
+    private final DocumentReference publicationSourceReference;
+
+    private final DocumentReference originalDocumentReference;
+
+    private final String syntaxId;
+
+    private final Map<String, Object> configuration;
+
+    private final Map<String, Map<DocumentReference, DocumentReference>> publishedLibraries;
+
+    private final Locale userLocale;
+
+    private final Set<DocumentReference> includedLibraryPages;
+
+    private final Map<String, Object> publicationProperties;
+
+    private final Map<String, Object> properties;
+
+    private boolean changed;
+
+    /**
+     * @param publicationSourceReference the source in the publication configuration
+     * @param originalDocumentReference the page from which the content is taken
+     * @param syntaxId the syntax of the content
+     * @param configuration the publication configuration, as loaded by
+     *     {@link BookVersionsManager#loadPublicationConfiguration(DocumentReference)}
+     * @param publishedLibraries the published libraries used in the book, by version name
+     * @param userLocale the locale of the user publishing
+     * @param publicationProperties the values shared by all the pages of the publication, which may be published in
+     *     parallel, {@code null} to only share them between the contents of this page
+     */
+    public PublicationTransformationContext(DocumentReference publicationSourceReference,
+        DocumentReference originalDocumentReference, String syntaxId, Map<String, Object> configuration,
+        Map<String, Map<DocumentReference, DocumentReference>> publishedLibraries, Locale userLocale,
+        Map<String, Object> publicationProperties)
+    {
+        this.publicationSourceReference = publicationSourceReference;
+        this.originalDocumentReference = originalDocumentReference;
+        this.syntaxId = syntaxId;
+        this.configuration = configuration;
+        this.publishedLibraries = publishedLibraries;
+        this.userLocale = userLocale;
+        this.includedLibraryPages = new HashSet<>();
+        this.publicationProperties = publicationProperties != null ? publicationProperties : new HashMap<>();
+        this.properties = new HashMap<>();
+    }
+
+    private PublicationTransformationContext(PublicationTransformationContext parent)
+    {
+        this.publicationSourceReference = parent.publicationSourceReference;
+        this.originalDocumentReference = parent.originalDocumentReference;
+        this.syntaxId = parent.syntaxId;
+        this.configuration = parent.configuration;
+        this.publishedLibraries = parent.publishedLibraries;
+        this.userLocale = parent.userLocale;
+        this.includedLibraryPages = parent.includedLibraryPages;
+        this.publicationProperties = parent.publicationProperties;
+        this.properties = parent.properties;
+    }
+
+    /**
+     * @return a context to transform a content nested in the current one, like the content of a macro, which reports
+     *     its own changes
+     */
+    public PublicationTransformationContext createNestedContext()
+    {
+        return new PublicationTransformationContext(this);
+    }
+
+    /**
+     * @return the source in the publication configuration
+     */
+    public DocumentReference getPublicationSourceReference()
+    {
+        return this.publicationSourceReference;
+    }
+
+    /**
+     * @return the page from which the content is taken
+     */
+    public DocumentReference getOriginalDocumentReference()
+    {
+        return this.originalDocumentReference;
+    }
+
+    /**
+     * @return the syntax of the content
+     */
+    public String getSyntaxId()
+    {
+        return this.syntaxId;
+    }
+
+    /**
+     * @return the publication configuration
+     */
+    public Map<String, Object> getConfiguration()
+    {
+        return this.configuration;
+    }
+
+    /**
+     * @return the published libraries used in the book, by version name, {@code null} if the published collection is
+     *     not a book
+     */
+    public Map<String, Map<DocumentReference, DocumentReference>> getPublishedLibraries()
+    {
+        return this.publishedLibraries;
+    }
+
+    /**
+     * @return the locale of the user publishing
+     */
+    public Locale getUserLocale()
+    {
+        return this.userLocale;
+    }
+
+    /**
+     * @return the library pages included by the content, filled by the stages transforming the library macros
+     */
+    public Set<DocumentReference> getIncludedLibraryPages()
+    {
+        return this.includedLibraryPages;
+    }
+
+    /**
+     * @param name the name of the property
+     * @return the value a stage stored for the whole page, {@code null} if none
+     */
+    public Object getProperty(String name)
+    {
+        return this.properties.get(name);
+    }
+
+    /**
+     * Store a value for the whole page, so that a stage computes it once instead of for each block.
+     *
+     * @param name the name of the property
+     * @param value the value of the property
+     */
+    public void setProperty(String name, Object value)
+    {
+        this.properties.put(name, value);
+    }
+
+    /**
+     * @param name the name of the property
+     * @return the value a stage stored for the whole publication, {@code null} if none
+     */
+    public Object getPublicationProperty(String name)
+    {
+        return this.publicationProperties.get(name);
+    }
+
+    /**
+     * Store a value for the whole publication, so that a stage computes it once instead of for each page. The pages
+     * can be published in parallel, so the same value may be computed by several pages at the same time, and a stored
+     * value has to be safe to use from several threads.
+     *
+     * @param name the name of the property
+     * @param value the value of the property
+     */
+    public void setPublicationProperty(String name, Object value)
+    {
+        this.publicationProperties.put(name, value);
+    }
+
+    /**
+     * Report that the content was modified.
+     */
+    public void setChanged()
+    {
+        this.changed = true;
+    }
+
+    /**
+     * @return true if the content was modified
+     */
+    public boolean isChanged()
+    {
+        return this.changed;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions;
+
+import org.xwiki.component.annotation.Role;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.query.QueryException;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.stability.Unstable;
+
+import com.xpn.xwiki.XWikiException;
+
+/**
+ * A transformation applied to the content of the pages at publication time. The content is walked once, and each
+ * block is handed to all the stages, ordered by priority, before walking its children.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+@Role
+@Unstable
+public interface PublicationTransformationStage
+{
+    /**
+     * @return the priority of the stage, the stages with the lowest priority are applied first
+     */
+    int getPriority();
+
+    /**
+     * Transform a block of the published content. A stage replacing or removing the block has to do it in the parent
+     * of the block. A stage modifying the block itself has to report it with
+     * {@link PublicationTransformationContext#setChanged()}.
+     *
+     * @param block the block to transform
+     * @param context the context of the transformation
+     * @return the block to hand to the next stages and to walk the children of: the given block, the block replacing
+     *     it, or {@code null} if the block was removed
+     * @throws XWikiException In case a document needed by the transformation can't be loaded.
+     * @throws QueryException In case a query needed by the transformation fails.
+     * @throws ComponentLookupException In case a component needed by the transformation can't be found.
+     * @throws ParseException In case a nested content can't be parsed.
+     */
+    Block transform(Block block, PublicationTransformationContext context)
+        throws XWikiException, QueryException, ComponentLookupException, ParseException;
+}
@@ -34,26 +34,20 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLookupException;
-import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.contrib.bookversions.BookVersionsManager;
+import org.xwiki.contrib.bookversions.internal.cache.MacroReferenceParametersCache;
 import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.AttachmentReference;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.EntityReference;
 import org.xwiki.model.reference.EntityReferenceResolver;
 import org.xwiki.model.reference.EntityReferenceSerializer;
-import org.xwiki.model.reference.EntityReferenceString;
 import org.xwiki.model.reference.SpaceReference;
-import org.xwiki.rendering.block.Block;
 import org.xwiki.rendering.block.ImageBlock;
 import org.xwiki.rendering.block.LinkBlock;
 import org.xwiki.rendering.block.MacroBlock;
-import org.xwiki.rendering.block.XDOM;
-import org.xwiki.rendering.block.match.ClassBlockMatcher;
 import org.xwiki.rendering.listener.reference.ResourceReference;
 import org.xwiki.rendering.listener.reference.ResourceType;
-import org.xwiki.rendering.macro.Macro;
-import org.xwiki.rendering.macro.descriptor.ParameterDescriptor;
 
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
@@ -98,7 +92,7 @@ public class BookPublicationReferencesTransformationHelper
     private EntityReferenceSerializer<String> entityReferenceSerializer;
 
     @Inject
-    private ComponentManager rootComponentManager;
+    private MacroReferenceParametersCache macroReferenceParametersCache;
 
     @Inject
     private Provider<BookVersionsManager> bookVersionsManagerProvider;
@@ -107,25 +101,22 @@ public class BookPublicationReferencesTransformationHelper
     private Provider<XWikiContext> contextProvider;
 
     /**
-     * Transform the provided XDOM to update any wiki references stored in its content to point to published spaces.
+     * Compute the mapping between the master spaces and the published spaces: the published space and the spaces of
+     * the published libraries.
      *
-     * @param sourceCollectionReference the reference of the source collection (master)
      * @param publicationSourceReference the source in the publication configuration
-     * @param xdom the xdom to transform
-     * @param originalReference the reference of the document containing this xdom
      * @param publishedLibraries a map of the published libraries
      * @param publicationConfiguration the publication configuration
-     * @return true if the xdom has been modified
+     * @return the mapping between master spaces and published spaces, {@code null} if the configuration has no source
      */
-    public boolean transform(DocumentReference sourceCollectionReference, DocumentReference publicationSourceReference,
-        XDOM xdom, DocumentReference originalReference, Map<DocumentReference, DocumentReference> publishedLibraries,
-        Map<String, Object> publicationConfiguration) throws XWikiException
+    public Map<SpaceReference, SpaceReference> getSpaceReferencesMap(DocumentReference publicationSourceReference,
+        Map<DocumentReference, DocumentReference> publishedLibraries, Map<String, Object> publicationConfiguration)
     {
         // Extract information about the master spaces and the publication space
         DocumentReference sourceDocumentReference = (DocumentReference) publicationConfiguration
             .get(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_SOURCE);
         if (sourceDocumentReference == null) {
-            return false;
+            return null;
         }
 
         SpaceReference sourceSpaceReference = (sourceDocumentReference).getLastSpaceReference();
@@ -137,7 +128,7 @@ public class BookPublicationReferencesTransformationHelper
             }
         } catch (XWikiException e) {
             // Should never happen
-            logger.error("Failed to check if the source page [{}] is versioned.", originalReference, e);
+            logger.error("Failed to check if the source page [{}] is versioned.", publicationSourceReference, e);
         }
         // Extract the target space reference
         SpaceReference targetSpaceReference = (SpaceReference) publicationConfiguration
@@ -145,28 +136,51 @@ public class BookPublicationReferencesTransformationHelper
 
         // Build the space references map
         Map<SpaceReference, SpaceReference> spaceReferencesMap = new HashMap<>();
-        Map<SpaceReference, SpaceReference> collectionReferencesMap = new HashMap<>();
         // Add the published space
         spaceReferencesMap.put(sourceSpaceReference, targetSpaceReference);
+
+        if (publishedLibraries != null) {
+            for (Map.Entry<DocumentReference, DocumentReference> entry : publishedLibraries.entrySet()) {
+                if (entry.getValue() != null) {
+                    spaceReferencesMap.put(entry.getKey().getLastSpaceReference(),
+                        entry.getValue().getLastSpaceReference());
+                }
+            }
+        }
+
+        return spaceReferencesMap;
+    }
+
+    /**
+     * Compute the mapping between the master collection space and its published location.
+     *
+     * @param sourceCollectionReference the reference of the source collection (master)
+     * @param publicationConfiguration the publication configuration
+     * @return the mapping between the master collection space and the published collection space
+     */
+    public Map<SpaceReference, SpaceReference> getCollectionReferencesMap(DocumentReference sourceCollectionReference,
+        Map<String, Object> publicationConfiguration)
+    {
+        DocumentReference sourceDocumentReference = (DocumentReference) publicationConfiguration
+            .get(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_SOURCE);
+        SpaceReference targetSpaceReference = (SpaceReference) publicationConfiguration
+            .get(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_DESTINATIONSPACE);
+
+        Map<SpaceReference, SpaceReference> collectionReferencesMap = new HashMap<>();
         // Add the master space reference
         // Build the master reference on the target location of the collection by removing the pages from the target,
         // based on how many pages should be removed from the source
         // Ex : is source is Master.A.B and target is Publish.Me.Here.A.B
         // Then A.B (two pages) must be removed => the target location of the collection is Publish.Me.Here
-        SpaceReference sourceCollectionSpaceReference = sourceCollectionReference.getLastSpaceReference();
-        if (!sourceCollectionReference.equals(sourceDocumentReference) && sourceCollectionReference != null) {
+        if (sourceCollectionReference != null && sourceDocumentReference != null
+            && !sourceCollectionReference.equals(sourceDocumentReference))
+        {
+            SpaceReference sourceCollectionSpaceReference = sourceCollectionReference.getLastSpaceReference();
             collectionReferencesMap.put(sourceCollectionSpaceReference, getPublishCollectionReference(
                 sourceDocumentReference, targetSpaceReference, sourceCollectionSpaceReference));
         }
 
-        for (Map.Entry<DocumentReference, DocumentReference> entry : publishedLibraries.entrySet()) {
-            if (entry.getValue() != null) {
-                spaceReferencesMap.put(entry.getKey().getLastSpaceReference(),
-                    entry.getValue().getLastSpaceReference());
-            }
-        }
-
-        return transform(xdom, originalReference, spaceReferencesMap, collectionReferencesMap);
+        return collectionReferencesMap;
     }
 
     private SpaceReference getPublishCollectionReference(DocumentReference sourceSpaceReference,
@@ -201,148 +215,149 @@ public class BookPublicationReferencesTransformationHelper
     }
 
     /**
-     * Transform the provided XDOM to update any wiki references stored in its content to point to published spaces.
+     * Update the reference of a link to point to the published spaces. The link block is replaced in its parent when
+     * its reference changes.
      *
-     * @param xdom the xdom to transform
-     * @param originalReference the page containing this xdom
-     * @param spaceReferencesMap a mapping between master spaces and published spaces
-     * @param collectionReferencesMap a mapping between master collection reference and published collection reference
-     * @return true if the xdom has been modified
+     * @param linkBlock the link to transform
+     * @param originalReference the page containing this link
+     * @param spaceReferences a mapping between master spaces and published spaces
+     * @param collectionReferences a mapping between master collection reference and published collection reference
+     * @param equivalentReferences the equivalent references computed so far with the same mappings, completed by
+     *     this call
+     * @return the block replacing the link, or the link itself if it has not been modified
      */
-    public boolean transform(XDOM xdom, DocumentReference originalReference,
-        Map<SpaceReference, SpaceReference> spaceReferencesMap,
-        Map<SpaceReference, SpaceReference> collectionReferencesMap)
+    public LinkBlock transformLinkBlock(LinkBlock linkBlock, DocumentReference originalReference,
+        SpaceReferenceTrie spaceReferences,
+        SpaceReferenceTrie collectionReferences,
+        Map<DocumentReference, DocumentReference> equivalentReferences)
     {
-        boolean hasXDOMChanged = false;
-
-        // Handle the transformation of links
-        hasXDOMChanged |= transformLinkBlocks(xdom, originalReference, spaceReferencesMap, collectionReferencesMap);
-
-        // Handle the transformation of images
-        hasXDOMChanged |= transformImageBlocks(xdom, originalReference, spaceReferencesMap, collectionReferencesMap);
-
-        // We assume that transformation of macro content is already handled through calls in #transformXDOM.
-        // Here we only care about updating the macro parameters which are declared as document references
-        for (Block block : xdom.getBlocks(new ClassBlockMatcher(MacroBlock.class), Block.Axes.DESCENDANT_OR_SELF)) {
-            MacroBlock macroBlock = (MacroBlock) block;
-
-            // Try to load the macro definition
-            try {
-                ComponentManager componentManager = findComponentManager();
-                if (componentManager.hasComponent(Macro.class, macroBlock.getId())) {
-                    Macro macro = componentManager.getInstance(Macro.class, macroBlock.getId());
-                    Map<String, ParameterDescriptor> parameterDescriptors =
-                        macro.getDescriptor().getParameterDescriptorMap();
+        ResourceType resourceType = linkBlock.getReference().getType();
+        if (linkBlock.getReference().getReference().isEmpty()) {
+            // Link to same page shouldn't be transformed
+            return linkBlock;
+        }
 
-                    hasXDOMChanged |= transformMacroBlock(macroBlock, parameterDescriptors, originalReference,
-                        spaceReferencesMap, collectionReferencesMap);
+        ResourceReference equivalentResourceReference = null;
+        if (SUPPORTED_DOCUMENT_RESOURCES.contains(resourceType)) {
+            equivalentResourceReference = getEquivalentDocumentResourceReference(linkBlock.getReference(),
+                originalReference, spaceReferences, collectionReferences, equivalentReferences);
+        } else if (SUPPORTED_ATTACHMENT_RESOURCES.contains(resourceType)) {
+            equivalentResourceReference = getEquivalentAttachmentResourceReference(linkBlock.getReference(),
+                originalReference, spaceReferences, collectionReferences, equivalentReferences);
+        }
 
-                    if (macroBlock.getId().equals(DOCUMENTTREE_MACRO_ID)) {
-                        // The Include Sibling macro is a special case
-                        hasXDOMChanged |= transformDocumentTreeMacroBlock(macroBlock, DOCUMENTTREE_PARAM_ROOT,
-                            parameterDescriptors, originalReference, spaceReferencesMap, collectionReferencesMap);
-                    }
-                }
-            } catch (ComponentLookupException e) {
-                // Should never happen
-                logger.error("Failed to lookup macro definition for [{}]", macroBlock.getId(), e);
-            }
+        if (equivalentResourceReference == null) {
+            return linkBlock;
         }
 
-        return hasXDOMChanged;
+        equivalentResourceReference.setParameters(linkBlock.getReference().getParameters());
+        LinkBlock newLinkBlock =
+            new LinkBlock(linkBlock.getChildren(), equivalentResourceReference, linkBlock.isFreeStandingURI());
+        linkBlock.getParent().replaceChild(newLinkBlock, linkBlock);
+
+        return newLinkBlock;
     }
 
-    private boolean transformLinkBlocks(XDOM xdom, DocumentReference originalReference,
-        Map<SpaceReference, SpaceReference> spaceReferencesMap,
-        Map<SpaceReference, SpaceReference> collectionReferencesMap)
+    /**
+     * Update the reference of an image to point to the published spaces. The image block is replaced in its parent
+     * when its reference changes.
+     *
+     * @param imageBlock the image to transform
+     * @param originalReference the page containing this image
+     * @param spaceReferences a mapping between master spaces and published spaces
+     * @param collectionReferences a mapping between master collection reference and published collection reference
+     * @param equivalentReferences the equivalent references computed so far with the same mappings, completed by
+     *     this call
+     * @return the block replacing the image, or the image itself if it has not been modified
+     */
+    public ImageBlock transformImageBlock(ImageBlock imageBlock, DocumentReference originalReference,
+        SpaceReferenceTrie spaceReferences,
+        SpaceReferenceTrie collectionReferences,
+        Map<DocumentReference, DocumentReference> equivalentReferences)
     {
-        boolean hasXDOMChanged = false;
+        if (!SUPPORTED_ATTACHMENT_RESOURCES.contains(imageBlock.getReference().getType())) {
+            return imageBlock;
+        }
 
-        for (Block block : xdom.getBlocks(new ClassBlockMatcher(LinkBlock.class), Block.Axes.DESCENDANT_OR_SELF)) {
-            LinkBlock linkBlock = (LinkBlock) block;
-            ResourceType resourceType = linkBlock.getReference().getType();
-            if (linkBlock.getReference().getReference().isEmpty()) {
-                // Link to same page shouldn't be transformed
-                continue;
-            }
-            if (SUPPORTED_DOCUMENT_RESOURCES.contains(resourceType)) {
-                ResourceReference equivalentResourceReference = getEquivalentDocumentResourceReference(
-                    linkBlock.getReference(), originalReference, spaceReferencesMap, collectionReferencesMap);
-
-                if (equivalentResourceReference != null) {
-                    equivalentResourceReference.setParameters(linkBlock.getReference().getParameters());
-                    LinkBlock newLinkBlock = new LinkBlock(linkBlock.getChildren(), equivalentResourceReference,
-                        linkBlock.isFreeStandingURI());
-                    linkBlock.getParent().replaceChild(newLinkBlock, linkBlock);
-                    hasXDOMChanged = true;
-                }
-            } else if (SUPPORTED_ATTACHMENT_RESOURCES.contains(resourceType)) {
-                ResourceReference equivalentResourceReference = getEquivalentAttachmentResourceReference(
-                    linkBlock.getReference(), originalReference, spaceReferencesMap, collectionReferencesMap);
-
-                if (equivalentResourceReference != null) {
-                    equivalentResourceReference.setParameters(linkBlock.getReference().getParameters());
-                    LinkBlock newLinkBlock = new LinkBlock(linkBlock.getChildren(), equivalentResourceReference,
-                        linkBlock.isFreeStandingURI());
-                    linkBlock.getParent().replaceChild(newLinkBlock, linkBlock);
-                    hasXDOMChanged = true;
-                }
-            }
+        ResourceReference equivalentResourceReference = getEquivalentAttachmentResourceReference(
+            imageBlock.getReference(), originalReference, spaceReferences, collectionReferences,
+            equivalentReferences);
+        if (equivalentResourceReference == null) {
+            return imageBlock;
         }
 
-        return hasXDOMChanged;
+        ImageBlock newImageBlock =
+            new ImageBlock(equivalentResourceReference, imageBlock.isFreeStandingURI(), imageBlock.getParameters());
+        imageBlock.getParent().replaceChild(newImageBlock, imageBlock);
+
+        return newImageBlock;
     }
 
-    private boolean transformImageBlocks(XDOM xdom, DocumentReference originalReference,
-        Map<SpaceReference, SpaceReference> spaceReferencesMap,
-        Map<SpaceReference, SpaceReference> collectionReferencesMap)
+    /**
+     * Update the macro parameters which are declared as references to point to the published spaces. The macro block
+     * is modified in place.
+     *
+     * @param macroBlock the macro to transform
+     * @param originalReference the page containing this macro
+     * @param spaceReferences a mapping between master spaces and published spaces
+     * @param collectionReferences a mapping between master collection reference and published collection reference
+     * @param equivalentReferences the equivalent references computed so far with the same mappings, completed by
+     *     this call
+     * @return true if the macro has been modified
+     */
+    public boolean transformMacroBlock(MacroBlock macroBlock, DocumentReference originalReference,
+        SpaceReferenceTrie spaceReferences,
+        SpaceReferenceTrie collectionReferences,
+        Map<DocumentReference, DocumentReference> equivalentReferences)
     {
-        boolean hasXDOMChanged = false;
-
-        for (Block block : xdom.getBlocks(new ClassBlockMatcher(ImageBlock.class), Block.Axes.DESCENDANT_OR_SELF)) {
-            ImageBlock imageBlock = (ImageBlock) block;
-            ResourceType resourceType = imageBlock.getReference().getType();
+        boolean hasMacroChanged = false;
 
-            if (SUPPORTED_ATTACHMENT_RESOURCES.contains(resourceType)) {
-                ResourceReference equivalentResourceReference = getEquivalentAttachmentResourceReference(
-                    imageBlock.getReference(), originalReference, spaceReferencesMap, collectionReferencesMap);
-
-                if (equivalentResourceReference != null) {
-                    ImageBlock newImageBlock = new ImageBlock(equivalentResourceReference,
-                        imageBlock.isFreeStandingURI(), imageBlock.getParameters());
-                    imageBlock.getParent().replaceChild(newImageBlock, imageBlock);
-                    hasXDOMChanged = true;
-                }
+        // Get the parameters holding references from the macro definition
+        try {
+            Map<String, EntityType> referenceParameters = macroReferenceParametersCache.get(macroBlock.getId());
+            if (!referenceParameters.isEmpty()) {
+                hasMacroChanged |= transformMacroParameters(macroBlock, referenceParameters, originalReference,
+                    spaceReferences, collectionReferences, equivalentReferences);
             }
+        } catch (ComponentLookupException e) {
+            // Should never happen
+            logger.error("Failed to lookup macro definition for [{}]", macroBlock.getId(), e);
         }
 
-        return hasXDOMChanged;
+        if (DOCUMENTTREE_MACRO_ID.equals(macroBlock.getId())) {
+            // The Include Sibling macro is a special case
+            hasMacroChanged |= transformDocumentTreeMacroBlock(macroBlock, DOCUMENTTREE_PARAM_ROOT, originalReference,
+                spaceReferences, collectionReferences, equivalentReferences);
+        }
+
+        return hasMacroChanged;
     }
 
-    private boolean transformMacroBlock(MacroBlock macroBlock, Map<String, ParameterDescriptor> parameterDescriptors,
-        DocumentReference originalReference, Map<SpaceReference, SpaceReference> spaceReferencesMap,
-        Map<SpaceReference, SpaceReference> collectionReferencesMap)
+    private boolean transformMacroParameters(MacroBlock macroBlock, Map<String, EntityType> referenceParameters,
+        DocumentReference originalReference,
+        SpaceReferenceTrie spaceReferences,
+        SpaceReferenceTrie collectionReferences,
+        Map<DocumentReference, DocumentReference> equivalentReferences)
     {
         boolean hasXDOMChanged = false;
 
-        for (Map.Entry<String, ParameterDescriptor> parameterDescriptorEntry : parameterDescriptors.entrySet()) {
-            String parameter = macroBlock.getParameter(parameterDescriptorEntry.getKey());
+        for (Map.Entry<String, EntityType> referenceParameter : referenceParameters.entrySet()) {
+            String parameter = macroBlock.getParameter(referenceParameter.getKey());
             if (parameter == null || StringUtils.isBlank(parameter)) {
                 continue;
             }
 
-            String equivalentReference = null;
-            if (DocumentReference.class.equals(parameterDescriptorEntry.getValue().getParameterType())
-                || EntityReferenceString.class.equals(parameterDescriptorEntry.getValue().getDisplayType())) {
-                equivalentReference = getEquivalentDocumentStringReference(parameter, originalReference,
-                    spaceReferencesMap, collectionReferencesMap);
-            } else if (AttachmentReference.class.equals(parameterDescriptorEntry.getValue().getParameterType())) {
+            String equivalentReference;
+            if (EntityType.ATTACHMENT.equals(referenceParameter.getValue())) {
                 equivalentReference = getEquivalentAttachmentStringReference(parameter, originalReference,
-                    spaceReferencesMap, collectionReferencesMap);
+                    spaceReferences, collectionReferences, equivalentReferences);
+            } else {
+                equivalentReference = getEquivalentDocumentStringReference(parameter, originalReference,
+                    spaceReferences, collectionReferences, equivalentReferences);
             }
 
             if (equivalentReference != null) {
-                macroBlock.setParameter(parameterDescriptorEntry.getKey(), equivalentReference);
+                macroBlock.setParameter(referenceParameter.getKey(), equivalentReference);
                 hasXDOMChanged = true;
             }
         }
@@ -351,9 +366,10 @@ public class BookPublicationReferencesTransformationHelper
     }
 
     private boolean transformDocumentTreeMacroBlock(MacroBlock macroBlock, String parameterName,
-        Map<String, ParameterDescriptor> parameterDescriptors, DocumentReference originalReference,
-        Map<SpaceReference, SpaceReference> spaceReferencesMap,
-        Map<SpaceReference, SpaceReference> collectionReferencesMap)
+        DocumentReference originalReference,
+        SpaceReferenceTrie spaceReferences,
+        SpaceReferenceTrie collectionReferences,
+        Map<DocumentReference, DocumentReference> equivalentReferences)
     {
         boolean hasXDOMChanged = false;
         String root = macroBlock.getParameter(parameterName);
@@ -374,7 +390,7 @@ public class BookPublicationReferencesTransformationHelper
 
         if (reference != null) {
             DocumentReference equivalentReference =
-                getEquivalentReference(reference, spaceReferencesMap, collectionReferencesMap);
+                getEquivalentReference(reference, spaceReferences, collectionReferences, equivalentReferences);
             String equivalentReferenceSerialized = this.convertToString(equivalentReference);
             if (equivalentReferenceSerialized != null && !root.equals(equivalentReferenceSerialized)) {
                 macroBlock.setParameter(parameterName, equivalentReferenceSerialized);
@@ -386,13 +402,14 @@ public class BookPublicationReferencesTransformationHelper
     }
 
     private String getEquivalentDocumentStringReference(String stringReference, DocumentReference originalReference,
-        Map<SpaceReference, SpaceReference> spaceReferencesMap,
-        Map<SpaceReference, SpaceReference> collectionReferencesMap)
+        SpaceReferenceTrie spaceReferences,
+        SpaceReferenceTrie collectionReferences,
+        Map<DocumentReference, DocumentReference> equivalentReferences)
     {
         DocumentReference reference = new DocumentReference(
             currentEntityReferenceResolver.resolve(stringReference, EntityType.DOCUMENT, originalReference));
         DocumentReference equivalentReference =
-            getEquivalentReference(reference, spaceReferencesMap, collectionReferencesMap);
+            getEquivalentReference(reference, spaceReferences, collectionReferences, equivalentReferences);
         if (!reference.equals(equivalentReference)) {
             // Update the link with the new reference
             return entityReferenceSerializer.serialize(equivalentReference);
@@ -402,14 +419,15 @@ public class BookPublicationReferencesTransformationHelper
     }
 
     private String getEquivalentAttachmentStringReference(String stringReference, DocumentReference originalReference,
-        Map<SpaceReference, SpaceReference> spaceReferencesMap,
-        Map<SpaceReference, SpaceReference> collectionReferencesMap)
+        SpaceReferenceTrie spaceReferences,
+        SpaceReferenceTrie collectionReferences,
+        Map<DocumentReference, DocumentReference> equivalentReferences)
     {
         AttachmentReference attachmentReference = new AttachmentReference(
             currentEntityReferenceResolver.resolve(stringReference, EntityType.ATTACHMENT, originalReference));
         DocumentReference reference = attachmentReference.getDocumentReference();
         DocumentReference equivalentReference =
-            getEquivalentReference(reference, spaceReferencesMap, collectionReferencesMap);
+            getEquivalentReference(reference, spaceReferences, collectionReferences, equivalentReferences);
         if (!reference.equals(equivalentReference)) {
             // Update the link with the new reference
             return entityReferenceSerializer
@@ -420,12 +438,13 @@ public class BookPublicationReferencesTransformationHelper
     }
 
     private ResourceReference getEquivalentDocumentResourceReference(ResourceReference resourceReference,
-        DocumentReference originalReference, Map<SpaceReference, SpaceReference> spaceReferencesMap,
-        Map<SpaceReference, SpaceReference> collectionReferencesMap)
+        DocumentReference originalReference, SpaceReferenceTrie spaceReferences,
+        SpaceReferenceTrie collectionReferences,
+        Map<DocumentReference, DocumentReference> equivalentReferences)
     {
         DocumentReference reference = convertDocumentResourceReference(resourceReference, originalReference);
         DocumentReference equivalentReference =
-            getEquivalentReference(reference, spaceReferencesMap, collectionReferencesMap);
+            getEquivalentReference(reference, spaceReferences, collectionReferences, equivalentReferences);
         if (!reference.equals(equivalentReference)) {
             // Update the link with the new reference
             return new ResourceReference(entityReferenceSerializer.serialize(equivalentReference),
@@ -436,12 +455,14 @@ public class BookPublicationReferencesTransformationHelper
     }
 
     private ResourceReference getEquivalentAttachmentResourceReference(ResourceReference resourceReference,
-        DocumentReference originalReference, Map<SpaceReference, SpaceReference> spaceReferencesMap,
-        Map<SpaceReference, SpaceReference> collectionReferencesMap)
+        DocumentReference originalReference, SpaceReferenceTrie spaceReferences,
+        SpaceReferenceTrie collectionReferences,
+        Map<DocumentReference, DocumentReference> equivalentReferences)
     {
         AttachmentReference reference = convertAttachmentResourceReference(resourceReference, originalReference);
         DocumentReference equivalentReference =
-            getEquivalentReference(reference.getDocumentReference(), spaceReferencesMap, collectionReferencesMap);
+            getEquivalentReference(reference.getDocumentReference(), spaceReferences, collectionReferences,
+                equivalentReferences);
 
         if (!reference.getDocumentReference().equals(equivalentReference)) {
             // Update the link with the new reference
@@ -487,55 +508,46 @@ public class BookPublicationReferencesTransformationHelper
     }
 
     /**
-     * Get the equivalent reference of the published location.
-     * 
+     * Get the equivalent reference of the published location, reusing the references computed with the same mappings.
+     * Looking for the root page of a reference loads its document, and the same pages are linked from many others.
+     *
      * @param reference the internal reference.
-     * @param spaceReferencesMap the map of references.
-     * @param collectionReferencesMap the collection reference.
+     * @param spaceReferences the mapping between master spaces and published spaces.
+     * @param collectionReferences the mapping between master collection and published collection.
+     * @param equivalentReferences the equivalent references computed so far with the same mappings, completed by
+     *     this call
      * @return the equivalent reference.
      */
-    public DocumentReference getEquivalentReference(DocumentReference reference,
-        Map<SpaceReference, SpaceReference> spaceReferencesMap,
-        Map<SpaceReference, SpaceReference> collectionReferencesMap)
+    public DocumentReference getEquivalentReference(DocumentReference reference, SpaceReferenceTrie spaceReferences,
+        SpaceReferenceTrie collectionReferences, Map<DocumentReference, DocumentReference> equivalentReferences)
     {
-        // If the page is versioned, we need to work with the root page that is the parent of this reference
-        DocumentReference targetReference = getRootPageReference(reference);
-
-        SpaceReference foundSpaceReference = getMatchingSpaceReference(targetReference, spaceReferencesMap);
-
-        if (foundSpaceReference != null) {
-            // The page will then be located within the newly published space. We need to re-compute its reference
-            // chain.
-            return targetReference.replaceParent(foundSpaceReference, spaceReferencesMap.get(foundSpaceReference));
-        } else {
-            // If the reference is in the same collection, replace the reference's parent with the publish location.
-            foundSpaceReference = getMatchingSpaceReference(targetReference, collectionReferencesMap);
-
-            // If no space reference is found, it means that we are in the case where the document reference actually
-            // points to a page outside any book or library involved in this publication. We then don't need to
-            // update it.
-            return foundSpaceReference != null
-                ? targetReference.replaceParent(foundSpaceReference, collectionReferencesMap.get(foundSpaceReference))
-                : targetReference;
+        DocumentReference equivalentReference = equivalentReferences.get(reference);
+        if (equivalentReference == null) {
+            equivalentReference = getEquivalentReference(reference, spaceReferences, collectionReferences);
+            equivalentReferences.put(reference, equivalentReference);
         }
+
+        return equivalentReference;
     }
 
-    private SpaceReference getMatchingSpaceReference(DocumentReference targetReference,
-        Map<SpaceReference, SpaceReference> spaceReferencesMap)
+    private DocumentReference getEquivalentReference(DocumentReference reference, SpaceReferenceTrie spaceReferences,
+        SpaceReferenceTrie collectionReferences)
     {
-        if (spaceReferencesMap.isEmpty()) {
-            return null;
-        }
+        // If the page is versioned, we need to work with the root page that is the parent of this reference
+        DocumentReference targetReference = getRootPageReference(reference);
 
-        SpaceReference spaceReference = null;
-        for (EntityReference entityReference : targetReference.getReversedReferenceChain()) {
-            if (EntityType.SPACE.equals(entityReference.getType()) && spaceReferencesMap.containsKey(entityReference)) {
-                spaceReference = (SpaceReference) entityReference;
-                break;
-            }
+        // The page will then be located within the newly published space. We need to re-compute its reference
+        // chain.
+        DocumentReference equivalentReference = spaceReferences.replaceMatchingSpace(targetReference);
+        if (equivalentReference == null) {
+            // If the reference is in the same collection, replace the reference's parent with the publish location.
+            equivalentReference = collectionReferences.replaceMatchingSpace(targetReference);
         }
 
-        return spaceReference;
+        // If no space reference is found, it means that we are in the case where the document reference actually
+        // points to a page outside any book or library involved in this publication. We then don't need to
+        // update it.
+        return equivalentReference != null ? equivalentReference : targetReference;
     }
 
     private DocumentReference getRootPageReference(DocumentReference reference)
@@ -614,11 +626,6 @@ public class BookPublicationReferencesTransformationHelper
         return StringUtils.uncapitalize(result.toString());
     }
 
-    private ComponentManager findComponentManager() throws ComponentLookupException
-    {
-        return this.rootComponentManager.getInstance(ComponentManager.class, "wiki");
-    }
-
     /**
      * Get the XWiki context.
      *
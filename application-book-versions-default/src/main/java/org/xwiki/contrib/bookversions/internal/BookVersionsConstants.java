@@ -134,6 +134,73 @@ public interface BookVersionsConstants
     EntityReference PUBLICATION_CLASS_REFERENCE =
         new EntityReference("PublicationClass", EntityType.DOCUMENT, BOOKVERSIONS_CODE_REFERENCE);
 
+    /**
+     * The reference of the class recording the sources a published page was built from.
+     */
+    EntityReference PUBLICATIONSOURCES_CLASS_REFERENCE =
+        new EntityReference("PublicationSourcesClass", EntityType.DOCUMENT, BOOKVERSIONS_CODE_REFERENCE);
+
+    /**
+     * The sources property of a publication sources object: one "reference version" line per source document.
+     */
+    String PUBLICATIONSOURCES_PROP_SOURCES = "sources";
+
+    /**
+     * The reference of the class holding the fingerprint of a published page.
+     */
+    EntityReference PUBLICATIONFINGERPRINT_CLASS_REFERENCE =
+        new EntityReference("PublicationFingerprintClass", EntityType.DOCUMENT, BOOKVERSIONS_CODE_REFERENCE);
+
+    /**
+     * The fingerprint property of a publication fingerprint object.
+     */
+    String PUBLICATIONFINGERPRINT_PROP_FINGERPRINT = "fingerprint";
+
+    /**
+     * The source property of a publication fingerprint object: the page the published page was copied from.
+     */
+    String PUBLICATIONFINGERPRINT_PROP_SOURCE = "source";
+
+    /**
+     * The reference of the class holding the progress of an interrupted publication.
+     */
+    EntityReference PUBLICATIONCHECKPOINT_CLASS_REFERENCE =
+        new EntityReference("PublicationCheckpointClass", EntityType.DOCUMENT, BOOKVERSIONS_CODE_REFERENCE);
+
+    /**
+     * The stamp property of a publication checkpoint: the state of the published documents when the publication
+     * started.
+     */
+    String PUBLICATIONCHECKPOINT_PROP_STAMP = "stamp";
+
+    /**
+     * The processed pages property of a publication checkpoint: one page reference per line.
+     */
+    String PUBLICATIONCHECKPOINT_PROP_PROCESSEDPAGES = "processedPages";
+
+    /**
+     * The deletion queue property of a publication checkpoint: one reference per line of the published pages still
+     * to remove.
+     */
+    String PUBLICATIONCHECKPOINT_PROP_DELETIONQUEUE = "deletionQueue";
+
+    /**
+     * The published pages property of a publication checkpoint: one reference per line of the published pages
+     * matching a source page, which are not orphans.
+     */
+    String PUBLICATIONCHECKPOINT_PROP_PUBLISHEDPAGES = "publishedPages";
+
+    /**
+     * The reference of the class recording the last trigger of a publication schedule claimed by a cluster node.
+     */
+    EntityReference PUBLICATIONSCHEDULECLAIM_CLASS_REFERENCE =
+        new EntityReference("PublicationScheduleClaimClass", EntityType.DOCUMENT, BOOKVERSIONS_CODE_REFERENCE);
+
+    /**
+     * The trigger property of a publication schedule claim: the epoch second of the last claimed trigger.
+     */
+    String PUBLICATIONSCHEDULECLAIM_PROP_TRIGGER = "trigger";
+
     /**
      * The data of a published collection class.
      */
@@ -161,6 +228,16 @@ public interface BookVersionsConstants
      */
     String PUBLISHED_BOOK_CLASS_SERIALIZED = "BookVersions.Code.PublishedBookClass";
 
+    /**
+     * The id of the version class.
+     */
+    String VERSION_CLASS_SERIALIZED = "BookVersions.Code.VersionClass";
+
+    /**
+     * The id of the variant class.
+     */
+    String VARIANT_CLASS_SERIALIZED = "BookVersions.Code.VariantClass";
+
     /**
      * The id of the libary class.
      */
@@ -266,11 +343,68 @@ public interface BookVersionsConstants
      */
     String PUBLICATIONCONFIGURATION_PROP_PUBLISHBEHAVIOUR_REPUBLISH = "republish";
 
+    /**
+     * The incremental value of publishBehaviour property.
+     */
+    String PUBLICATIONCONFIGURATION_PROP_PUBLISHBEHAVIOUR_INCREMENTAL = "incremental";
+
+    /**
+     * The sync value of publishBehaviour property: the existing published pages are updated, the missing ones created
+     * and the ones not published anymore removed.
+     */
+    String PUBLICATIONCONFIGURATION_PROP_PUBLISHBEHAVIOUR_SYNC = "sync";
+
     /**
      * The title property of a publication configuration.
      */
     String PUBLICATIONCONFIGURATION_PROP_TITLE = "title";
 
+    /**
+     * The parallelism property of a publication configuration: the number of pages published at the same time.
+     */
+    String PUBLICATIONCONFIGURATION_PROP_PARALLELISM = "parallelism";
+
+    /**
+     * The schedule property of a publication configuration: a cron expression or a time window of the automatic
+     * publications.
+     */
+    String PUBLICATIONCONFIGURATION_PROP_SCHEDULE = "schedule";
+
+    /**
+     * The skipRecycleBin property of a publication configuration: if the published pages removed by a publication
+     * are deleted without being copied to the recycle bin.
+     */
+    String PUBLICATIONCONFIGURATION_PROP_SKIPRECYCLEBIN = "skipRecycleBin";
+
+    /**
+     * The wiki configuration property giving the default parallelism of the publications.
+     */
+    String PUBLICATION_PARALLELISM_PROPERTY = "bookversions_publicationParallelism";
+
+    /**
+     * The wiki configuration property giving the number of published pages between two checkpoints of a
+     * publication.
+     */
+    String PUBLICATION_CHECKPOINT_INTERVAL_PROPERTY = "bookversions_publicationCheckpointInterval";
+
+    /**
+     * The wiki configuration property giving the number of scheduled publications which can run or wait at the same
+     * time.
+     */
+    String SCHEDULED_PUBLICATIONS_LIMIT_PROPERTY = "bookversions_scheduledPublicationsLimit";
+
+    /**
+     * The wiki configuration property giving the user the scheduled publications are done as. The scheduled
+     * publications are not started when it is not set.
+     */
+    String SCHEDULED_PUBLICATIONS_USER_PROPERTY = "bookversions_scheduledPublicationsUser";
+
+    /**
+     * The wiki configuration property giving the number of documents saved in a single store transaction by the
+     * publications and the bulk jobs.
+     */
+    String STORE_BATCH_SIZE_PROPERTY = "bookversions_storeBatchSize";
+
     /**
      * The unversioned property of a book page.
      */
@@ -438,7 +572,18 @@ public interface BookVersionsConstants
         BookVersionsConstants.BOOKPAGE_CLASS_REFERENCE,
         BookVersionsConstants.MARKEDDELETED_CLASS_REFERENCE,
         BookVersionsConstants.VARIANTLIST_CLASS_REFERENCE,
-        BookVersionsConstants.PUBLICATION_CLASS_REFERENCE
+        BookVersionsConstants.PUBLICATION_CLASS_REFERENCE,
+        BookVersionsConstants.PUBLICATIONSOURCES_CLASS_REFERENCE,
+        BookVersionsConstants.PUBLICATIONFINGERPRINT_CLASS_REFERENCE
+    );
+
+    /**
+     * The objects recording how a page was published, which are kept in the published page from one publication to
+     * the next.
+     */
+    List<EntityReference> PUBLICATION_BOOKKEEPING_OBJECTS = Arrays.asList(
+        BookVersionsConstants.PUBLICATIONSOURCES_CLASS_REFERENCE,
+        BookVersionsConstants.PUBLICATIONFINGERPRINT_CLASS_REFERENCE
     );
 
     /**
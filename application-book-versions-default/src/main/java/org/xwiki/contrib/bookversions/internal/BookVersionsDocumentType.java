@@ -0,0 +1,189 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The book versions types of a document, resolved at once by {@link BookVersionsTypeResolver}.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+public final class BookVersionsDocumentType
+{
+    /**
+     * The types a document can have, a document can have several of them (e.g. a versioned page marked as deleted).
+     */
+    public enum Type
+    {
+        /**
+         * The document is a book.
+         */
+        BOOK,
+
+        /**
+         * The document is a library.
+         */
+        LIBRARY,
+
+        /**
+         * The document is a book page.
+         */
+        PAGE,
+
+        /**
+         * The document is a versioned book page.
+         */
+        VERSIONED_PAGE,
+
+        /**
+         * The document is the content of a page for a version.
+         */
+        VERSIONED_CONTENT,
+
+        /**
+         * The document is a version.
+         */
+        VERSION,
+
+        /**
+         * The document is a variant.
+         */
+        VARIANT,
+
+        /**
+         * The document is the root of a published collection.
+         */
+        PUBLISHED_COLLECTION,
+
+        /**
+         * The document is marked as deleted.
+         */
+        MARKED_DELETED
+    }
+
+    /**
+     * The type of a document which is not part of the book versions model.
+     */
+    public static final BookVersionsDocumentType NONE = new BookVersionsDocumentType(Collections.emptySet());
+
+    private final Set<Type> types;
+
+    /**
+     * Constructor.
+     *
+     * @param types the types of the document
+     */
+    public BookVersionsDocumentType(Set<Type> types)
+    {
+        this.types = types.isEmpty() ? Collections.emptySet()
+            : Collections.unmodifiableSet(EnumSet.copyOf(types));
+    }
+
+    /**
+     * @param type the type to check
+     * @return true if the document has the given type
+     */
+    public boolean is(Type type)
+    {
+        return this.types.contains(type);
+    }
+
+    /**
+     * @return true if the document is a book
+     */
+    public boolean isBook()
+    {
+        return is(Type.BOOK);
+    }
+
+    /**
+     * @return true if the document is a library
+     */
+    public boolean isLibrary()
+    {
+        return is(Type.LIBRARY);
+    }
+
+    /**
+     * @return true if the document is a book page, versioned or not
+     */
+    public boolean isPage()
+    {
+        return is(Type.PAGE);
+    }
+
+    /**
+     * @return true if the document is a versioned book page
+     */
+    public boolean isVersionedPage()
+    {
+        return is(Type.VERSIONED_PAGE);
+    }
+
+    /**
+     * @return true if the document is the content of a page for a version
+     */
+    public boolean isVersionedContent()
+    {
+        return is(Type.VERSIONED_CONTENT);
+    }
+
+    /**
+     * @return true if the document is a version
+     */
+    public boolean isVersion()
+    {
+        return is(Type.VERSION);
+    }
+
+    /**
+     * @return true if the document is a variant
+     */
+    public boolean isVariant()
+    {
+        return is(Type.VARIANT);
+    }
+
+    /**
+     * @return true if the document is the root of a published collection
+     */
+    public boolean isPublishedCollection()
+    {
+        return is(Type.PUBLISHED_COLLECTION);
+    }
+
+    /**
+     * @return true if the document is marked as deleted
+     */
+    public boolean isMarkedDeleted()
+    {
+        return is(Type.MARKED_DELETED);
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.types.toString();
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.contrib.bookversions.internal.BookVersionsDocumentType.Type;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+
+/**
+ * Resolve all the book versions types of a document in one lookup. The types of the saved documents are cached until
+ * the document is modified or deleted.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+@Component(roles = BookVersionsTypeResolver.class)
+@Singleton
+public class BookVersionsTypeResolver implements Initializable, Disposable
+{
+    private static final String CACHE_ID = "bookversions.documentTypes";
+
+    private static final int CACHE_CAPACITY = 10000;
+
+    private static final int BULK_QUERY_SIZE = 1000;
+
+    private static final String NAMES = "names";
+
+    private static final Map<EntityReference, Type> CLASS_TYPES = Map.of(
+        BookVersionsConstants.BOOK_CLASS_REFERENCE, Type.BOOK,
+        BookVersionsConstants.LIBRARY_CLASS_REFERENCE, Type.LIBRARY,
+        BookVersionsConstants.BOOKPAGE_CLASS_REFERENCE, Type.PAGE,
+        BookVersionsConstants.BOOKVERSIONEDCONTENT_CLASS_REFERENCE, Type.VERSIONED_CONTENT,
+        BookVersionsConstants.VERSION_CLASS_REFERENCE, Type.VERSION,
+        BookVersionsConstants.VARIANT_CLASS_REFERENCE, Type.VARIANT,
+        BookVersionsConstants.PUBLISHEDCOLLECTION_CLASS_REFERENCE, Type.PUBLISHED_COLLECTION,
+        BookVersionsConstants.MARKEDDELETED_CLASS_REFERENCE, Type.MARKED_DELETED);
+
+    @Inject
+    private Provider<XWikiContext> contextProvider;
+
+    @Inject
+    private Provider<QueryManager> queryManagerProvider;
+
+    @Inject
+    private CacheManager cacheManager;
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    @Inject
+    @Named("local")
+    private EntityReferenceSerializer<String> localSerializer;
+
+    private Cache<BookVersionsDocumentType> cache;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            this.cache = this.cacheManager.createNewCache(new LRUCacheConfiguration(CACHE_ID, CACHE_CAPACITY));
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to create the document types cache.", e);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.cache.dispose();
+    }
+
+    /**
+     * @param documentReference the reference of the document
+     * @return the types of the saved document
+     * @throws XWikiException In case the document can't be loaded.
+     */
+    public BookVersionsDocumentType resolve(DocumentReference documentReference) throws XWikiException
+    {
+        if (documentReference == null) {
+            return BookVersionsDocumentType.NONE;
+        }
+
+        String key = this.serializer.serialize(documentReference);
+        BookVersionsDocumentType type = this.cache.get(key);
+        if (type == null) {
+            XWikiContext xcontext = this.contextProvider.get();
+            type = resolve(xcontext.getWiki().getDocument(documentReference, xcontext));
+            this.cache.set(key, type);
+        }
+
+        return type;
+    }
+
+    /**
+     * @param document the document, which can hold unsaved modifications
+     * @return the types of the document
+     */
+    public BookVersionsDocumentType resolve(XWikiDocument document)
+    {
+        if (document == null) {
+            return BookVersionsDocumentType.NONE;
+        }
+
+        Set<Type> types = EnumSet.noneOf(Type.class);
+        for (Entry<EntityReference, Type> classType : CLASS_TYPES.entrySet()) {
+            if (document.getXObject(classType.getKey()) != null) {
+                types.add(classType.getValue());
+            }
+        }
+        BaseObject pageObject = document.getXObject(BookVersionsConstants.BOOKPAGE_CLASS_REFERENCE);
+        if (pageObject != null && pageObject.getIntValue(BookVersionsConstants.BOOKPAGE_PROP_UNVERSIONED) != 1) {
+            types.add(Type.VERSIONED_PAGE);
+        }
+
+        return new BookVersionsDocumentType(types);
+    }
+
+    /**
+     * Resolve the types of several saved documents, querying the database only for the ones which are not cached.
+     *
+     * @param documentReferences the references of the documents
+     * @return the types of each document
+     * @throws QueryException If any exception occurs while querying the database.
+     */
+    public Map<DocumentReference, BookVersionsDocumentType> resolve(Collection<DocumentReference> documentReferences)
+        throws QueryException
+    {
+        Map<DocumentReference, BookVersionsDocumentType> result = new HashMap<>();
+        Map<WikiReference, Map<String, DocumentReference>> missingReferences = new HashMap<>();
+        for (DocumentReference documentReference : documentReferences) {
+            if (documentReference == null || result.containsKey(documentReference)) {
+                continue;
+            }
+            BookVersionsDocumentType type = this.cache.get(this.serializer.serialize(documentReference));
+            if (type != null) {
+                result.put(documentReference, type);
+            } else {
+                missingReferences.computeIfAbsent(documentReference.getWikiReference(), k -> new HashMap<>())
+                    .put(this.localSerializer.serialize(documentReference), documentReference);
+            }
+        }
+
+        for (Entry<WikiReference, Map<String, DocumentReference>> wikiEntry : missingReferences.entrySet()) {
+            List<String> names = new ArrayList<>(wikiEntry.getValue().keySet());
+            for (int i = 0; i < names.size(); i += BULK_QUERY_SIZE) {
+                List<String> chunk = names.subList(i, Math.min(i + BULK_QUERY_SIZE, names.size()));
+                Map<String, Set<Type>> chunkTypes = queryTypes(wikiEntry.getKey(), chunk);
+                for (String name : chunk) {
+                    DocumentReference documentReference = wikiEntry.getValue().get(name);
+                    Set<Type> types = chunkTypes.get(name);
+                    BookVersionsDocumentType type =
+                        types != null ? new BookVersionsDocumentType(types) : BookVersionsDocumentType.NONE;
+                    this.cache.set(this.serializer.serialize(documentReference), type);
+                    result.put(documentReference, type);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Remove the cached types of the given document.
+     *
+     * @param documentReference the reference of the document
+     */
+    public void invalidate(DocumentReference documentReference)
+    {
+        this.cache.remove(this.serializer.serialize(documentReference));
+    }
+
+    private Map<String, Set<Type>> queryTypes(WikiReference wikiReference, List<String> names)
+        throws QueryException
+    {
+        Map<String, Type> classNames = new HashMap<>();
+        for (Entry<EntityReference, Type> classType : CLASS_TYPES.entrySet()) {
+            classNames.put(this.localSerializer.serialize(classType.getKey()), classType.getValue());
+        }
+
+        Map<String, Set<Type>> types = new HashMap<>();
+        List<Object[]> classResults = this.queryManagerProvider.get()
+            .createQuery("select obj.name, obj.className from BaseObject as obj "
+                + "where obj.name in (:names) and obj.className in (:classes)", Query.HQL)
+            .bindValue(NAMES, names)
+            .bindValue("classes", new ArrayList<>(classNames.keySet()))
+            .setWiki(wikiReference.getName())
+            .execute();
+        for (Object[] row : classResults) {
+            types.computeIfAbsent((String) row[0], k -> EnumSet.noneOf(Type.class)).add(classNames.get(row[1]));
+        }
+
+        // The pages are versioned unless explicitly flagged as unversioned.
+        List<String> unversionedPages = this.queryManagerProvider.get()
+            .createQuery("select obj.name from BaseObject as obj, IntegerProperty as prop "
+                + "where obj.name in (:names) and obj.className = :class and prop.id.id = obj.id "
+                + "and prop.id.name = :property and prop.value = 1", Query.HQL)
+            .bindValue(NAMES, names)
+            .bindValue("class", this.localSerializer.serialize(BookVersionsConstants.BOOKPAGE_CLASS_REFERENCE))
+            .bindValue("property", BookVersionsConstants.BOOKPAGE_PROP_UNVERSIONED)
+            .setWiki(wikiReference.getName())
+            .execute();
+        Set<String> unversionedNames = new HashSet<>(unversionedPages);
+        for (Entry<String, Set<Type>> entry : types.entrySet()) {
+            if (entry.getValue().contains(Type.PAGE) && !unversionedNames.contains(entry.getKey())) {
+                entry.getValue().add(Type.VERSIONED_PAGE);
+            }
+        }
+
+        return types;
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xwiki.model.reference.DocumentReference;
+
+/**
+ * Immutable catalog of the versions and variants of a collection, ordered by descending creation date.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+public final class CollectionCatalog
+{
+    /**
+     * A version or a variant of the collection.
+     */
+    public static final class Entry
+    {
+        private final DocumentReference reference;
+
+        private final String fullName;
+
+        private final String name;
+
+        private final String title;
+
+        private final DocumentReference precedingVersion;
+
+        private final Date creationDate;
+
+        /**
+         * Constructor.
+         *
+         * @param reference the reference of the version or variant document
+         * @param fullName the local serialized reference of the document
+         * @param name the name of the version or variant
+         * @param title the title of the version or variant
+         * @param precedingVersion the preceding version, {@code null} for variants and root versions
+         * @param creationDate the creation date of the document
+         */
+        public Entry(DocumentReference reference, String fullName, String name, String title,
+            DocumentReference precedingVersion, Date creationDate)
+        {
+            this.reference = reference;
+            this.fullName = fullName;
+            this.name = name;
+            this.title = title;
+            this.precedingVersion = precedingVersion;
+            this.creationDate = creationDate;
+        }
+
+        /**
+         * @return the reference of the version or variant document
+         */
+        public DocumentReference getReference()
+        {
+            return this.reference;
+        }
+
+        /**
+         * @return the local serialized reference of the document
+         */
+        public String getFullName()
+        {
+            return this.fullName;
+        }
+
+        /**
+         * @return the name of the version or variant
+         */
+        public String getName()
+        {
+            return this.name;
+        }
+
+        /**
+         * @return the title of the version or variant
+         */
+        public String getTitle()
+        {
+            return this.title;
+        }
+
+        /**
+         * @return the preceding version, {@code null} for variants and root versions
+         */
+        public DocumentReference getPrecedingVersion()
+        {
+            return this.precedingVersion;
+        }
+
+        /**
+         * @return the creation date of the document
+         */
+        public Date getCreationDate()
+        {
+            return this.creationDate;
+        }
+    }
+
+    private final List<Entry> versions;
+
+    private final List<Entry> variants;
+
+    private final Map<DocumentReference, Entry> versionEntries = new HashMap<>();
+
+    private final Map<DocumentReference, Entry> variantEntries = new HashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param versions the versions of the collection, ordered by descending creation date
+     * @param variants the variants of the collection, ordered by descending creation date
+     */
+    public CollectionCatalog(List<Entry> versions, List<Entry> variants)
+    {
+        this.versions = Collections.unmodifiableList(new ArrayList<>(versions));
+        this.variants = Collections.unmodifiableList(new ArrayList<>(variants));
+        for (Entry entry : this.versions) {
+            this.versionEntries.put(entry.getReference(), entry);
+        }
+        for (Entry entry : this.variants) {
+            this.variantEntries.put(entry.getReference(), entry);
+        }
+    }
+
+    /**
+     * @return the versions of the collection, ordered by descending creation date
+     */
+    public List<Entry> getVersions()
+    {
+        return this.versions;
+    }
+
+    /**
+     * @return the variants of the collection, ordered by descending creation date
+     */
+    public List<Entry> getVariants()
+    {
+        return this.variants;
+    }
+
+    /**
+     * @param reference the reference of a document
+     * @return true if the document is a version of the collection
+     */
+    public boolean isVersion(DocumentReference reference)
+    {
+        return this.versionEntries.containsKey(reference);
+    }
+
+    /**
+     * @param reference the reference of a document
+     * @return true if the document is a variant of the collection
+     */
+    public boolean isVariant(DocumentReference reference)
+    {
+        return this.variantEntries.containsKey(reference);
+    }
+
+    /**
+     * @param entry the created or updated version
+     * @return a new catalog including the given version
+     */
+    public CollectionCatalog withVersion(Entry entry)
+    {
+        return new CollectionCatalog(with(this.versions, entry), without(this.variants, entry.getReference()));
+    }
+
+    /**
+     * @param entry the created or updated variant
+     * @return a new catalog including the given variant
+     */
+    public CollectionCatalog withVariant(Entry entry)
+    {
+        return new CollectionCatalog(without(this.versions, entry.getReference()), with(this.variants, entry));
+    }
+
+    /**
+     * @param reference the reference of the deleted version or variant
+     * @return a new catalog without the given version or variant
+     */
+    public CollectionCatalog without(DocumentReference reference)
+    {
+        return new CollectionCatalog(without(this.versions, reference), without(this.variants, reference));
+    }
+
+    private static List<Entry> with(List<Entry> entries, Entry entry)
+    {
+        List<Entry> result = without(entries, entry.getReference());
+        // Keep the descending creation date order.
+        int index = 0;
+        while (index < result.size() && entry.getCreationDate() != null
+            && result.get(index).getCreationDate() != null
+            && !result.get(index).getCreationDate().before(entry.getCreationDate()))
+        {
+            index++;
+        }
+        result.add(index, entry);
+
+        return result;
+    }
+
+    private static List<Entry> without(List<Entry> entries, DocumentReference reference)
+    {
+        List<Entry> result = new ArrayList<>(entries);
+        result.removeIf(entry -> entry.getReference().equals(reference));
+
+        return result;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xwiki.model.reference.EntityReference;
+
+/**
+ * Index of the versions having content, for each page of a collection. Each version name gets an ordinal, and each
+ * page (identified by the space holding its versioned content) gets a bit set of the versions it has content for.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+public class ContentPresenceIndex
+{
+    private final Map<String, Integer> versionOrdinals = new HashMap<>();
+
+    private final Map<EntityReference, BitSet> pageContents = new HashMap<>();
+
+    /**
+     * @param pageSpaceReference the reference of the space holding the versioned content of the page
+     * @param versionName the name of the version
+     * @return true if the page has content for the given version
+     */
+    public synchronized boolean hasContent(EntityReference pageSpaceReference, String versionName)
+    {
+        Integer ordinal = this.versionOrdinals.get(versionName);
+        BitSet contents = this.pageContents.get(pageSpaceReference);
+
+        return ordinal != null && contents != null && contents.get(ordinal);
+    }
+
+    /**
+     * @param pageSpaceReference the reference of the space holding the versioned content of the page
+     * @param versionNames the names of the versions to check, in order
+     * @return the name of the first given version the page has content for, {@code null} if none
+     */
+    public synchronized String getFirstVersionWithContent(EntityReference pageSpaceReference,
+        List<String> versionNames)
+    {
+        BitSet contents = this.pageContents.get(pageSpaceReference);
+        if (contents != null) {
+            for (String versionName : versionNames) {
+                Integer ordinal = this.versionOrdinals.get(versionName);
+                if (ordinal != null && contents.get(ordinal)) {
+                    return versionName;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param pageSpaceReference the reference of the space holding the versioned content of the page
+     * @param versionName the name of the version the page now has content for
+     */
+    public synchronized void add(EntityReference pageSpaceReference, String versionName)
+    {
+        int ordinal = this.versionOrdinals.computeIfAbsent(versionName, k -> this.versionOrdinals.size());
+        this.pageContents.computeIfAbsent(pageSpaceReference, k -> new BitSet()).set(ordinal);
+    }
+
+    /**
+     * @param pageSpaceReference the reference of the space holding the versioned content of the page
+     * @param versionName the name of the version the page doesn't have content for anymore
+     */
+    public synchronized void remove(EntityReference pageSpaceReference, String versionName)
+    {
+        Integer ordinal = this.versionOrdinals.get(versionName);
+        BitSet contents = this.pageContents.get(pageSpaceReference);
+        if (ordinal != null && contents != null) {
+            contents.clear(ordinal);
+            if (contents.isEmpty()) {
+                this.pageContents.remove(pageSpaceReference);
+            }
+        }
+    }
+}
@@ -20,19 +20,39 @@
 
 package org.xwiki.contrib.bookversions.internal;
 
-import java.io.StringReader;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -41,13 +61,25 @@ import javax.inject.Singleton;
 import javax.servlet.http.HttpSession;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextManager;
 import org.xwiki.contrib.bookversions.BookVersionsManager;
 import org.xwiki.contrib.bookversions.PageTranslationStatus;
+import org.xwiki.contrib.bookversions.PublicationTransformationContext;
 import org.xwiki.contrib.bookversions.internal.batch.LiveDataBatchRequest;
+import org.xwiki.contrib.bookversions.internal.cache.CollectionCatalogCache;
+import org.xwiki.contrib.bookversions.internal.cache.CollectionReferenceCache;
+import org.xwiki.contrib.bookversions.internal.cache.ContentPresenceIndexCache;
+import org.xwiki.contrib.bookversions.internal.cache.PublicationPlanCache;
+import org.xwiki.contrib.bookversions.internal.cache.VersionGraphCache;
+import org.xwiki.contrib.bookversions.internal.publication.PublicationTransformationPipeline;
 import org.xwiki.job.DefaultRequest;
 import org.xwiki.job.JobException;
 import org.xwiki.job.JobExecutor;
@@ -55,7 +87,10 @@ import org.xwiki.job.event.status.JobProgressManager;
 import org.xwiki.livedata.LiveDataConfiguration;
 import org.xwiki.localization.LocalizationManager;
 import org.xwiki.logging.LogLevel;
+import org.xwiki.logging.LogQueue;
+import org.xwiki.logging.LoggerManager;
 import org.xwiki.logging.event.LogEvent;
+import org.xwiki.logging.event.LogQueueListener;
 import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
@@ -65,6 +100,7 @@ import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.model.reference.LocalDocumentReference;
 import org.xwiki.model.reference.SpaceReference;
 import org.xwiki.model.reference.SpaceReferenceResolver;
+import org.xwiki.model.reference.WikiReference;
 import org.xwiki.model.validation.EntityNameValidation;
 import org.xwiki.query.Query;
 import org.xwiki.query.QueryException;
@@ -74,10 +110,6 @@ import org.xwiki.rendering.block.MacroBlock;
 import org.xwiki.rendering.block.XDOM;
 import org.xwiki.rendering.block.match.ClassBlockMatcher;
 import org.xwiki.rendering.parser.ParseException;
-import org.xwiki.rendering.parser.Parser;
-import org.xwiki.rendering.renderer.BlockRenderer;
-import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
-import org.xwiki.rendering.renderer.printer.WikiPrinter;
 import org.xwiki.user.UserReference;
 import org.xwiki.user.UserReferenceResolver;
 
@@ -103,6 +135,15 @@ public class DefaultBookVersionsManager implements BookVersionsManager
 {
     private static final ClassBlockMatcher MACRO_MATCHER = new ClassBlockMatcher(MacroBlock.class);
 
+    private static final int BULK_QUERY_SIZE = 1000;
+
+    private static final int QUERY_PAGE_SIZE = 500;
+
+
+    private static final String PUBLISHED_LIBRARIES_SOURCE = "publishedLibraries";
+
+    private static final String NO_SOURCE_VERSION = "0";
+
     @Inject
     private Provider<XWikiContext> contextProvider;
 
@@ -155,65 +196,106 @@ public class DefaultBookVersionsManager implements BookVersionsManager
     private Provider<ComponentManager> componentManagerProvider;
 
     @Inject
-    private BookPublicationReferencesTransformationHelper publicationReferencesTransformationHelper;
+    private PublicationTransformationPipeline publicationTransformationPipeline;
 
     @Inject
     private LocalizationManager localization;
 
+    @Inject
+    private CollectionReferenceCache collectionReferenceCache;
+
+    @Inject
+    private BookVersionsTypeResolver typeResolver;
+
+    @Inject
+    private SubspacesResolver subspacesResolver;
+
+    @Inject
+    private DocumentBatchWriter documentBatchWriter;
+
+    @Inject
+    private VersionGraphCache versionGraphCache;
+
+    @Inject
+    private ContentPresenceIndexCache contentPresenceIndexCache;
+
+    @Inject
+    private RequestResolutionCache requestResolutionCache;
+
+    @Inject
+    private CollectionCatalogCache collectionCatalogCache;
+
+    @Inject
+    private PageMetadataLoader pageMetadataLoader;
+
+    @Inject
+    private PublicationPlanCache publicationPlanCache;
+
+    @Inject
+    private PublicationCheckpointStore publicationCheckpointStore;
+
+    @Inject
+    private PublicationScheduler publicationScheduler;
+
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private ExecutionContextManager executionContextManager;
+
+    @Inject
+    private LoggerManager loggerManager;
+
+    @Inject
+    @Named("wiki")
+    private ConfigurationSource wikiConfiguration;
+
     @Override
     public boolean isBook(DocumentReference documentReference) throws XWikiException
     {
-        XWikiContext xcontext = this.getXWikiContext();
-
-        return isBook(this.getXWikiContext().getWiki().getDocument(documentReference, xcontext));
+        return typeResolver.resolve(documentReference).isBook();
     }
 
     @Override
     public boolean isBook(XWikiDocument document) throws XWikiException
     {
-        return new DefaultBook(document).isDefined();
+        return typeResolver.resolve(document).isBook();
     }
 
     @Override
     public boolean isPage(DocumentReference documentReference) throws XWikiException
     {
-        XWikiContext xcontext = this.getXWikiContext();
-
-        return isPage(xcontext.getWiki().getDocument(documentReference, xcontext));
+        return typeResolver.resolve(documentReference).isPage();
     }
 
     @Override
     public boolean isPage(XWikiDocument document) throws XWikiException
     {
-        return new DefaultPage(document).isDefined();
+        return typeResolver.resolve(document).isPage();
     }
 
     @Override
     public boolean isVersionedPage(DocumentReference documentReference) throws XWikiException
     {
-        XWikiContext xcontext = this.getXWikiContext();
-
-        return isVersionedPage(xcontext.getWiki().getDocument(documentReference, xcontext));
+        return typeResolver.resolve(documentReference).isVersionedPage();
     }
 
     @Override
     public boolean isVersionedPage(XWikiDocument document) throws XWikiException
     {
-        return new DefaultPage(document).isVersioned();
+        return typeResolver.resolve(document).isVersionedPage();
     }
 
     @Override
     public boolean isVersionedContent(DocumentReference documentReference) throws XWikiException
     {
-        XWikiContext xcontext = this.getXWikiContext();
-
-        return isVersionedContent(xcontext.getWiki().getDocument(documentReference, xcontext));
+        return typeResolver.resolve(documentReference).isVersionedContent();
     }
 
     @Override
     public boolean isVersionedContent(XWikiDocument document) throws XWikiException
     {
-        return new DefaultVersionedContent(document).isDefined();
+        return typeResolver.resolve(document).isVersionedContent();
     }
 
     @Override
@@ -226,41 +308,25 @@ public class DefaultBookVersionsManager implements BookVersionsManager
     @Override
     public boolean isVersion(DocumentReference documentReference) throws XWikiException
     {
-        XWikiContext xcontext = this.getXWikiContext();
-
-        return isVersion(xcontext.getWiki().getDocument(documentReference, xcontext));
+        return typeResolver.resolve(documentReference).isVersion();
     }
 
     @Override
     public boolean isVersion(XWikiDocument document) throws XWikiException
     {
-        return new DefaultVersion(document).isDefined();
+        return typeResolver.resolve(document).isVersion();
     }
 
     @Override
     public boolean isVariant(DocumentReference documentReference) throws XWikiException
     {
-        XWikiContext xcontext = this.getXWikiContext();
-
-        return isVariant(xcontext.getWiki().getDocument(documentReference, xcontext));
-    }
-
-    private boolean isVariant(XWikiDocument document) throws XWikiException
-    {
-        return new DefaultVariant(document).isDefined();
+        return typeResolver.resolve(documentReference).isVariant();
     }
 
     @Override
     public boolean isLibrary(DocumentReference documentReference) throws XWikiException
     {
-        XWikiContext xcontext = this.getXWikiContext();
-
-        return isLibrary(xcontext.getWiki().getDocument(documentReference, xcontext));
-    }
-
-    private boolean isLibrary(XWikiDocument document) throws XWikiException
-    {
-        return new DefaultLibrary(document).isDefined();
+        return typeResolver.resolve(documentReference).isLibrary();
     }
 
     @Override
@@ -289,15 +355,7 @@ public class DefaultBookVersionsManager implements BookVersionsManager
     @Override
     public boolean isMarkedDeleted(DocumentReference documentReference) throws XWikiException, QueryException
     {
-        String queryString = "select doc.fullName from XWikiDocument as doc, BaseObject as obj where obj.name = doc.fullName "
-            + "and obj.className = :className and doc.fullName = :docFullName";
-        List<String> results = this.queryManagerProvider.get()
-            .createQuery(queryString, Query.HQL)
-            .bindValue("className", localSerializer.serialize(BookVersionsConstants.MARKEDDELETED_CLASS_REFERENCE))
-            .bindValue("docFullName", localSerializer.serialize(documentReference))
-            .setWiki(documentReference.getWikiReference().getName())
-            .execute();
-        return results != null && results.size() > 0;
+        return typeResolver.resolve(documentReference).isMarkedDeleted();
     }
 
     @Override
@@ -315,6 +373,12 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             return null;
         }
 
+        return requestResolutionCache.get("selectedVersion", Arrays.asList(documentReference),
+            () -> resolveSelectedVersion(documentReference));
+    }
+
+    private String resolveSelectedVersion(DocumentReference documentReference) throws XWikiException, QueryException
+    {
         DocumentReference versionedCollectionReference = getVersionedCollectionReference(documentReference);
         Map<String, String> versionsMap = new HashMap<String, String>();
         XWikiRequest request = getXWikiContext().getRequest();
@@ -352,6 +416,8 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             return;
         }
 
+        requestResolutionCache.clear();
+
         Map<String, String> versionsMap = new HashMap<String, String>();
         XWikiRequest request = getXWikiContext().getRequest();
         HttpSession session = request.getSession();
@@ -371,6 +437,12 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             return null;
         }
 
+        return requestResolutionCache.get("selectedVariant", Arrays.asList(documentReference),
+            () -> resolveSelectedVariant(documentReference));
+    }
+
+    private String resolveSelectedVariant(DocumentReference documentReference) throws XWikiException, QueryException
+    {
         Map<String, String> variantsMap = new HashMap<String, String>();
         XWikiRequest request = getXWikiContext().getRequest();
         HttpSession session = request.getSession();
@@ -436,6 +508,8 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             return;
         }
 
+        requestResolutionCache.clear();
+
         Map<String, String> variantsMap = new HashMap<String, String>();
         XWikiRequest request = getXWikiContext().getRequest();
         HttpSession session = request.getSession();
@@ -455,6 +529,12 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             return null;
         }
 
+        return requestResolutionCache.get("selectedLanguage", Arrays.asList(documentReference),
+            () -> resolveSelectedLanguage(documentReference));
+    }
+
+    private String resolveSelectedLanguage(DocumentReference documentReference) throws XWikiException, QueryException
+    {
         Map<String, String> languagesMap = new HashMap<String, String>();
         XWikiRequest request = getXWikiContext().getRequest();
         HttpSession session = request.getSession();
@@ -518,6 +598,8 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             return;
         }
 
+        requestResolutionCache.clear();
+
         Map<String, String> languagesMap = new HashMap<String, String>();
         XWikiRequest request = getXWikiContext().getRequest();
         HttpSession session = request.getSession();
@@ -834,13 +916,21 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             ? new DocumentReference(new EntityReference(version, EntityType.DOCUMENT, versionParentSpaceReference))
             : null;
 
-        // Search for the non-terminal document : Book.Versions.MyVersion.WebHome
+        // Then for the non-terminal document : Book.Versions.MyVersion.WebHome
+        SpaceReference versionNonTerminalParentSpaceReference =
+            new SpaceReference(new EntityReference(version, EntityType.SPACE, versionParentSpaceReference));
+        DocumentReference versionNonTerminalReference =
+            new DocumentReference(new EntityReference(this.getXWikiContext().getWiki().DEFAULT_SPACE_HOMEPAGE,
+                EntityType.DOCUMENT, versionNonTerminalParentSpaceReference));
+
+        CollectionCatalog catalog = getCollectionCatalog(collectionReference);
+        if (catalog != null) {
+            return catalog.isVersion(versionDocumentReference) ? versionDocumentReference
+                : catalog.isVersion(versionNonTerminalReference) ? versionNonTerminalReference : null;
+        }
+
         if (!this.isVersion(versionDocumentReference)) {
-            SpaceReference versionNonTerminalParentSpaceReference =
-                new SpaceReference(new EntityReference(version, EntityType.SPACE, versionParentSpaceReference));
-            versionDocumentReference =
-                new DocumentReference(new EntityReference(this.getXWikiContext().getWiki().DEFAULT_SPACE_HOMEPAGE,
-                    EntityType.DOCUMENT, versionNonTerminalParentSpaceReference));
+            versionDocumentReference = versionNonTerminalReference;
         }
 
         return this.isVersion(versionDocumentReference) ? versionDocumentReference : null;
@@ -861,18 +951,47 @@ public class DefaultBookVersionsManager implements BookVersionsManager
         DocumentReference variantDocumentReference =
             new DocumentReference(new EntityReference(variant, EntityType.DOCUMENT, variantParentSpaceReference));
 
-        // Search for the non-terminal document : Book.Versions.MyVersion.WebHome
-        if (variantParentSpaceReference != null && !this.isVariant(variantDocumentReference)) {
-            SpaceReference versionNonTerminalParentSpaceReference =
-                new SpaceReference(new EntityReference(variant, EntityType.SPACE, variantParentSpaceReference));
-            variantDocumentReference =
-                new DocumentReference(new EntityReference(this.getXWikiContext().getWiki().DEFAULT_SPACE_HOMEPAGE,
-                    EntityType.DOCUMENT, versionNonTerminalParentSpaceReference));
+        // Then for the non-terminal document : Book.Versions.MyVersion.WebHome
+        SpaceReference variantNonTerminalParentSpaceReference =
+            new SpaceReference(new EntityReference(variant, EntityType.SPACE, variantParentSpaceReference));
+        DocumentReference variantNonTerminalReference =
+            new DocumentReference(new EntityReference(this.getXWikiContext().getWiki().DEFAULT_SPACE_HOMEPAGE,
+                EntityType.DOCUMENT, variantNonTerminalParentSpaceReference));
+
+        CollectionCatalog catalog = getCollectionCatalog(collectionReference);
+        if (catalog != null) {
+            return catalog.isVariant(variantDocumentReference) ? variantDocumentReference
+                : catalog.isVariant(variantNonTerminalReference) ? variantNonTerminalReference : null;
+        }
+
+        if (!this.isVariant(variantDocumentReference)) {
+            variantDocumentReference = variantNonTerminalReference;
         }
 
         return isVariant(variantDocumentReference) ? variantDocumentReference : null;
     }
 
+    /**
+     * Get the catalog of versions and variants of the given collection.
+     *
+     * @param collectionReference the reference of the collection
+     * @return the catalog of the collection, null if the given reference is not the root of a versioned collection or
+     *     if the catalog can't be built
+     * @throws XWikiException In case the system can't provide an answer.
+     */
+    private CollectionCatalog getCollectionCatalog(DocumentReference collectionReference) throws XWikiException
+    {
+        try {
+            if (collectionReference.equals(getVersionedCollectionReference(collectionReference))) {
+                return collectionCatalogCache.getCatalog(collectionReference);
+            }
+        } catch (QueryException e) {
+            logger.error("Could not get the catalog of collection [{}].", collectionReference, e);
+        }
+
+        return null;
+    }
+
     @Override
     public List<String> getCollectionVersions(DocumentReference collectionReference)
         throws QueryException, XWikiException
@@ -882,8 +1001,12 @@ public class DefaultBookVersionsManager implements BookVersionsManager
         }
 
         DocumentReference versionedCollectionReference = getVersionedCollectionReference(collectionReference);
+        if (versionedCollectionReference == null) {
+            return Collections.emptyList();
+        }
 
-        return queryPages(versionedCollectionReference, BookVersionsConstants.VERSION_CLASS_REFERENCE);
+        return collectionCatalogCache.getCatalog(versionedCollectionReference).getVersions().stream()
+            .map(CollectionCatalog.Entry::getFullName).collect(Collectors.toList());
     }
 
     @Override
@@ -895,8 +1018,12 @@ public class DefaultBookVersionsManager implements BookVersionsManager
         }
 
         DocumentReference versionedCollectionReference = getVersionedCollectionReference(collectionReference);
+        if (versionedCollectionReference == null) {
+            return Collections.emptyList();
+        }
 
-        return queryPages(versionedCollectionReference, BookVersionsConstants.VARIANT_CLASS_REFERENCE);
+        return collectionCatalogCache.getCatalog(versionedCollectionReference).getVariants().stream()
+            .map(CollectionCatalog.Entry::getFullName).collect(Collectors.toList());
     }
 
     /**
@@ -926,23 +1053,28 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             logger.debug("[queryPages] Query pages under [{}]", documentReference);
         }
 
-        SpaceReference spaceReference = documentReference.getLastSpaceReference();
-        String spaceSerialized = localSerializer.serialize(spaceReference);
-        String spacePrefix = spaceSerialized.replaceAll("([%_/])", "/$1").concat(".%");
+        List<String> subspaces = subspacesResolver.getSubspaces(documentReference.getLastSpaceReference());
 
-        logger.debug("[queryPages] spaceSerialized : [{}]", spaceSerialized);
-        logger.debug("[queryPages] spacePrefix : [{}]", spacePrefix);
+        logger.debug("[queryPages] subspaces : [{}]", subspaces);
+
+        if (subspaces.isEmpty()) {
+            return Collections.emptyList();
+        }
 
         // Query inspired from getDocumentReferences of DefaultModelBridge.java in xwiki-platform-refactoring
-        String statement = "where doc.space like :space escape '/' order by doc.creationDate desc";
+        Map<String, Object> parameters = new HashMap<>();
+        String subspacesCondition = subspacesResolver.getCondition(subspaces, parameters);
+        String statement = "where " + subspacesCondition + " order by doc.creationDate desc";
         if (classReference != null) {
             statement = ", BaseObject as obj where doc.fullName = obj.name and obj.className = :class "
-                + "and doc.space like :space escape '/' order by doc.creationDate desc";
+                + "and " + subspacesCondition + " order by doc.creationDate desc";
         }
         Query query = this.queryManagerProvider.get()
             .createQuery(statement, Query.HQL)
-            .bindValue("space", spacePrefix)
             .setWiki(documentReference.getWikiReference().getName());
+        for (Entry<String, Object> parameter : parameters.entrySet()) {
+            query = query.bindValue(parameter.getKey(), parameter.getValue());
+        }
         if (classReference != null) {
             query = query.bindValue("class", localSerializer.serialize(classReference));
         }
@@ -953,6 +1085,139 @@ public class DefaultBookVersionsManager implements BookVersionsManager
         return result;
     }
 
+    /**
+     * Iterate over the pages under a given document, ordered by full name. The pages are fetched lazily, one page of
+     * results at a time, so that the whole subtree never has to be held in memory.
+     *
+     * @param documentReference the root document for the query
+     * @param classReference the class the pages should have an object of, or {@code null} for all the pages
+     * @param pageSize the maximum number of pages to fetch at once
+     * @return an iterator over the pages under the document, ordered by full name
+     * @throws QueryException happens when the query creation or execution has an issue.
+     */
+    private Iterator<String> iteratePages(DocumentReference documentReference, EntityReference classReference,
+        int pageSize) throws QueryException
+    {
+        if (documentReference == null) {
+            return Collections.emptyIterator();
+        }
+
+        List<String> subspaces = subspacesResolver.getSubspaces(documentReference.getLastSpaceReference());
+        if (subspaces.isEmpty()) {
+            return Collections.emptyIterator();
+        }
+
+        Map<String, Object> parameters = new HashMap<>();
+        String subspacesCondition = subspacesResolver.getCondition(subspaces, parameters);
+        String statement = "where " + subspacesCondition;
+        if (classReference != null) {
+            statement = ", BaseObject as obj where doc.fullName = obj.name and obj.className = :class and "
+                + subspacesCondition;
+            parameters.put("class", localSerializer.serialize(classReference));
+        }
+        statement += " and doc.fullName > :" + PagedQueryIterator.LAST_FULLNAME + " order by doc.fullName asc";
+
+        return new PagedQueryIterator(this.queryManagerProvider.get(), statement, parameters,
+            documentReference.getWikiReference().getName(), pageSize);
+    }
+
+    /**
+     * Count the pages under a given document.
+     *
+     * @param documentReference the root document for the query
+     * @param classReference the class the pages should have an object of, or {@code null} for all the pages
+     * @return the number of pages under the document
+     * @throws QueryException happens when the query creation or execution has an issue.
+     */
+    private long countPages(DocumentReference documentReference, EntityReference classReference)
+        throws QueryException
+    {
+        if (documentReference == null) {
+            return 0;
+        }
+
+        List<String> subspaces = subspacesResolver.getSubspaces(documentReference.getLastSpaceReference());
+        if (subspaces.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, Object> parameters = new HashMap<>();
+        String subspacesCondition = subspacesResolver.getCondition(subspaces, parameters);
+        String statement = "select count(doc.fullName) from XWikiDocument doc where " + subspacesCondition;
+        if (classReference != null) {
+            statement = "select count(doc.fullName) from XWikiDocument doc, BaseObject as obj "
+                + "where doc.fullName = obj.name and obj.className = :class and " + subspacesCondition;
+            parameters.put("class", localSerializer.serialize(classReference));
+        }
+        Query query = this.queryManagerProvider.get()
+            .createQuery(statement, Query.HQL)
+            .setWiki(documentReference.getWikiReference().getName());
+        for (Entry<String, Object> parameter : parameters.entrySet()) {
+            query = query.bindValue(parameter.getKey(), parameter.getValue());
+        }
+        List<Long> result = query.execute();
+
+        return result.isEmpty() ? 0 : result.get(0);
+    }
+
+    /**
+     * Identify the state of the documents a publication plan is computed from: the configuration, its version and
+     * variant, every document of the published collection with its version, and the published libraries used by
+     * the version. A created, modified or deleted input gives another stamp.
+     *
+     * @param configurationReference the reference of the publication configuration
+     * @param configuration the loaded publication configuration
+     * @param sourceReference the reference of the top page to publish
+     * @return the stamp of the documents
+     * @throws XWikiException happens if the configuration can't be loaded
+     * @throws QueryException happens when the query creation or execution has an issue.
+     */
+    private String getPublicationPlanStamp(DocumentReference configurationReference,
+        Map<String, Object> configuration, DocumentReference sourceReference) throws XWikiException, QueryException
+    {
+        StringBuilder inputs = new StringBuilder();
+        DocumentReference versionReference =
+            (DocumentReference) configuration.get(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_VERSION);
+        for (DocumentReference inputReference : Arrays.asList(configurationReference, versionReference,
+            (DocumentReference) configuration.get(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_VARIANT)))
+        {
+            if (inputReference != null) {
+                inputs.append(localSerializer.serialize(inputReference)).append(' ')
+                    .append(getSourceVersion(inputReference)).append('\n');
+            }
+        }
+
+        List<String> spaces = new ArrayList<>();
+        spaces.add(localSerializer.serialize(sourceReference.getLastSpaceReference()));
+        spaces.addAll(subspacesResolver.getSubspaces(sourceReference.getLastSpaceReference()));
+        Map<String, Object> parameters = new HashMap<>();
+        Query query = this.queryManagerProvider.get()
+            .createQuery("select doc.fullName, doc.language, doc.version from XWikiDocument doc "
+                + "where " + subspacesResolver.getCondition(spaces, parameters)
+                + " order by doc.fullName, doc.language", Query.HQL)
+            .setWiki(sourceReference.getWikiReference().getName());
+        for (Entry<String, Object> parameter : parameters.entrySet()) {
+            query = query.bindValue(parameter.getKey(), parameter.getValue());
+        }
+        for (Object[] document : query.<Object[]>execute()) {
+            inputs.append(document[0]).append(' ').append(document[1]).append(' ').append(document[2]).append('\n');
+        }
+
+        DocumentReference collectionReference = getVersionedCollectionReference(sourceReference);
+        if (collectionReference != null && versionReference != null && isBook(collectionReference)) {
+            inputs.append(getPublishedLibrariesHash(
+                getUsedPublishedLibrariesWithInheritance(collectionReference, versionReference)));
+        }
+
+        try {
+            return String.format("%064x", new BigInteger(1,
+                MessageDigest.getInstance("SHA-256").digest(inputs.toString().getBytes(StandardCharsets.UTF_8))));
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
     /**
      * Search for the parent storing the collection type (book or library).
      */
@@ -1029,12 +1294,144 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             return null;
         }
 
-        XWikiContext xcontext = getXWikiContext();
+        Optional<DocumentReference> cachedCollectionReference = collectionReferenceCache.get(documentReference);
+        if (cachedCollectionReference != null) {
+            return cachedCollectionReference.orElse(null);
+        }
 
-        if (isBook(documentReference) || isLibrary(documentReference)
-            || xcontext.getWiki().getDocument(documentReference, xcontext)
-            .getXObject(BookVersionsConstants.PUBLISHEDCOLLECTION_CLASS_REFERENCE) != null)
-        {
+        DocumentReference collectionReference = resolveVersionedCollectionReference(documentReference);
+        collectionReferenceCache.set(documentReference, collectionReference);
+
+        return collectionReference;
+    }
+
+    @Override
+    public Map<DocumentReference, DocumentReference> getVersionedCollectionReferences(
+        Collection<DocumentReference> documentReferences) throws QueryException
+    {
+        Map<DocumentReference, DocumentReference> result = new HashMap<>();
+        if (documentReferences == null) {
+            return result;
+        }
+
+        // Collect the possible collection roots of the documents which are not already cached, from the closest to
+        // the farthest, in order to check all of them at once.
+        Map<DocumentReference, List<DocumentReference>> candidates = new HashMap<>();
+        Map<String, Set<String>> candidateNames = new HashMap<>();
+        for (DocumentReference documentReference : documentReferences) {
+            if (documentReference == null || result.containsKey(documentReference)
+                || candidates.containsKey(documentReference))
+            {
+                continue;
+            }
+
+            Optional<DocumentReference> cachedCollectionReference = collectionReferenceCache.get(documentReference);
+            if (cachedCollectionReference != null) {
+                result.put(documentReference, cachedCollectionReference.orElse(null));
+                continue;
+            }
+
+            List<DocumentReference> documentCandidates = getCollectionReferenceCandidates(documentReference);
+            candidates.put(documentReference, documentCandidates);
+            Set<String> wikiCandidateNames = candidateNames.computeIfAbsent(
+                documentReference.getWikiReference().getName(), k -> new HashSet<>());
+            for (DocumentReference candidate : documentCandidates) {
+                wikiCandidateNames.add(localSerializer.serialize(candidate));
+            }
+        }
+
+        Map<DocumentReference, Set<String>> collectionClasses = queryCollectionClasses(candidateNames);
+
+        for (Entry<DocumentReference, List<DocumentReference>> entry : candidates.entrySet()) {
+            DocumentReference collectionReference =
+                findCollectionReference(entry.getKey(), entry.getValue(), collectionClasses);
+            collectionReferenceCache.set(entry.getKey(), collectionReference);
+            result.put(entry.getKey(), collectionReference);
+        }
+
+        return result;
+    }
+
+    /**
+     * Get the documents which could be the collection root of the given document, in the same order as
+     * {@link #getVersionedCollectionReference(DocumentReference)} checks them.
+     */
+    private List<DocumentReference> getCollectionReferenceCandidates(DocumentReference documentReference)
+    {
+        List<DocumentReference> candidates = new ArrayList<>();
+        candidates.add(documentReference);
+
+        String spaceHomePage = this.getXWikiContext().getWiki().DEFAULT_SPACE_HOMEPAGE;
+        SpaceReference spaceReference = documentReference.getLastSpaceReference();
+        while (spaceReference != null) {
+            DocumentReference spaceHomeReference = new DocumentReference(spaceHomePage, spaceReference);
+            if (!spaceHomeReference.equals(documentReference)) {
+                candidates.add(spaceHomeReference);
+            }
+            spaceReference = getSpaceReference(spaceReference.getParent());
+        }
+
+        return candidates;
+    }
+
+    /**
+     * Query the collection classes (book, library, published collection) of the given documents, grouped by wiki.
+     */
+    private Map<DocumentReference, Set<String>> queryCollectionClasses(Map<String, Set<String>> documentNames)
+        throws QueryException
+    {
+        Map<DocumentReference, Set<String>> collectionClasses = new HashMap<>();
+        List<String> classNames = Arrays.asList(BookVersionsConstants.BOOK_CLASS_SERIALIZED,
+            BookVersionsConstants.LIBRARY_CLASS_SERIALIZED, BookVersionsConstants.PUBLISHED_BOOK_CLASS_SERIALIZED);
+        String statement = "select obj.name, obj.className from BaseObject as obj "
+            + "where obj.name in (:names) and obj.className in (:classes)";
+
+        for (Entry<String, Set<String>> wikiEntry : documentNames.entrySet()) {
+            WikiReference wikiReference = new WikiReference(wikiEntry.getKey());
+            List<String> names = new ArrayList<>(wikiEntry.getValue());
+            // Split the names to stay under the bound parameters limit of the databases.
+            for (int i = 0; i < names.size(); i += BULK_QUERY_SIZE) {
+                List<Object[]> results = this.queryManagerProvider.get()
+                    .createQuery(statement, Query.HQL)
+                    .bindValue("names", names.subList(i, Math.min(i + BULK_QUERY_SIZE, names.size())))
+                    .bindValue("classes", classNames)
+                    .setWiki(wikiReference.getName())
+                    .execute();
+                for (Object[] row : results) {
+                    DocumentReference documentReference = referenceResolver.resolve((String) row[0], wikiReference);
+                    collectionClasses.computeIfAbsent(documentReference, k -> new HashSet<>()).add((String) row[1]);
+                }
+            }
+        }
+
+        return collectionClasses;
+    }
+
+    private DocumentReference findCollectionReference(DocumentReference documentReference,
+        List<DocumentReference> candidates, Map<DocumentReference, Set<String>> collectionClasses)
+    {
+        for (DocumentReference candidate : candidates) {
+            Set<String> classes = collectionClasses.getOrDefault(candidate, Collections.emptySet());
+            // As in getVersionedCollectionReference, a published collection is only recognized on the document
+            // itself or on the home page of an upper space.
+            boolean isPublishedCollection = classes.contains(BookVersionsConstants.PUBLISHED_BOOK_CLASS_SERIALIZED)
+                && (candidate.equals(documentReference)
+                || !candidate.getLastSpaceReference().equals(documentReference.getLastSpaceReference()));
+            if (classes.contains(BookVersionsConstants.BOOK_CLASS_SERIALIZED)
+                || classes.contains(BookVersionsConstants.LIBRARY_CLASS_SERIALIZED) || isPublishedCollection)
+            {
+                return candidate;
+            }
+        }
+
+        return null;
+    }
+
+    private DocumentReference resolveVersionedCollectionReference(DocumentReference documentReference)
+        throws XWikiException, QueryException
+    {
+        BookVersionsDocumentType documentType = typeResolver.resolve(documentReference);
+        if (documentType.isBook() || documentType.isLibrary() || documentType.isPublishedCollection()) {
             return documentReference;
         }
 
@@ -1214,6 +1611,13 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             return result;
         }
 
+        VersionGraph versionGraph = getVersionGraph(collectionReference);
+        if (versionGraph != null && versionGraph.contains(versionReference)) {
+            // The graph already logged the infinite loops when it was built.
+            result.addAll(versionGraph.getLineage(versionReference));
+            return result;
+        }
+
         int versionQuantity = getCollectionVersions(collectionReference).size();
 
         String versionName = getVersionName(versionReference);
@@ -1261,9 +1665,6 @@ public class DefaultBookVersionsManager implements BookVersionsManager
         }
 
         // TO DO: check if the page is unversioned, or not
-        XWikiContext xcontext = this.getXWikiContext();
-        XWiki xwiki = xcontext.getWiki();
-
         String versionName = getVersionName(versionReference);
 
         logger.debug("[getInheritedContentVersionReference] versionName : [{}]", versionName);
@@ -1274,7 +1675,7 @@ public class DefaultBookVersionsManager implements BookVersionsManager
 
             logger.debug("[getInheritedContentVersionReference] versionedContentRef : [{}]", versionedContentRef);
 
-            if (xwiki.exists(versionedContentRef, xcontext)) {
+            if (hasVersionedContent(versionedContentRef)) {
                 // Content exists for this version of the page
                 return versionedContentRef;
             } else {
@@ -1297,6 +1698,30 @@ public class DefaultBookVersionsManager implements BookVersionsManager
 
         XWikiContext xcontext = this.getXWikiContext();
         XWiki xwiki = xcontext.getWiki();
+
+        VersionGraph versionGraph = getVersionGraph(versionReference);
+        if (versionGraph != null && versionGraph.contains(versionReference)) {
+            List<String> lineageVersionNames = new ArrayList<>();
+            for (DocumentReference lineageVersionReference : versionGraph.getLineage(versionReference)) {
+                lineageVersionNames.add(getVersionName(lineageVersionReference));
+            }
+            ContentPresenceIndex contentPresenceIndex = getContentPresenceIndex(pageReference);
+            if (contentPresenceIndex != null) {
+                String contentVersionName =
+                    contentPresenceIndex.getFirstVersionWithContent(pageReference.getParent(), lineageVersionNames);
+                return contentVersionName != null ? new DocumentReference(
+                    new EntityReference(contentVersionName, EntityType.DOCUMENT, pageReference.getParent())) : null;
+            }
+            for (String lineageVersionName : lineageVersionNames) {
+                DocumentReference versionedContentReference = new DocumentReference(
+                    new EntityReference(lineageVersionName, EntityType.DOCUMENT, pageReference.getParent()));
+                if (xwiki.exists(versionedContentReference, xcontext)) {
+                    return versionedContentReference;
+                }
+            }
+            return null;
+        }
+
         DocumentReference versionedContentReference = new DocumentReference(
             new EntityReference(getVersionName(versionReference), EntityType.DOCUMENT, pageReference.getParent()));
 
@@ -1319,6 +1744,11 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             return null;
         }
 
+        VersionGraph versionGraph = getVersionGraph(versionReference);
+        if (versionGraph != null && versionGraph.contains(versionReference)) {
+            return versionGraph.getPrecedingVersion(versionReference);
+        }
+
         XWikiDocument versionDocument = xcontext.getWiki().getDocument(versionReference, xcontext);
         BaseObject versionObject = versionDocument.getXObject(BookVersionsConstants.VERSION_CLASS_REFERENCE);
         if (versionObject == null) {
@@ -1333,6 +1763,26 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             : null;
     }
 
+    /**
+     * Get the version graph of the collection of the given document.
+     *
+     * @param documentReference a document of the collection
+     * @return the version graph of the collection, null if the document is not part of a collection or if the graph
+     *     can't be built
+     * @throws XWikiException In case a version document can't be loaded.
+     */
+    private VersionGraph getVersionGraph(DocumentReference documentReference) throws XWikiException
+    {
+        try {
+            DocumentReference collectionReference = getVersionedCollectionReference(documentReference);
+
+            return collectionReference != null ? versionGraphCache.getGraph(collectionReference) : null;
+        } catch (QueryException e) {
+            logger.error("Could not get the version graph for [{}].", documentReference, e);
+            return null;
+        }
+    }
+
     @Override
     public DocumentReference getInheritedContentReference(DocumentReference pageReference,
         DocumentReference versionReference) throws QueryException, XWikiException
@@ -1341,7 +1791,6 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             return null;
         }
 
-        XWikiContext xcontext = this.getXWikiContext();
         DocumentReference versionPageReference = getInheritedContentVersionReference(pageReference, versionReference);
 
         logger.debug("[getInheritedContentReference] versionPageReference : [{}]", versionPageReference);
@@ -1357,7 +1806,7 @@ public class DefaultBookVersionsManager implements BookVersionsManager
 
                 logger.debug("[getInheritedContentReference] versionedContentRef : [{}]", versionedContentRef);
 
-                if (xcontext.getWiki().exists(versionedContentRef, xcontext)) {
+                if (hasVersionedContent(versionedContentRef)) {
                     // Content exists for this version of the page
                     return versionedContentRef;
                 }
@@ -1367,13 +1816,53 @@ public class DefaultBookVersionsManager implements BookVersionsManager
         return null;
     }
 
-    private SpaceReference getSpaceReference(EntityReference entityReference)
+    /**
+     * Get the content presence index of the collection of the given document.
+     *
+     * @param documentReference a document of the collection
+     * @return the content presence index of the collection, null if the document is not part of a collection or if
+     *     the index can't be built
+     * @throws XWikiException In case the system can't provide an answer.
+     */
+    private ContentPresenceIndex getContentPresenceIndex(DocumentReference documentReference) throws XWikiException
     {
-        EntityReference spaceEntityReference = entityReference.extractReference(EntityType.SPACE);
-
-        return entityReference != null && spaceEntityReference != null ? spaceEntityReference instanceof SpaceReference
-            ? (SpaceReference) spaceEntityReference : new SpaceReference(spaceEntityReference) : null;
-    }
+        try {
+            DocumentReference collectionReference = getVersionedCollectionReference(documentReference);
+
+            return collectionReference != null ? contentPresenceIndexCache.getIndex(collectionReference) : null;
+        } catch (QueryException e) {
+            logger.error("Could not get the content presence index for [{}].", documentReference, e);
+            return null;
+        }
+    }
+
+    /**
+     * Check if a versioned content exists, using the content presence index of its collection when available.
+     *
+     * @param versionedContentReference the reference of the versioned content
+     * @return true if the versioned content exists
+     * @throws XWikiException In case the system can't provide an answer.
+     */
+    private boolean hasVersionedContent(DocumentReference versionedContentReference) throws XWikiException
+    {
+        ContentPresenceIndex contentPresenceIndex = getContentPresenceIndex(versionedContentReference);
+        if (contentPresenceIndex != null) {
+            return contentPresenceIndex.hasContent(versionedContentReference.getParent(),
+                versionedContentReference.getName());
+        }
+
+        XWikiContext xcontext = this.getXWikiContext();
+
+        return xcontext.getWiki().exists(versionedContentReference, xcontext);
+    }
+
+    private SpaceReference getSpaceReference(EntityReference entityReference)
+    {
+        EntityReference spaceEntityReference = entityReference.extractReference(EntityType.SPACE);
+
+        return entityReference != null && spaceEntityReference != null ? spaceEntityReference instanceof SpaceReference
+            ? (SpaceReference) spaceEntityReference : new SpaceReference(spaceEntityReference) : null;
+    }
 
     @Override
     public void setLibrary(DocumentReference bookReference, DocumentReference libraryReference)
@@ -1391,15 +1880,17 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             && isFromLibrary(libraryReference, libraryVersionReference))
         {
             List<String> versionsLocalRef = getCollectionVersions(bookReference);
-            for (String versionLocalRef : versionsLocalRef) {
-                DocumentReference versionRef = referenceResolver.resolve(versionLocalRef);
-                setVersionLibrary(versionRef, libraryReference, libraryVersionReference);
+            try (DocumentBatch batch = documentBatchWriter.open(getXWikiContext())) {
+                for (String versionLocalRef : versionsLocalRef) {
+                    DocumentReference versionRef = referenceResolver.resolve(versionLocalRef);
+                    setVersionLibrary(versionRef, libraryReference, libraryVersionReference, batch);
+                }
             }
         }
     }
 
     private void setVersionLibrary(DocumentReference versionReference, DocumentReference libraryReference,
-        DocumentReference libraryVersionReference) throws XWikiException
+        DocumentReference libraryVersionReference, DocumentBatch batch) throws XWikiException
     {
         if (versionReference == null || libraryReference == null || libraryVersionReference == null) {
             return;
@@ -1452,8 +1943,8 @@ public class DefaultBookVersionsManager implements BookVersionsManager
         UserReference userReference = userReferenceResolver.resolve(xcontext.getUserReference());
         versionDoc.getAuthors().setEffectiveMetadataAuthor(userReference);
         versionDoc.getAuthors().setOriginalMetadataAuthor(userReference);
-        xwiki.saveDocument(versionDoc, "Setting version configuration for library ["
-            + libraryReference.getParent().toString() + "]: [" + libraryVersionReference.toString() + "].", xcontext);
+        batch.save(versionDoc, "Setting version configuration for library ["
+            + libraryReference.getParent().toString() + "]: [" + libraryVersionReference.toString() + "].");
     }
 
     @Override
@@ -1797,26 +2288,36 @@ public class DefaultBookVersionsManager implements BookVersionsManager
 
     @Override
     public String publish(DocumentReference configurationReference) throws JobException
+    {
+        return startPublicationJob(configurationReference, false);
+    }
+
+    @Override
+    public String resumePublication(DocumentReference configurationReference) throws JobException
+    {
+        return startPublicationJob(configurationReference, true);
+    }
+
+    @Override
+    public boolean hasPublicationCheckpoint(DocumentReference configurationReference) throws XWikiException
+    {
+        return configurationReference != null && publicationCheckpointStore.exists(configurationReference);
+    }
+
+    /**
+     * @param configurationReference the configuration reference
+     * @param resume {@code true} to continue the publication from its last checkpoint
+     * @return the publication job's ID
+     * @throws JobException if an error occurs while manipulating the publication job
+     */
+    private String startPublicationJob(DocumentReference configurationReference, boolean resume)
+        throws JobException
     {
         if (configurationReference == null) {
             return null;
         }
 
-        DefaultRequest jobRequest = new DefaultRequest();
-        String jobId = BookVersionsConstants.PUBLICATION_JOBID_PREFIX
-            + BookVersionsConstants.PUBLICATION_JOBID_SEPARATOR + configurationReference.getName()
-            + BookVersionsConstants.PUBLICATION_JOBID_SEPARATOR + Instant.now().toString();
-        if (jobId != null) {
-            jobRequest.setId(jobId);
-            jobRequest.setProperty("configurationReference", configurationReference);
-            // The context won't be full in publishInternal as it is executed by a job, so the user executing the
-            // publication and locale have to be passed as parameters.
-            XWikiContext xcontext = this.getXWikiContext();
-            jobRequest.setProperty("userReference", xcontext.getUserReference());
-            jobRequest.setProperty("userLocale", xcontext.getLocale());
-            jobExecutor.execute(BookVersionsConstants.PUBLICATIONJOB_TYPE, jobRequest);
-        }
-        return jobId;
+        return publicationScheduler.schedule(configurationReference, resume);
     }
 
     @Override
@@ -1888,6 +2389,10 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             configurationObject.getIntValue(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_PUBLISHPAGEORDER) != 0);
         configuration.put(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_TITLE,
             configurationObject.getStringValue(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_TITLE));
+        configuration.put(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_PARALLELISM,
+            configurationObject.getIntValue(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_PARALLELISM));
+        configuration.put(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_SKIPRECYCLEBIN,
+            configurationObject.getIntValue(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_SKIPRECYCLEBIN) == 1);
 
         logger.debug("[loadPublicationConfiguration] Configuration loaded: [{}].", configuration);
 
@@ -2018,6 +2523,12 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             summaryLine.put("message", "All documents to be removed from target space");
             summaryLine.put("variable", docsToRemoveRefs);
             previewLines.add(summaryLine);
+        } else if (publicationBehaviour.equals(
+                BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_PUBLISHBEHAVIOUR_SYNC)) {
+            Map<String, Object> infoLine = new HashMap<>();
+            infoLine.put("message", "Target space will be synchronized with the source");
+            infoLine.put("variable", targetReference);
+            previewLines.add(infoLine);
         }
 
         DocumentReference collectionReference = getVersionedCollectionReference(sourceReference);
@@ -2101,9 +2612,15 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             }
         }
 
-        // Get the page tree and preview each page
-        List<String> pageReferenceTree = getPageReferenceTree(sourceReference);
+        // Get the page tree and preview each page, planning the actions of the publication on the way
+        String planStamp = getPublicationPlanStamp(configurationReference, configuration, sourceReference);
+        List<PublicationPlan.Action> planActions = new ArrayList<>();
+        List<String> pageReferenceTree = new ArrayList<>();
+        getPageReferenceTree(sourceReference).forEachRemaining(pageReferenceTree::add);
+        resolvePageTypes(pageReferenceTree, configurationReference);
+        Map<DocumentReference, PageMetadata> pagesMetadata = pageMetadataLoader.load(sourceReference);
         List<DocumentReference> markedAsDeletedReferences = new ArrayList<>();
+        Set<DocumentReference> publishedReferences = new HashSet<>();
 
         Map<String, Object> pagesLine = new HashMap<>();
         pagesLine.put("message", "Pages to process");
@@ -2127,6 +2644,8 @@ public class DefaultBookVersionsManager implements BookVersionsManager
                 errorLine.put("message", "Not a book page");
                 errorLine.put("variable", pageReference);
                 previewLines.add(errorLine);
+                planActions.add(new PublicationPlan.Action(PublicationPlan.ActionType.SKIP, pageStringReference,
+                    null, null, "not_a_page"));
                 continue;
             }
 
@@ -2146,6 +2665,8 @@ public class DefaultBookVersionsManager implements BookVersionsManager
 
                 errorLine.put("variable", pageInfo);
                 previewLines.add(errorLine);
+                planActions.add(new PublicationPlan.Action(PublicationPlan.ActionType.SKIP, pageStringReference,
+                    null, null, "no_content"));
                 continue;
             }
 
@@ -2164,6 +2685,8 @@ public class DefaultBookVersionsManager implements BookVersionsManager
 
                 errorLine.put("variable", pageInfo);
                 previewLines.add(errorLine);
+                planActions.add(new PublicationPlan.Action(PublicationPlan.ActionType.SKIP, pageStringReference,
+                    contentPageReference, null, "no_target"));
                 continue;
             }
 
@@ -2184,14 +2707,16 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             processInfo.put("targetExists", xwiki.exists(publishedReference, xcontext));
 
             // Add status and variant info
-            processInfo.put("status", getPageStatus(pageReference));
-            processInfo.put("variants", getPageVariants(pageReference));
+            PageMetadata pageMetadata = getPageMetadata(pagesMetadata, sourceReference, pageReference);
+            processInfo.put("status", pageMetadata.getStatus());
+            processInfo.put("variants", pageMetadata.getVariants());
 
             // Add language info if applicable
+            PageMetadata contentPageMetadata = getPageMetadata(pagesMetadata, sourceReference, contentPageReference);
             String language = (String) configuration.get(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_LANGUAGE);
             if (StringUtils.isNotEmpty(language)) {
                 processInfo.put("language", language);
-                Map<String, Map<String, Object>> languageData = getLanguageData(contentPageReference);
+                Map<String, Map<String, Object>> languageData = contentPageMetadata.getLanguageData();
                 processInfo.put("languageData", languageData);
             }
 
@@ -2199,9 +2724,14 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             previewLines.add(processLine);
 
             // Preview publication status for this page
-            if (!previewIsToBePublished(contentPageReference, variantReference, configuration, userLocale,
-                previewLines, pageReference)) {
-                if (isMarkedDeleted(contentPageReference)) {
+            String skipReason = previewIsToBePublished(contentPageReference, contentPageMetadata, variantReference,
+                configuration, userLocale, previewLines, pageReference);
+            if (skipReason != null) {
+                planActions.add(new PublicationPlan.Action(contentPageMetadata.isMarkedDeleted()
+                    ? PublicationPlan.ActionType.DELETE : PublicationPlan.ActionType.SKIP, pageStringReference,
+                    contentPageReference, publishedReference, skipReason, getSkipReasonParameters(skipReason,
+                        contentPageReference, contentPageMetadata, variantReference, configuration)));
+                if (contentPageMetadata.isMarkedDeleted()) {
                     // The original document is marked as deleted
                     markedAsDeletedReferences.add(publishedReference);
 
@@ -2219,6 +2749,27 @@ public class DefaultBookVersionsManager implements BookVersionsManager
                 continue;
             }
 
+            // An incremental publication skips the pages built from sources which did not change since
+            if (publicationBehaviour.equals(
+                    BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_PUBLISHBEHAVIOUR_INCREMENTAL)
+                    && isPublicationUpToDate(xwiki.getDocument(publishedReference, xcontext),
+                        getPublicationSources(configurationReference, configuration, variantReference,
+                            publishedLibraries, pageReference, contentPageReference))) {
+                Map<String, Object> upToDateLine = new HashMap<>();
+                upToDateLine.put("message", "Page is up to date and will be skipped");
+                Map<String, DocumentReference> upToDateInfo = new HashMap<>();
+                upToDateInfo.put("source", pageReference);
+                upToDateInfo.put("destination", publishedReference);
+                upToDateLine.put("variable", upToDateInfo);
+                previewLines.add(upToDateLine);
+                // Still planned as a copy: the publication checks the sources again, as the included library
+                // pages may change after the preview
+                planActions.add(new PublicationPlan.Action(PublicationPlan.ActionType.COPY, pageStringReference,
+                    contentPageReference, publishedReference, null));
+                publishedReferences.add(publishedReference);
+                continue;
+            }
+
             // This page will be published - include both source and destination in a single message
             Map<String, Object> publishLine = new HashMap<>();
             publishLine.put("message", "Page will be published");
@@ -2229,10 +2780,17 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             publishInfo.put("content", contentPageReference);
             publishLine.put("variable", publishInfo);
             previewLines.add(publishLine);
+            planActions.add(new PublicationPlan.Action(PublicationPlan.ActionType.COPY, pageStringReference,
+                contentPageReference, publishedReference, null));
+            publishedReferences.add(publishedReference);
         }
 
         // Add info about pages marked for deletion
-        if (publicationBehaviour.equals(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_PUBLISHBEHAVIOUR_UPDATE)
+        if ((publicationBehaviour.equals(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_PUBLISHBEHAVIOUR_UPDATE)
+                || publicationBehaviour.equals(
+                    BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_PUBLISHBEHAVIOUR_INCREMENTAL)
+                || publicationBehaviour.equals(
+                    BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_PUBLISHBEHAVIOUR_SYNC))
                 && markedAsDeletedReferences.size() > 0) {
 
             Map<String, Object> deletedLine = new HashMap<>();
@@ -2270,37 +2828,146 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             }
         }
 
+        // Add info about the published pages not matching a source page anymore
+        if (publicationBehaviour.equals(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_PUBLISHBEHAVIOUR_SYNC)) {
+            publishedReferences.addAll(markedAsDeletedReferences);
+            List<DocumentReference> orphanReferences = new ArrayList<>();
+            for (String targetDocumentString : subTargetDocumentsString) {
+                DocumentReference targetDocRef =
+                    referenceResolver.resolve(targetDocumentString, targetDocumentReference);
+                if (isOrphan(targetDocRef, targetDocumentReference, publishedReferences)) {
+                    orphanReferences.add(targetDocRef);
+                }
+            }
+            if (orphanReferences.size() > 0) {
+                Map<String, Object> orphansLine = new HashMap<>();
+                orphansLine.put("message", "Orphan documents will be removed from target");
+                orphansLine.put("variable", orphanReferences);
+                previewLines.add(orphansLine);
+            }
+        }
+
         // Add page order info if applicable
         if ((boolean) configuration.get("publishPageOrder")) {
             Map<String, Object> orderLine = new HashMap<>();
             orderLine.put("message", "Page order will be preserved");
             orderLine.put("variable", null);
             previewLines.add(orderLine);
+            planActions.add(new PublicationPlan.Action(PublicationPlan.ActionType.PAGE_ORDER, null, null, null,
+                null));
         }
 
+        // Keep the plan for the publication, as long as the source doesn't change
+        publicationPlanCache.set(new PublicationPlan(configurationReference, planStamp, planActions));
+
         return previewLines;
     }
 
+    /**
+     * @param skipReason the reason returned by
+     *     {@link #previewIsToBePublished(DocumentReference, PageMetadata, DocumentReference, Map, Locale, List,
+     *     DocumentReference)}
+     * @param contentPageReference the reference of the skipped content page
+     * @param contentPageMetadata the metadata of the skipped content page
+     * @param variantReference the published variant, {@code null} if none
+     * @param configuration the publication configuration
+     * @return the parameters of the message logged by the publication for the skipped page, as
+     *     {@link #isToBePublished(DocumentReference, PageMetadata, XWikiDocument, Map, Locale)} would
+     */
+    private List<Object> getSkipReasonParameters(String skipReason, DocumentReference contentPageReference,
+        PageMetadata contentPageMetadata, DocumentReference variantReference, Map<String, Object> configuration)
+    {
+        switch (skipReason) {
+            case "incomplete_status":
+                return Arrays.asList(contentPageReference, contentPageMetadata.getStatus(),
+                    BookVersionsConstants.PAGESTATUS_PROP_STATUS_COMPLETE);
+            case "wrong_variant":
+                return Arrays.asList(contentPageReference, variantReference);
+            case "no_translation":
+                return Arrays.asList(contentPageReference,
+                    configuration.get(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_LANGUAGE));
+            case "not_translated_status":
+                return Arrays.asList(contentPageReference, PageTranslationStatus.TRANSLATED);
+            default:
+                return Collections.singletonList(contentPageReference);
+        }
+    }
+
+    /**
+     * Log why a page is skipped by a publication executing a plan, as the publication computing its own plan does.
+     *
+     * @param action the planned action of the page
+     * @param userLocale the locale of the messages
+     */
+    private void logPlannedSkip(PublicationPlan.Action action, Locale userLocale)
+    {
+        String prefix = "BookVersions.DefaultBookVersionsManager.";
+        Object[] parameters = action.getReasonParameters().toArray();
+        switch (StringUtils.defaultString(action.getReason())) {
+            case "not_a_page":
+                logger.error(localization.getTranslationPlain(prefix + "publishInternal.notCollection", userLocale));
+                break;
+            case "no_content":
+                logger.warn(localization.getTranslationPlain(prefix + "publishInternal.noContent", userLocale));
+                break;
+            case "no_target":
+                logger.error(localization.getTranslationPlain(prefix + "publishInternal.targetRefNotComputed",
+                    userLocale));
+                break;
+            case "marked_deleted":
+                logger.info(localization.getTranslationPlain(prefix + "isToBePublished.markedAsDeleted", userLocale,
+                    parameters));
+                break;
+            case "incomplete_status":
+                logger.info(localization.getTranslationPlain(prefix + "isToBePublished.status", userLocale,
+                    parameters));
+                break;
+            case "variant_page_no_variant_selected":
+                logger.info(localization.getTranslationPlain(prefix + "isToBePublished.variantPage", userLocale,
+                    parameters));
+                break;
+            case "wrong_variant":
+                logger.info(localization.getTranslationPlain(prefix + "isToBePublished.otherVariant", userLocale,
+                    parameters));
+                break;
+            case "no_translation":
+                logger.info(localization.getTranslationPlain(prefix + "isToBePublished.noTranslation", userLocale,
+                    parameters));
+                break;
+            case "not_translated_status":
+                logger.info(localization.getTranslationPlain(prefix + "isToBePublished.noCompleteTranslation",
+                    userLocale, parameters));
+                break;
+            default:
+                logger.debug("[publishInternal] Page [{}] is skipped: [{}].", action.getPageStringReference(),
+                    action.getReason());
+        }
+    }
+
     /**
      * Preview version of isToBePublished that collects information about why pages would or wouldn't be published
      * without affecting the actual publication logic.
+     * @param contentPageReference the reference of the content to be published
+     * @param contentPageMetadata the metadata of the content to be published
+     * @return {@code null} if the page is to be published, the reason why it is not otherwise
      * @throws QueryException In case something goes wrong.
      * @throws XWikiException In case something goes wrong.
      */
-    private boolean previewIsToBePublished(DocumentReference contentPageReference, DocumentReference variantReference,
+    private String previewIsToBePublished(DocumentReference contentPageReference, PageMetadata contentPageMetadata,
+                                           DocumentReference variantReference,
                                            Map<String, Object> configuration, Locale userLocale,
                                            List<Map<String, Object>> previewLines, DocumentReference pageReference)
         throws QueryException, XWikiException
     {
-        if (contentPageReference == null || configuration == null) {
-            return false;
+        if (contentPageReference == null || contentPageMetadata == null || configuration == null) {
+            return "missing_input";
         }
         if (userLocale == null) {
             userLocale = new Locale(BookVersionsConstants.DEFAULT_LOCALE);
         }
 
-        List<DocumentReference> variants = getPageVariants(contentPageReference);
-        String status = getPageStatus(contentPageReference);
+        List<DocumentReference> variants = contentPageMetadata.getVariants();
+        String status = contentPageMetadata.getStatus();
         boolean publishOnlyComplete =
                 (boolean) configuration.get(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_PUBLISHONLYCOMPLETE);
         boolean excludePagesOutsideVariant = false;
@@ -2323,7 +2990,7 @@ public class DefaultBookVersionsManager implements BookVersionsManager
         Map<String, Object> reasonLine = new HashMap<>();
         Map<String, Object> reasonInfo = new HashMap<>();
 
-        if (isMarkedDeleted(contentPageReference)) {
+        if (contentPageMetadata.isMarkedDeleted()) {
             // Page is marked as deleted
             reasonInfo.put("pageRef", pageReference);
             reasonInfo.put("reason", "marked_deleted");
@@ -2332,7 +2999,7 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             reasonLine.put("message", "Page is marked as deleted");
             reasonLine.put("variable", reasonInfo);
             previewLines.add(reasonLine);
-            return false;
+            return "marked_deleted";
         } else if (publishOnlyComplete && status != null
                 && !status.equals(BookVersionsConstants.PAGESTATUS_PROP_STATUS_COMPLETE)) {
             // Page doesn't have a "complete" status but only those are published
@@ -2344,7 +3011,7 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             reasonLine.put("message", "Page has status " + status + " but only COMPLETE pages are being published");
             reasonLine.put("variable", reasonInfo);
             previewLines.add(reasonLine);
-            return false;
+            return "incomplete_status";
         } else if (variantReference == null && variants != null && !variants.isEmpty()) {
             // No variant to be published AND page is associated with variant(s)
             reasonInfo.put("pageRef", pageReference);
@@ -2354,7 +3021,7 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             reasonLine.put("message", "Page is associated with variants but no variant is being published");
             reasonLine.put("variable", reasonInfo);
             previewLines.add(reasonLine);
-            return false;
+            return "variant_page_no_variant_selected";
         } else if (variantReference != null && variants != null && !variants.contains(variantReference)
                 && (excludePagesOutsideVariant || (!excludePagesOutsideVariant && !variants.isEmpty()))) {
             // A variant is to be published AND the page is associated with other variant(s)
@@ -2367,9 +3034,9 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             reasonLine.put("message", "Page is not associated with the published variant");
             reasonLine.put("variable", reasonInfo);
             previewLines.add(reasonLine);
-            return false;
+            return "wrong_variant";
         } else if (StringUtils.isNotEmpty(language)) {
-            Map<String, Map<String, Object>> languageData = getLanguageData(contentPageReference);
+            Map<String, Map<String, Object>> languageData = contentPageMetadata.getLanguageData();
             if (languageData.get(language) == null) {
                 // The page has no translation
                 reasonInfo.put("pageRef", pageReference);
@@ -2380,7 +3047,7 @@ public class DefaultBookVersionsManager implements BookVersionsManager
                 reasonLine.put("message", "Page has no translation for language");
                 reasonLine.put("variable", reasonInfo);
                 previewLines.add(reasonLine);
-                return false;
+                return "no_translation";
             } else if (languageData.get(language).get(BookVersionsConstants.PAGETRANSLATION_HASTRANSLATED) == null
                     || !((boolean) languageData.get(language).get(BookVersionsConstants.PAGETRANSLATION_HASTRANSLATED))) {
                 // The page has no "Translated" translation
@@ -2393,7 +3060,7 @@ public class DefaultBookVersionsManager implements BookVersionsManager
                 reasonLine.put("message", "Page's translation doesn't have TRANSLATED status");
                 reasonLine.put("variable", reasonInfo);
                 previewLines.add(reasonLine);
-                return false;
+                return "not_translated_status";
             }
         }
 
@@ -2410,7 +3077,7 @@ public class DefaultBookVersionsManager implements BookVersionsManager
         }
 
         if (StringUtils.isNotEmpty(language)) {
-            Map<String, Map<String, Object>> languageData = getLanguageData(contentPageReference);
+            Map<String, Map<String, Object>> languageData = contentPageMetadata.getLanguageData();
             publishReasonInfo.put("language", language);
             publishReasonInfo.put("translationStatus", languageData.get(language).get(BookVersionsConstants.PAGETRANSLATION_STATUS));
         }
@@ -2419,13 +3086,21 @@ public class DefaultBookVersionsManager implements BookVersionsManager
         publishReasonLine.put("variable", publishReasonInfo);
         previewLines.add(publishReasonLine);
 
-        return true;
+        return null;
     }
 
     @Override
     public void publishInternal(DocumentReference configurationReference, DocumentReference userDocumentReference,
         Locale userLocale)
         throws XWikiException, QueryException, ComponentLookupException, ParseException
+    {
+        publishInternal(configurationReference, userDocumentReference, userLocale, false);
+    }
+
+    @Override
+    public void publishInternal(DocumentReference configurationReference, DocumentReference userDocumentReference,
+        Locale userLocale, boolean resume)
+        throws XWikiException, QueryException, ComponentLookupException, ParseException
     {
         if (configurationReference == null || userDocumentReference == null) {
             logger.error(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager.publishInternal."
@@ -2475,13 +3150,31 @@ public class DefaultBookVersionsManager implements BookVersionsManager
                 + "noBehaviour", userLocale, configurationReference));
             return;
         }
-        String language = (String) configuration.get(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_LANGUAGE);
+        // The published pages can always be published again, keeping a copy of them in the recycle bin is optional
+        boolean toRecycleBin =
+            !Boolean.TRUE.equals(configuration.get(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_SKIPRECYCLEBIN));
         DocumentReference targetDocumentReference =
             new DocumentReference(new EntityReference(xwiki.DEFAULT_SPACE_HOMEPAGE,
                 EntityType.DOCUMENT, targetReference));
-        List<String> subTargetDocumentsString = queryPages(targetDocumentReference);
-        if (publicationBehaviour.equals(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_PUBLISHBEHAVIOUR_CANCEL)
-            && !isEmptyTargetSpace(subTargetDocumentsString, targetDocumentReference))
+        String planStamp = getPublicationPlanStamp(configurationReference, configuration, sourceReference);
+        PublicationCheckpoint checkpoint = resume ? publicationCheckpointStore.load(configurationReference)
+            : new PublicationCheckpoint(planStamp);
+        if (resume) {
+            if (checkpoint == null) {
+                logger.error(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager"
+                    + ".publishInternal.noCheckpoint", userLocale, configurationReference));
+                return;
+            } else if (!planStamp.equals(checkpoint.getStamp())) {
+                logger.error(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager"
+                    + ".publishInternal.checkpointOutdated", userLocale, configurationReference));
+                return;
+            }
+            // The destination already holds the pages published before the interruption, it must not be emptied
+            logger.info(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager.publishInternal"
+                + ".resumePublication", userLocale, checkpoint.getProcessedPages().size()));
+        } else if (publicationBehaviour.equals(
+            BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_PUBLISHBEHAVIOUR_CANCEL)
+            && !isEmptyTargetSpace(targetDocumentReference))
         {
             logger.info(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager.publishInternal."
                 + "targetNotEmpty", userLocale, targetReference));
@@ -2492,13 +3185,18 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             // Clear the destination space
             logger.info(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager.publishInternal."
                 + "targetEmptying", userLocale, targetReference));
-            if (xwiki.exists(targetDocumentReference, xcontext)) {
-                // also removing the top page
-                subTargetDocumentsString.add(localSerializer.serialize(targetDocumentReference));
+            Iterator<String> subTargetDocumentsString = iteratePages(targetDocumentReference, null, QUERY_PAGE_SIZE);
+            while (subTargetDocumentsString.hasNext()) {
+                List<String> toRemove = new ArrayList<>();
+                while (subTargetDocumentsString.hasNext() && toRemove.size() < QUERY_PAGE_SIZE) {
+                    toRemove.add(subTargetDocumentsString.next());
+                }
+                logger.debug("[publishInternal] Emptying the destination space, removing [{}] from wiki [{}].",
+                    toRemove, targetDocumentReference.getWikiReference());
+                removeDocuments(toRemove, targetDocumentReference, userDocumentReference, toRecycleBin);
             }
-            logger.debug("[publishInternal] Emptying the destination space, removing [{}] from wiki [{}].",
-                subTargetDocumentsString, targetDocumentReference.getWikiReference());
-            removeDocuments(subTargetDocumentsString, targetDocumentReference, userDocumentReference);
+            // also removing the top page
+            removeDocuments(Collections.singletonList(targetDocumentReference), userDocumentReference, toRecycleBin);
         }
 
         DocumentReference collectionReference = getVersionedCollectionReference(sourceReference);
@@ -2515,8 +3213,6 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             (DocumentReference) configuration.get(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_VARIANT);
         XWikiDocument variant = variantReference != null ? xwiki.getDocument(variantReference, xcontext) : null;
 
-        String targetTitle = (String) configuration.get(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_TITLE);
-
         Map<String, Map<DocumentReference, DocumentReference>> publishedLibraries =
             collection != null && versionReference != null && isBook(collectionReference)
                 ? getUsedPublishedLibrariesWithInheritance(collection.getDocumentReference(), versionReference) : null;
@@ -2526,237 +3222,851 @@ public class DefaultBookVersionsManager implements BookVersionsManager
         // Execute publication job
         logger.info(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager.publishInternal"
                 + ".startPublication", userLocale));
-        List<String> pageReferenceTree = getPageReferenceTree(sourceReference);
-        List<DocumentReference> markedAsDeletedReferences = new ArrayList<>();
-        int i = 1;
-        int pageQuantity = pageReferenceTree != null ? pageReferenceTree.size() : 0;
+        // Reuse the plan computed by the preview if the source did not change since
+        PublicationPlan plan = publicationPlanCache.get(configurationReference, planStamp);
+        PublicationRun run = new PublicationRun(configurationReference, configuration, sourceReference,
+            targetReference, variant, publishedLibraries,
+            plan != null ? Collections.emptyMap() : pageMetadataLoader.load(sourceReference), userReference,
+            publicationComment, userLocale, plan);
+        Iterator<String> pageReferenceTree;
+        int pageQuantity;
+        if (plan != null) {
+            logger.debug("[publishInternal] Executing the plan computed by the preview of [{}].",
+                configurationReference);
+            List<String> plannedPages = plan.getPageStringReferences();
+            pageReferenceTree = plannedPages.iterator();
+            pageQuantity = plannedPages.size();
+        } else {
+            pageReferenceTree = resolvingPageTypes(getPageReferenceTree(sourceReference), configurationReference);
+            pageQuantity = (int) countPages(sourceReference, BookVersionsConstants.BOOKPAGE_CLASS_REFERENCE) + 1;
+        }
+        // The pages queued for deletion before the interruption are removed at the end, with the new ones
+        run.getMarkedAsDeletedReferences().addAll(checkpoint.getDeletionQueue());
+        // The published pages matched before the interruption are not orphans, even if they're not processed again
+        run.getPublishedReferences().addAll(checkpoint.getPublishedPages());
+        int parallelism = getPublicationParallelism(configuration);
         progressManager.pushLevelProgress(pageQuantity, this);
-        for (String pageStringReference : pageReferenceTree) {
-            if (pageStringReference == null) {
-                logger.debug("[publishInternal] Page publication cancelled because the page reference is null.");
-                logger.error(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager.publishInternal"
-                    + ".refNotFound", userLocale));
-                continue;
-            }
-
-            progressManager.startStep(this, pageStringReference);
-            logger.info(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager.publishInternal"
-                + ".startPagePublication", userLocale, i, pageQuantity, pageStringReference));
-            i++;
-            DocumentReference pageReference = referenceResolver.resolve(pageStringReference, configurationReference);
-
-            if (!isPage(pageReference)) {
-                logger.debug("[publishInternal] Page does not have a [{}] object.",
-                    BookVersionsConstants.BOOKPAGE_CLASS_REFERENCE);
-                logger.error(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager.publishInternal"
-                    + ".notCollection", userLocale));
-                continue;
-            }
-            XWikiDocument page = xwiki.getDocument(pageReference, xcontext);
-
-            // Get the relevant content for the page
-            DocumentReference contentPageReference = getContentPage(page, configuration);
-            logger.debug("[publishInternal] For page [{}], the content will be taken from [{}]",
-                page.getDocumentReference(), contentPageReference);
-            if (contentPageReference == null) {
-                logger.debug("[publishInternal] Page publication cancelled because the content to be published can't "
-                    + "be found by getContentPage. One input is probably null.");
-                logger.warn(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager.publishInternal"
-                    + ".noContent", userLocale));
-                continue;
+        boolean ended = false;
+        try {
+            if (parallelism > 1) {
+                publishPagesInParallel(run, checkpoint, pageReferenceTree, pageQuantity, parallelism);
+            } else {
+                publishPages(run, checkpoint, pageReferenceTree, pageQuantity);
             }
-
-            // Get the published reference
-            DocumentReference publishedReference =
-                getPublishedReference(pageReference, sourceReference, targetReference);
-            if (publishedReference == null) {
-                logger.debug("[publishInternal] Page publication cancelled because the published reference can't be "
-                    + "computed by getPublishedReference. One input is null.");
-                logger.error(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager.publishInternal"
-                    + ".targetRefNotComputed", userLocale));
-                continue;
+            List<DocumentReference> markedAsDeletedReferences = run.getMarkedAsDeletedReferences();
+
+            // Remove the pages marked as deleted
+            if ((publicationBehaviour.equals(
+                BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_PUBLISHBEHAVIOUR_UPDATE)
+                || publicationBehaviour.equals(
+                    BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_PUBLISHBEHAVIOUR_INCREMENTAL)
+                || publicationBehaviour.equals(
+                    BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_PUBLISHBEHAVIOUR_SYNC))
+                && markedAsDeletedReferences.size() > 0)
+            {
+                logger.info(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager"
+                    + ".publishInternal.removeMarkedAsDeleted", userLocale));
+                logger.debug("[publishInternal] Removing the following marked as deleted pages [{}].",
+                    markedAsDeletedReferences);
+                removeDocuments(markedAsDeletedReferences, userDocumentReference, toRecycleBin);
             }
 
-            // Check if the content should be published
-            XWikiDocument contentPage = xwiki.getDocument(contentPageReference, xcontext).clone();
-            if (!isToBePublished(contentPageReference, variant, configuration, userLocale)) {
-                if (isMarkedDeleted(contentPageReference)) {
-                    // The original document is marked as deleted, add the published copy to be deleted from target
-                    markedAsDeletedReferences.add(publishedReference);
-                }
-                continue;
+            // Remove the published pages which don't match a published source page anymore
+            if (publicationBehaviour.equals(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_PUBLISHBEHAVIOUR_SYNC))
+            {
+                logger.info(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager"
+                    + ".publishInternal.removeOrphans", userLocale));
+                removeOrphans(run, targetDocumentReference, userDocumentReference, toRecycleBin);
             }
 
-            // Create the published document
-            logger.info(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager.publishInternal"
-                + ".copyPage", userLocale, contentPage.getDocumentReference(), publishedReference));
-            XWikiDocument publishedDocument = xwiki.getDocument(publishedReference, xcontext);
-            if (StringUtils.isNotEmpty(language)) {
-                // Change the original content if a translation is to be published
-                mergeTranslatedContent(contentPage, publishedDocument, language);
+            if (plan != null ? plan.contains(PublicationPlan.ActionType.PAGE_ORDER)
+                : (boolean) configuration.get("publishPageOrder"))
+            {
+                logger.info(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager"
+                    + ".publishInternal.updatePageOrder", userLocale));
+                copyPinnedPagesInfo(sourceReference, targetReference, publicationComment,
+                    configurationReference, userReference);
             }
-            copyContentsToNewVersion(contentPage, publishedDocument, xcontext,
-                getRemovedObjectsForPublication(contentPage.getDocumentReference(), xcontext));
 
-            logger.info(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager.publishInternal"
-                + ".transformContent", userLocale));
-            prepareForPublication(sourceReference, contentPage, publishedDocument, publishedLibraries, configuration, userLocale);
-
-            logger.debug("[publishInternal] Publish page.");
-            publishedDocument.getAuthors().setEffectiveMetadataAuthor(userReference);
-            publishedDocument.getAuthors().setOriginalMetadataAuthor(userReference);
-            if (pageReference.equals(sourceReference) && StringUtils.isNotEmpty(targetTitle)) {
-                publishedDocument.setTitle(targetTitle);
+            // Add metadata in the collection page (master) and top page (published space)
+            logger.debug("[publishInternal] Adding metadata on master and published space top pages.");
+            String collectionVersion = addMasterPublicationData(collection, configuration, userReference);
+            addTopPublicationData(targetReference, publicationComment, collection, collectionVersion, configuration,
+                userReference, collectionReference);
+            ended = true;
+        } finally {
+            if (!ended) {
+                saveFailedPublicationCheckpoint(run, checkpoint);
             }
-            xwiki.saveDocument(publishedDocument, publicationComment, xcontext);
-            logger.debug("[publishInternal] End working on page [{}].", pageStringReference);
-            logger.info(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager.publishInternal"
-                + ".endPagePublication", userLocale, pageStringReference));
-            progressManager.endStep(this);
-        }
-
-        // Remove the pages marked as deleted
-        if (publicationBehaviour.equals(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_PUBLISHBEHAVIOUR_UPDATE)
-            && markedAsDeletedReferences.size() > 0)
-        {
-            logger.info(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager.publishInternal"
-                + ".removeMarkedAsDeleted", userLocale));
-            logger.debug("[publishInternal] Removing the following marked as deleted pages [{}].",
-                markedAsDeletedReferences);
-            removeDocuments(markedAsDeletedReferences, userDocumentReference);
-        }
-
-        if ((boolean) configuration.get("publishPageOrder")) {
-            logger.info(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager.publishInternal"
-                + ".updatePageOrder", userLocale));
-            copyPinnedPagesInfo(sourceReference, targetReference, publicationComment,
-                configurationReference, userReference);
+            // Also when the publication failed, so that the progress of the job stays consistent
+            progressManager.popLevelProgress(this);
         }
-
-        // Add metadata in the collection page (master) and top page (published space)
-        logger.debug("[publishInternal] Adding metadata on master and published space top pages.");
-        addMasterPublicationData(collection, configuration, userReference);
-        addTopPublicationData(targetReference, publicationComment, collection, configuration, userReference,
-            collectionReference);
+        publicationCheckpointStore.delete(configurationReference);
 
         logger.debug("[publishInternal] Publication ended.");
         logger.info(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager.publishInternal"
             + ".endPublication", userLocale, targetDocumentReference));
-        progressManager.popLevelProgress(this);
     }
 
-    @Override
-    public String removeVersionContent(DocumentReference versionReference) throws JobException
+    /**
+     * Publish the pages of the tree one after the other, saving a checkpoint regularly. The published pages are saved
+     * by batches, and only added to the checkpoint once their batch is written, so that a page still waiting in the
+     * batch is published again when resuming.
+     *
+     * @param run the publication
+     * @param checkpoint the progress of the publication
+     * @param pageReferenceTree the pages to publish
+     * @param pageQuantity the number of pages to publish
+     * @throws XWikiException happens if the publication of a page has an issue
+     * @throws QueryException happens if the publication of a page has an issue
+     * @throws ComponentLookupException happens if the publication of a page has an issue
+     * @throws ParseException happens if the publication of a page has an issue
+     */
+    private void publishPages(PublicationRun run, PublicationCheckpoint checkpoint,
+        Iterator<String> pageReferenceTree, int pageQuantity)
+        throws XWikiException, QueryException, ComponentLookupException, ParseException
     {
-        if (versionReference == null) {
-            return null;
+        int checkpointInterval = publicationCheckpointStore.getInterval();
+        List<String> pendingPages = new ArrayList<>();
+        try (DocumentBatch batch = documentBatchWriter.open(this.getXWikiContext())) {
+            int i = 1;
+            while (pageReferenceTree.hasNext()) {
+                String pageStringReference = pageReferenceTree.next();
+                progressManager.startStep(this, pageStringReference);
+                if (!checkpoint.isProcessed(pageStringReference)) {
+                    logger.info(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager"
+                        + ".publishInternal.startPagePublication", run.getUserLocale(), i, pageQuantity,
+                        pageStringReference));
+                    publishPage(run, pageStringReference, batch);
+                    pendingPages.add(pageStringReference);
+                    if (pendingPages.size() >= checkpointInterval) {
+                        batch.flush();
+                        pendingPages.forEach(checkpoint::markProcessed);
+                        pendingPages.clear();
+                        savePublicationCheckpoint(run, checkpoint);
+                    }
+                }
+                i++;
+                progressManager.endStep(this);
+            }
         }
+        pendingPages.forEach(checkpoint::markProcessed);
+    }
 
-        DefaultRequest jobRequest = new DefaultRequest();
-        String jobId = BookVersionsConstants.VERSIONCONTENTREMOVE_JOBID_PREFIX
-            + BookVersionsConstants.PUBLICATION_JOBID_SEPARATOR + versionReference.getName()
-            + BookVersionsConstants.PUBLICATION_JOBID_SEPARATOR + Instant.now().toString();
-        if (jobId != null) {
-            jobRequest.setId(jobId);
-            jobRequest.setProperty("versionReference", versionReference);
-            // The context won't be full in deleteVersionContentInternal as it is executed by a job, so the user
-            // executing the deletion have to be passed as parameter.
-            XWikiContext xcontext = this.getXWikiContext();
-            jobRequest.setProperty("userReference", xcontext.getUserReference());
-            jobExecutor.execute(BookVersionsConstants.VERSIONCONTENTREMOVEJOB_TYPE, jobRequest);
+    /**
+     * Save the progress of a publication, so that it can be resumed if it's interrupted.
+     *
+     * @param run the publication
+     * @param checkpoint the progress of the publication
+     * @throws XWikiException happens if the checkpoint can't be saved
+     */
+    private void savePublicationCheckpoint(PublicationRun run, PublicationCheckpoint checkpoint)
+        throws XWikiException
+    {
+        // The workers of a parallel publication might still be marking pages as deleted
+        publicationCheckpointStore.save(run.getConfigurationReference(), checkpoint,
+            new ArrayList<>(run.getMarkedAsDeletedReferences()), run.getPublishedReferences(),
+            run.getUserReference());
+        logger.info(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager.publishInternal"
+            + ".checkpointSaved", run.getUserLocale(), checkpoint.getProcessedPages().size()));
+    }
+
+    /**
+     * Save the progress of a failed publication, without hiding the failure if the checkpoint can't be saved either.
+     *
+     * @param run the publication
+     * @param checkpoint the progress of the publication
+     */
+    private void saveFailedPublicationCheckpoint(PublicationRun run, PublicationCheckpoint checkpoint)
+    {
+        try {
+            savePublicationCheckpoint(run, checkpoint);
+        } catch (XWikiException e) {
+            logger.warn("Failed to save the checkpoint of the publication of [{}].", run.getConfigurationReference(),
+                e);
         }
-        return jobId;
     }
 
-    @Override
-    public void removeVersionContentInternal(DocumentReference versionReference, DocumentReference userReference)
-        throws QueryException, XWikiException
+    /**
+     * Publish the pages of the tree with a pool of workers. The pages of a level of the tree are all published before
+     * the pages of the next level, so that parent pages are always published before their children. The workers only
+     * publish the pages: the logs they produce are replayed in the job thread, which is also the only one reporting
+     * the progress and updating the checkpoint.
+     *
+     * @param run the publication
+     * @param checkpoint the progress of the publication
+     * @param pageReferenceTree the pages to publish
+     * @param pageQuantity the number of pages to publish
+     * @param parallelism the number of pages to publish at the same time
+     * @throws XWikiException happens if the publication of a page has an issue
+     * @throws QueryException happens if the publication of a page has an issue
+     * @throws ComponentLookupException happens if the publication of a page has an issue
+     * @throws ParseException happens if the publication of a page has an issue
+     */
+    private void publishPagesInParallel(PublicationRun run, PublicationCheckpoint checkpoint,
+        Iterator<String> pageReferenceTree, int pageQuantity, int parallelism)
+        throws XWikiException, QueryException, ComponentLookupException, ParseException
     {
-        if (versionReference == null || userReference == null) {
-            return;
+        // Only the references are kept in memory, grouped by depth in the tree
+        TreeMap<Integer, List<String>> levels = new TreeMap<>();
+        int i = 1;
+        while (pageReferenceTree.hasNext()) {
+            String pageStringReference = pageReferenceTree.next();
+            if (checkpoint.isProcessed(pageStringReference)) {
+                progressManager.startStep(this, pageStringReference);
+                progressManager.endStep(this);
+                i++;
+                continue;
+            }
+            int depth = referenceResolver.resolve(pageStringReference, run.getConfigurationReference())
+                .getSpaceReferences().size();
+            levels.computeIfAbsent(depth, k -> new ArrayList<>()).add(pageStringReference);
         }
 
-        DocumentReference collectionReference = getVersionedCollectionReference(versionReference);
-        String versionName = getVersionName(versionReference);
-        List<String> contentPageRefStrings =
-            queryPages(collectionReference, BookVersionsConstants.BOOKVERSIONEDCONTENT_CLASS_REFERENCE);
-        List<DocumentReference> versionContentPageRefs = new ArrayList<>();
-        for (String contentPageRefString : contentPageRefStrings) {
-            DocumentReference contentPageRef = referenceResolver.resolve(contentPageRefString, collectionReference);
-            if (versionName.equals(getEscapedName(contentPageRef))) {
-                versionContentPageRefs.add(contentPageRef);
+        XWikiContext xcontext = this.getXWikiContext();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "BookVersions publication of " + run.getConfigurationReference());
+            thread.setDaemon(true);
+            return thread;
+        });
+        int checkpointInterval = publicationCheckpointStore.getInterval();
+        try {
+            for (List<String> level : levels.values()) {
+                CompletionService<String> completionService = new ExecutorCompletionService<>(executor);
+                Map<Future<String>, LogQueue> workerLogs = new HashMap<>();
+                for (String pageStringReference : level) {
+                    logger.info(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager"
+                        + ".publishInternal.startPagePublication", run.getUserLocale(), i, pageQuantity,
+                        pageStringReference));
+                    i++;
+                    LogQueue logQueue = new LogQueue();
+                    workerLogs.put(completionService.submit(() -> {
+                        publishPageInWorker(run, pageStringReference, xcontext, logQueue);
+                        return pageStringReference;
+                    }), logQueue);
+                }
+                // The progress is reported from the job thread, as it's the one the job progress is bound to
+                for (int j = 0; j < level.size(); j++) {
+                    String pageStringReference = getPublishedPage(completionService, workerLogs);
+                    progressManager.startStep(this, pageStringReference);
+                    // Each worker saves its page before returning, the page is saved once it's completed
+                    if (checkpoint.markProcessed(pageStringReference) % checkpointInterval == 0) {
+                        savePublicationCheckpoint(run, checkpoint);
+                    }
+                    progressManager.endStep(this);
+                }
             }
+        } finally {
+            executor.shutdownNow();
         }
-        removeDocuments(versionContentPageRefs, userReference);
     }
 
+    private String getPublishedPage(CompletionService<String> completionService,
+        Map<Future<String>, LogQueue> workerLogs)
+        throws XWikiException, QueryException, ComponentLookupException, ParseException
+    {
+        try {
+            Future<String> publishedPage = completionService.take();
+            // The logs of the worker are only captured by the job log once they are logged in the job thread
+            workerLogs.remove(publishedPage).log(logger);
+            return publishedPage.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new XWikiException(XWikiException.MODULE_XWIKI_APP, XWikiException.ERROR_XWIKI_UNKNOWN,
+                "The publication has been interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof XWikiException) {
+                throw (XWikiException) cause;
+            } else if (cause instanceof QueryException) {
+                throw (QueryException) cause;
+            } else if (cause instanceof ComponentLookupException) {
+                throw (ComponentLookupException) cause;
+            } else if (cause instanceof ParseException) {
+                throw (ParseException) cause;
+            }
+            throw new XWikiException(XWikiException.MODULE_XWIKI_APP, XWikiException.ERROR_XWIKI_UNKNOWN,
+                "Failed to publish a page", cause);
+        }
+    }
 
     /**
-     * Remove the given documents
+     * Publish a page from a worker thread, in an execution context of its own holding a clone of the XWiki context
+     * of the publication.
      *
-     * @param documentReferencesString the documents to remove
-     * @param referenceParameter the reference used as a parameter to resolve the document references
-     * @param userReference the reference of the user who removes the documents
-     * @throws XWikiException happens if there is an issue with the document deletion
+     * @param run the publication
+     * @param pageStringReference the reference of the page to publish
+     * @param xcontext the XWiki context of the publication
+     * @param logQueue where to keep the logs of the page publication, until they're replayed in the job thread
+     * @throws Exception happens if the execution context can't be initialized or the page publication has an issue
      */
-    private void removeDocuments(List<String> documentReferencesString, DocumentReference referenceParameter,
-        DocumentReference userReference)
-        throws XWikiException
+    private void publishPageInWorker(PublicationRun run, String pageStringReference, XWikiContext xcontext,
+        LogQueue logQueue) throws Exception
     {
-        if (documentReferencesString == null || referenceParameter == null) {
-            return;
-        }
-        List<DocumentReference> toDeleteReferences = new ArrayList<>();
-        for (String toDeleteRefString : documentReferencesString) {
-            toDeleteReferences.add(referenceResolver.resolve(toDeleteRefString, referenceParameter));
+        loggerManager.pushLogListener(new LogQueueListener(LogQueueListener.class.getName(), logQueue));
+        try {
+            ExecutionContext executionContext = new ExecutionContext();
+            xcontext.clone().declareInExecutionContext(executionContext);
+            executionContextManager.initialize(executionContext);
+            // The page is written when its batch is closed, before the worker returns
+            try (DocumentBatch batch = documentBatchWriter.open(getXWikiContext())) {
+                publishPage(run, pageStringReference, batch);
+            } finally {
+                execution.removeContext();
+            }
+        } finally {
+            loggerManager.popLogListener();
         }
-        removeDocuments(toDeleteReferences, userReference);
     }
 
     /**
-     * Remove the given documents
+     * Publish one page of the tree: take its content for the published version, transform it and save it in the
+     * destination space.
      *
-     * @param documentReferences the documents to remove
-     * @param userReference the reference of the user who removes the documents
-     * @throws XWikiException happens if there is an issue with the document deletion or checking its existence
+     * @param run the publication
+     * @param pageStringReference the reference of the page to publish
+     * @param batch the batch to save the published page with
+     * @throws XWikiException happens if loading or saving a document has an issue
+     * @throws QueryException happens if a query to get the content has an issue
+     * @throws ComponentLookupException happens if the content transformation has an issue
+     * @throws ParseException happens if the content transformation has an issue
      */
-    private void removeDocuments(List<DocumentReference> documentReferences, DocumentReference userReference)
-        throws XWikiException
+    private void publishPage(PublicationRun run, String pageStringReference, DocumentBatch batch)
+        throws XWikiException, QueryException, ComponentLookupException, ParseException
     {
-        if (documentReferences == null) {
+        Locale userLocale = run.getUserLocale();
+        Map<String, Object> configuration = run.getConfiguration();
+        DocumentReference sourceReference = run.getSourceReference();
+        if (pageStringReference == null) {
+            logger.debug("[publishInternal] Page publication cancelled because the page reference is null.");
+            logger.error(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager.publishInternal"
+                + ".refNotFound", userLocale));
             return;
         }
+
         XWikiContext xcontext = this.getXWikiContext();
         XWiki xwiki = xcontext.getWiki();
-
-        for (DocumentReference toDeleteRef : documentReferences) {
-            if (xwiki.exists(toDeleteRef, xcontext)) {
-                logger.debug("[removeDocuments] Deleting [{}].", toDeleteRef);
-                xcontext.setUserReference(userReference);
-                xwiki.deleteDocument(xwiki.getDocument(toDeleteRef, xcontext), xcontext);
+        DocumentReference pageReference =
+            referenceResolver.resolve(pageStringReference, run.getConfigurationReference());
+
+        if (run.getPlan() != null) {
+            // The checks were done by the preview, only execute what it planned and log what it found
+            PublicationPlan.Action action = run.getPlan().getPageAction(pageStringReference);
+            if (action != null && action.getType() == PublicationPlan.ActionType.COPY) {
+                publishContent(run, pageReference, action.getContentPageReference(),
+                    action.getPublishedReference(), batch);
+            } else if (action != null) {
+                logPlannedSkip(action, userLocale);
+                if (action.getType() == PublicationPlan.ActionType.DELETE) {
+                    run.getMarkedAsDeletedReferences().add(action.getPublishedReference());
+                }
             }
+            return;
         }
-    }
 
-    /**
-     * Merge the new document's translated content with the current published document's content. This has some
-     * limitations:
-     * - only the first "Translated" macro of the right language will be considered
-     * - the content outside the macro will be ignored
-     * - New content will only be added to the end of the published document
-     * @param masterDocument the document to take the translated content from
+        if (!isPage(pageReference)) {
+            logger.debug("[publishInternal] Page does not have a [{}] object.",
+                BookVersionsConstants.BOOKPAGE_CLASS_REFERENCE);
+            logger.error(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager.publishInternal"
+                + ".notCollection", userLocale));
+            return;
+        }
+        XWikiDocument page = xwiki.getDocument(pageReference, xcontext);
+
+        // Get the relevant content for the page
+        DocumentReference contentPageReference = getContentPage(page, configuration);
+        logger.debug("[publishInternal] For page [{}], the content will be taken from [{}]",
+            page.getDocumentReference(), contentPageReference);
+        if (contentPageReference == null) {
+            logger.debug("[publishInternal] Page publication cancelled because the content to be published can't "
+                + "be found by getContentPage. One input is probably null.");
+            logger.warn(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager.publishInternal"
+                + ".noContent", userLocale));
+            return;
+        }
+
+        // Get the published reference
+        DocumentReference publishedReference =
+            getPublishedReference(pageReference, sourceReference, run.getTargetReference());
+        if (publishedReference == null) {
+            logger.debug("[publishInternal] Page publication cancelled because the published reference can't be "
+                + "computed by getPublishedReference. One input is null.");
+            logger.error(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager.publishInternal"
+                + ".targetRefNotComputed", userLocale));
+            return;
+        }
+
+        // Check if the content should be published
+        PageMetadata contentPageMetadata =
+            getPageMetadata(run.getPagesMetadata(), sourceReference, contentPageReference);
+        if (!isToBePublished(contentPageReference, contentPageMetadata, run.getVariant(), configuration,
+            userLocale))
+        {
+            if (contentPageMetadata.isMarkedDeleted()) {
+                // The original document is marked as deleted, add the published copy to be deleted from target
+                run.getMarkedAsDeletedReferences().add(publishedReference);
+            }
+            return;
+        }
+
+        publishContent(run, pageReference, contentPageReference, publishedReference, batch);
+    }
+
+    /**
+     * Publish the content of a page to its published page.
+     *
+     * @param run the publication
+     * @param pageReference the reference of the page to publish
+     * @param contentPageReference the reference of the page holding the content to publish
+     * @param publishedReference the reference of the published page
+     * @param batch the batch to save the published page with
+     * @throws XWikiException happens if loading or saving a document has an issue
+     * @throws QueryException happens if a query to get the content has an issue
+     * @throws ComponentLookupException happens if the content transformation has an issue
+     * @throws ParseException happens if the content transformation has an issue
+     */
+    private void publishContent(PublicationRun run, DocumentReference pageReference,
+        DocumentReference contentPageReference, DocumentReference publishedReference, DocumentBatch batch)
+        throws XWikiException, QueryException, ComponentLookupException, ParseException
+    {
+        Locale userLocale = run.getUserLocale();
+        Map<String, Object> configuration = run.getConfiguration();
+        DocumentReference sourceReference = run.getSourceReference();
+        String pageStringReference = localSerializer.serialize(pageReference);
+        XWikiContext xcontext = this.getXWikiContext();
+        XWiki xwiki = xcontext.getWiki();
+        XWikiDocument contentPage = xwiki.getDocument(contentPageReference, xcontext).clone();
+        XWikiDocument publishedDocument = xwiki.getDocument(publishedReference, xcontext).clone();
+        run.getPublishedReferences().add(publishedReference);
+        Map<String, String> publicationSources = null;
+        if (BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_PUBLISHBEHAVIOUR_INCREMENTAL.equals(
+            configuration.get(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_PUBLISHBEHAVIOUR)))
+        {
+            // Only publish the page again if one of the documents it is built from has changed
+            publicationSources = getPublicationSources(run, pageReference, contentPageReference);
+            if (isPublicationUpToDate(publishedDocument, publicationSources)) {
+                logger.info(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager.publishInternal"
+                    + ".unchangedPage", userLocale, pageStringReference));
+                return;
+            }
+        }
+
+        // Create the published document
+        logger.info(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager.publishInternal"
+            + ".copyPage", userLocale, contentPage.getDocumentReference(), publishedReference));
+        // The content is parsed once, from the cached document so that the parsed content is kept between two
+        // publications of an unchanged page, and rendered once when the transformed content is set
+        XDOM xdom = xwiki.getDocument(contentPageReference, xcontext).getXDOM();
+        String language = (String) configuration.get(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_LANGUAGE);
+        if (StringUtils.isNotEmpty(language)) {
+            // Change the original content if a translation is to be published
+            xdom = mergeTranslatedContent(xdom, publishedDocument, language);
+        }
+        copyContentsToNewVersion(contentPage, publishedDocument, xcontext,
+            getRemovedObjectsForPublication(contentPage.getDocumentReference(), xcontext));
+
+        logger.info(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager.publishInternal"
+            + ".transformContent", userLocale));
+        Set<DocumentReference> includedLibraryPages = new HashSet<>();
+        prepareForPublication(sourceReference, contentPage, xdom, publishedDocument, run.getPublishedLibraries(),
+            configuration, userLocale, includedLibraryPages, run.getTransformationProperties());
+        if (publicationSources != null) {
+            for (DocumentReference libraryPageReference : includedLibraryPages) {
+                addPublicationSource(publicationSources, libraryPageReference);
+            }
+            setPublicationSources(publishedDocument, publicationSources);
+        }
+
+        logger.debug("[publishInternal] Publish page.");
+        publishedDocument.getAuthors().setEffectiveMetadataAuthor(run.getUserReference());
+        publishedDocument.getAuthors().setOriginalMetadataAuthor(run.getUserReference());
+        String targetTitle = (String) configuration.get(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_TITLE);
+        if (pageReference.equals(sourceReference) && StringUtils.isNotEmpty(targetTitle)) {
+            publishedDocument.setTitle(targetTitle);
+        }
+        if (setPublicationFingerprint(publishedDocument, contentPageReference, xcontext)) {
+            batch.save(publishedDocument, run.getPublicationComment());
+        } else {
+            logger.debug("[publishInternal] Published page [{}] is unchanged, it is not saved.", publishedReference);
+        }
+        logger.debug("[publishInternal] End working on page [{}].", pageStringReference);
+        logger.info(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager.publishInternal"
+            + ".endPagePublication", userLocale, pageStringReference));
+    }
+
+    /**
+     * Get the documents a published page is built from, with their current version: the publication configuration,
+     * the published version and variant, the master page and the page providing the content. The included library
+     * pages are only known once the content is transformed, they are added by the caller.
+     *
+     * @param run the publication
+     * @param pageReference the master page reference
+     * @param contentPageReference the reference of the page providing the content
+     * @return the version of each source, by source reference
+     * @throws XWikiException happens if a source document can't be loaded
+     */
+    private Map<String, String> getPublicationSources(PublicationRun run, DocumentReference pageReference,
+        DocumentReference contentPageReference) throws XWikiException
+    {
+        return getPublicationSources(run.getConfigurationReference(), run.getConfiguration(),
+            run.getVariant() != null ? run.getVariant().getDocumentReference() : null, run.getPublishedLibraries(),
+            pageReference, contentPageReference);
+    }
+
+    private Map<String, String> getPublicationSources(DocumentReference configurationReference,
+        Map<String, Object> configuration, DocumentReference variantReference,
+        Map<String, Map<DocumentReference, DocumentReference>> publishedLibraries, DocumentReference pageReference,
+        DocumentReference contentPageReference) throws XWikiException
+    {
+        Map<String, String> sources = new LinkedHashMap<>();
+        addPublicationSource(sources, configurationReference);
+        addPublicationSource(sources,
+            (DocumentReference) configuration.get(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_VERSION));
+        addPublicationSource(sources, variantReference);
+        addPublicationSource(sources, pageReference);
+        addPublicationSource(sources, contentPageReference);
+        // The published libraries are not documents, a change in their mapping is recorded through its hash
+        sources.put(PUBLISHED_LIBRARIES_SOURCE, getPublishedLibrariesHash(publishedLibraries));
+        return sources;
+    }
+
+    private String getPublishedLibrariesHash(Map<String, Map<DocumentReference, DocumentReference>> publishedLibraries)
+    {
+        if (publishedLibraries == null) {
+            return NO_SOURCE_VERSION;
+        }
+        // Sort the serialized mapping, as the reference hash codes (and so the map order) change between restarts
+        Map<String, String> sortedLibraries = new TreeMap<>();
+        for (Map.Entry<String, Map<DocumentReference, DocumentReference>> version : publishedLibraries.entrySet()) {
+            if (version.getValue() == null) {
+                continue;
+            }
+            for (Map.Entry<DocumentReference, DocumentReference> library : version.getValue().entrySet()) {
+                sortedLibraries.put(version.getKey() + ':' + localSerializer.serialize(library.getKey()),
+                    localSerializer.serialize(library.getValue()));
+            }
+        }
+        return Integer.toHexString(sortedLibraries.toString().hashCode());
+    }
+
+    private void addPublicationSource(Map<String, String> sources, DocumentReference sourceReference)
+        throws XWikiException
+    {
+        if (sourceReference == null) {
+            return;
+        }
+        sources.put(localSerializer.serialize(sourceReference), getSourceVersion(sourceReference));
+    }
+
+    private String getSourceVersion(DocumentReference sourceReference) throws XWikiException
+    {
+        XWikiContext xcontext = this.getXWikiContext();
+        XWikiDocument source = xcontext.getWiki().getDocument(sourceReference, xcontext);
+        return source.isNew() ? NO_SOURCE_VERSION : source.getVersion();
+    }
+
+    /**
+     * Check if a published page has been built from the given sources, and from included library pages which did not
+     * change since.
+     *
+     * @param publishedDocument the published page
+     * @param publicationSources the current version of the sources of the page, by source reference
+     * @return true if the page does not need to be published again
+     * @throws XWikiException happens if a library page can't be loaded
+     */
+    private boolean isPublicationUpToDate(XWikiDocument publishedDocument, Map<String, String> publicationSources)
+        throws XWikiException
+    {
+        if (publishedDocument.isNew()) {
+            return false;
+        }
+        BaseObject sourcesObject =
+            publishedDocument.getXObject(BookVersionsConstants.PUBLICATIONSOURCES_CLASS_REFERENCE);
+        if (sourcesObject == null) {
+            return false;
+        }
+
+        Map<String, String> recordedSources = getRecordedPublicationSources(sourcesObject);
+        for (Map.Entry<String, String> source : publicationSources.entrySet()) {
+            if (!source.getValue().equals(recordedSources.remove(source.getKey()))) {
+                logger.debug("[isPublicationUpToDate] Source [{}] of [{}] changed.", source.getKey(),
+                    publishedDocument.getDocumentReference());
+                return false;
+            }
+        }
+        // The remaining recorded sources are the included library pages
+        for (Map.Entry<String, String> source : recordedSources.entrySet()) {
+            DocumentReference libraryPageReference =
+                referenceResolver.resolve(source.getKey(), publishedDocument.getDocumentReference());
+            if (!source.getValue().equals(getSourceVersion(libraryPageReference))) {
+                logger.debug("[isPublicationUpToDate] Included library page [{}] of [{}] changed.",
+                    libraryPageReference, publishedDocument.getDocumentReference());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Map<String, String> getRecordedPublicationSources(BaseObject sourcesObject)
+    {
+        Map<String, String> recordedSources = new LinkedHashMap<>();
+        String sourcesValue =
+            sourcesObject.getLargeStringValue(BookVersionsConstants.PUBLICATIONSOURCES_PROP_SOURCES);
+        for (String line : StringUtils.split(StringUtils.defaultString(sourcesValue), '\n')) {
+            // The version can't contain a space, while the reference can
+            int separator = line.lastIndexOf(' ');
+            if (separator > 0) {
+                recordedSources.put(line.substring(0, separator), line.substring(separator + 1));
+            }
+        }
+        return recordedSources;
+    }
+
+    /**
+     * Record the new version of a source of a published page, when the page was published from the previous version.
+     * It's used for the changes done by the publication itself, which don't make the page outdated.
+     *
+     * @param publishedDocument the published page, saved by the caller
+     * @param sourceReference the reference of the source
+     * @param previousVersion the version of the source before the publication changed it
+     * @param version the version of the source after the publication changed it
+     * @throws XWikiException happens if the sources can't be set
+     */
+    private void updatePublicationSource(XWikiDocument publishedDocument, DocumentReference sourceReference,
+        String previousVersion, String version) throws XWikiException
+    {
+        BaseObject sourcesObject =
+            publishedDocument.getXObject(BookVersionsConstants.PUBLICATIONSOURCES_CLASS_REFERENCE);
+        if (sourcesObject == null || version == null) {
+            return;
+        }
+
+        Map<String, String> recordedSources = getRecordedPublicationSources(sourcesObject);
+        String source = localSerializer.serialize(sourceReference);
+        if (previousVersion != null && previousVersion.equals(recordedSources.get(source))) {
+            recordedSources.put(source, version);
+            setPublicationSources(publishedDocument, recordedSources);
+        }
+    }
+
+    private void setPublicationSources(XWikiDocument publishedDocument, Map<String, String> publicationSources)
+        throws XWikiException
+    {
+        StringBuilder sourcesValue = new StringBuilder();
+        for (Map.Entry<String, String> source : publicationSources.entrySet()) {
+            sourcesValue.append(source.getKey()).append(' ').append(source.getValue()).append('\n');
+        }
+        BaseObject sourcesObject = publishedDocument.getXObject(
+            BookVersionsConstants.PUBLICATIONSOURCES_CLASS_REFERENCE, true, this.getXWikiContext());
+        sourcesObject.setLargeStringValue(BookVersionsConstants.PUBLICATIONSOURCES_PROP_SOURCES,
+            sourcesValue.toString());
+    }
+
+    /**
+     * Compare the fingerprint of the published document with the one recorded at its last publication, and record the
+     * new one if it differs, along with the page the published document is copied from.
+     *
+     * @param publishedDocument the published document, ready to be saved
+     * @param contentPageReference the page the published document is copied from
+     * @param xcontext the context
+     * @return true if the published document changed since its last publication and has to be saved
+     * @throws XWikiException happens if the fingerprint can't be computed
+     */
+    private boolean setPublicationFingerprint(XWikiDocument publishedDocument, DocumentReference contentPageReference,
+        XWikiContext xcontext) throws XWikiException
+    {
+        String fingerprint = PublicationFingerprint.compute(publishedDocument, xcontext);
+        String source = localSerializer.serialize(contentPageReference);
+        BaseObject fingerprintObject = publishedDocument.getXObject(
+            BookVersionsConstants.PUBLICATIONFINGERPRINT_CLASS_REFERENCE, true, xcontext);
+        if (!publishedDocument.isNew() && fingerprint.equals(fingerprintObject.getStringValue(
+            BookVersionsConstants.PUBLICATIONFINGERPRINT_PROP_FINGERPRINT))
+            && source.equals(
+                fingerprintObject.getStringValue(BookVersionsConstants.PUBLICATIONFINGERPRINT_PROP_SOURCE)))
+        {
+            return false;
+        }
+        fingerprintObject.setStringValue(BookVersionsConstants.PUBLICATIONFINGERPRINT_PROP_FINGERPRINT, fingerprint);
+        fingerprintObject.setStringValue(BookVersionsConstants.PUBLICATIONFINGERPRINT_PROP_SOURCE, source);
+        return true;
+    }
+
+    /**
+     * @param configuration the publication configuration
+     * @return the number of pages to publish at the same time, from the configuration or else from the wiki
+     *     configuration
+     */
+    private int getPublicationParallelism(Map<String, Object> configuration)
+    {
+        Integer parallelism =
+            (Integer) configuration.get(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_PARALLELISM);
+        if (parallelism == null || parallelism < 1) {
+            parallelism = wikiConfiguration.getProperty(BookVersionsConstants.PUBLICATION_PARALLELISM_PROPERTY, 1);
+        }
+
+        return Math.max(1, parallelism);
+    }
+
+    @Override
+    public String removeVersionContent(DocumentReference versionReference) throws JobException
+    {
+        if (versionReference == null) {
+            return null;
+        }
+
+        DefaultRequest jobRequest = new DefaultRequest();
+        String jobId = BookVersionsConstants.VERSIONCONTENTREMOVE_JOBID_PREFIX
+            + BookVersionsConstants.PUBLICATION_JOBID_SEPARATOR + versionReference.getName()
+            + BookVersionsConstants.PUBLICATION_JOBID_SEPARATOR + Instant.now().toString();
+        if (jobId != null) {
+            jobRequest.setId(jobId);
+            jobRequest.setProperty("versionReference", versionReference);
+            // The context won't be full in deleteVersionContentInternal as it is executed by a job, so the user
+            // executing the deletion have to be passed as parameter.
+            XWikiContext xcontext = this.getXWikiContext();
+            jobRequest.setProperty("userReference", xcontext.getUserReference());
+            jobExecutor.execute(BookVersionsConstants.VERSIONCONTENTREMOVEJOB_TYPE, jobRequest);
+        }
+        return jobId;
+    }
+
+    @Override
+    public void removeVersionContentInternal(DocumentReference versionReference, DocumentReference userReference)
+        throws QueryException, XWikiException
+    {
+        if (versionReference == null || userReference == null) {
+            return;
+        }
+
+        DocumentReference collectionReference = getVersionedCollectionReference(versionReference);
+        String versionName = getVersionName(versionReference);
+        Iterator<String> contentPageRefStrings = iteratePages(collectionReference,
+            BookVersionsConstants.BOOKVERSIONEDCONTENT_CLASS_REFERENCE, QUERY_PAGE_SIZE);
+        List<DocumentReference> versionContentPageRefs = new ArrayList<>();
+        while (contentPageRefStrings.hasNext()) {
+            DocumentReference contentPageRef = referenceResolver.resolve(contentPageRefStrings.next(),
+                collectionReference);
+            if (versionName.equals(getEscapedName(contentPageRef))) {
+                versionContentPageRefs.add(contentPageRef);
+            }
+            if (versionContentPageRefs.size() >= QUERY_PAGE_SIZE || !contentPageRefStrings.hasNext()) {
+                removeDocuments(versionContentPageRefs, userReference);
+                versionContentPageRefs.clear();
+            }
+        }
+    }
+
+
+    /**
+     * Remove the given documents
+     *
+     * @param documentReferencesString the documents to remove
+     * @param referenceParameter the reference used as a parameter to resolve the document references
+     * @param userReference the reference of the user who removes the documents
+     * @param toRecycleBin {@code false} to delete the documents without keeping a copy of them in the recycle bin
+     * @throws XWikiException happens if there is an issue with the document deletion
+     */
+    private void removeDocuments(List<String> documentReferencesString, DocumentReference referenceParameter,
+        DocumentReference userReference, boolean toRecycleBin)
+        throws XWikiException
+    {
+        if (documentReferencesString == null || referenceParameter == null) {
+            return;
+        }
+        List<DocumentReference> toDeleteReferences = new ArrayList<>();
+        for (String toDeleteRefString : documentReferencesString) {
+            toDeleteReferences.add(referenceResolver.resolve(toDeleteRefString, referenceParameter));
+        }
+        removeDocuments(toDeleteReferences, userReference, toRecycleBin);
+    }
+
+    /**
+     * Remove the given documents
+     *
+     * @param documentReferences the documents to remove
+     * @param userReference the reference of the user who removes the documents
+     * @throws XWikiException happens if there is an issue with the document deletion or checking its existence
+     */
+    private void removeDocuments(List<DocumentReference> documentReferences, DocumentReference userReference)
+        throws XWikiException
+    {
+        if (documentReferences == null) {
+            return;
+        }
+        XWikiContext xcontext = this.getXWikiContext();
+        XWiki xwiki = xcontext.getWiki();
+
+        for (DocumentReference toDeleteRef : documentReferences) {
+            if (xwiki.exists(toDeleteRef, xcontext)) {
+                logger.debug("[removeDocuments] Deleting [{}].", toDeleteRef);
+                xcontext.setUserReference(userReference);
+                xwiki.deleteDocument(xwiki.getDocument(toDeleteRef, xcontext), xcontext);
+            }
+        }
+    }
+
+    /**
+     * Remove the given published documents, reporting the progress. The existence of the documents is only checked
+     * once they are loaded to be deleted. The documents which are not kept in the recycle bin and have no attachment
+     * are deleted by batches, only their database rows being removed in the batch transaction. The other documents are
+     * deleted one by one, so that their attachments or recycle bin copies are never written while a rollback could
+     * restore their rows.
+     *
+     * @param documentReferences the documents to remove
+     * @param userReference the reference of the user who removes the documents
+     * @param toRecycleBin {@code false} to delete the documents without keeping a copy of them in the recycle bin
+     * @throws XWikiException happens if there is an issue with the document deletion
+     */
+    private void removeDocuments(List<DocumentReference> documentReferences, DocumentReference userReference,
+        boolean toRecycleBin) throws XWikiException
+    {
+        if (documentReferences == null || documentReferences.isEmpty()) {
+            return;
+        }
+        XWikiContext xcontext = this.getXWikiContext();
+        XWiki xwiki = xcontext.getWiki();
+        xcontext.setUserReference(userReference);
+
+        progressManager.pushLevelProgress(documentReferences.size(), this);
+        try (DocumentBatch batch = documentBatchWriter.open(xcontext)) {
+            for (DocumentReference toDeleteRef : documentReferences) {
+                progressManager.startStep(this);
+                XWikiDocument toDelete = xwiki.getDocument(toDeleteRef, xcontext);
+                if (!toDelete.isNew()) {
+                    logger.debug("[removeDocuments] Deleting [{}], to the recycle bin [{}].", toDeleteRef,
+                        toRecycleBin);
+                    if (toRecycleBin) {
+                        xwiki.deleteDocument(toDelete, true, xcontext);
+                    } else {
+                        batch.delete(toDelete);
+                    }
+                }
+                progressManager.endStep(this);
+            }
+        } finally {
+            progressManager.popLevelProgress(this);
+        }
+    }
+
+    /**
+     * Merge the new document's translated content with the current published document's content. This has some
+     * limitations:
+     * - only the first "Translated" macro of the right language will be considered
+     * - the content outside the macro will be ignored
+     * - New content will only be added to the end of the published document
+     * @param masterXdom the content to take the translated content from
      * @param publishedDocument the document to which the translated content has to be merged into
      * @param language the language to publish
-     * @throws XWikiException happens if checking if document exists or setting the XDOM content have an issue
+     * @return the content to publish
+     * @throws XWikiException happens if checking if document exists has an issue
      */
-    private void mergeTranslatedContent(XWikiDocument masterDocument, XWikiDocument publishedDocument, String language)
+    private XDOM mergeTranslatedContent(XDOM masterXdom, XWikiDocument publishedDocument, String language)
         throws XWikiException
     {
-        if (masterDocument == null || publishedDocument == null || language == null) {
-            logger.error("[mergeTranslatedContent] A parameter is null: masterDocument [{}], publishedDocument [{}], "
-                    + "language [{}]", masterDocument.getDocumentReference(), publishedDocument.getDocumentReference(),
-                language);
-            return;
+        if (masterXdom == null || publishedDocument == null || language == null) {
+            logger.error("[mergeTranslatedContent] A parameter is null: masterXdom [{}], publishedDocument [{}], "
+                + "language [{}]", masterXdom, publishedDocument, language);
+            return masterXdom;
         }
 
         XWikiContext xcontext = this.getXWikiContext();
@@ -2764,11 +4074,10 @@ public class DefaultBookVersionsManager implements BookVersionsManager
         // Look for the content to be published
         logger.debug("[mergeTranslatedContent] Searching for the translated content of [{}] language in the "
             + "content to be published.", language);
-        XDOM masterXdom = masterDocument.getXDOM();
         MacroBlock masterBlock = getTranslatedMacroBlock(masterXdom, language);
         if (masterBlock == null) {
             logger.debug("[mergeTranslatedContent] No [{}] translated content to be published found.", language);
-            return;
+            return masterXdom;
         }
 
         // Search if some translated content has to be replaced in the currently published document
@@ -2793,7 +4102,8 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             logger.debug("[mergeTranslatedContent] No existing published content, adding macro as new document.");
             toPublishBlock = masterBlock;
         }
-        masterDocument.setContent(new XDOM(Collections.singletonList(toPublishBlock)));
+        return toPublishBlock instanceof XDOM ? (XDOM) toPublishBlock
+            : new XDOM(Collections.singletonList(toPublishBlock));
     }
 
     /**
@@ -2847,6 +4157,79 @@ public class DefaultBookVersionsManager implements BookVersionsManager
         return null;
     }
 
+    /**
+     * Remove the pages of the destination space which were not published by the given publication. When the
+     * publication was resumed, its published pages include the ones matched before the interruption, as saved in
+     * the checkpoint.
+     *
+     * @param run the publication
+     * @param targetDocumentReference WebHome document of the target space
+     * @param userReference the reference of the user who removes the documents
+     * @param toRecycleBin {@code false} to delete the documents without keeping a copy of them in the recycle bin
+     * @throws QueryException happens when the query creation or execution has an issue
+     * @throws XWikiException happens if there is an issue with the document deletion
+     */
+    private void removeOrphans(PublicationRun run, DocumentReference targetDocumentReference,
+        DocumentReference userReference, boolean toRecycleBin) throws QueryException, XWikiException
+    {
+        Set<DocumentReference> publishedReferences = run.getPublishedReferences();
+
+        Iterator<String> subTargetDocumentsString = iteratePages(targetDocumentReference, null, QUERY_PAGE_SIZE);
+        while (subTargetDocumentsString.hasNext()) {
+            List<DocumentReference> toRemove = new ArrayList<>();
+            while (subTargetDocumentsString.hasNext() && toRemove.size() < QUERY_PAGE_SIZE) {
+                DocumentReference pageReference =
+                    referenceResolver.resolve(subTargetDocumentsString.next(), targetDocumentReference);
+                if (isOrphan(pageReference, targetDocumentReference, publishedReferences)) {
+                    toRemove.add(pageReference);
+                }
+            }
+            if (!toRemove.isEmpty()) {
+                logger.debug("[publishInternal] Removing the orphan pages [{}].", toRemove);
+                removeDocuments(toRemove, userReference, toRecycleBin);
+            }
+        }
+    }
+
+    /**
+     * Return if a page of the destination space doesn't match any published page. The top page of the space and the
+     * administration pages are never orphans.
+     *
+     * @param pageReference the page of the destination space
+     * @param targetDocumentReference WebHome document of the target space
+     * @param publishedReferences the pages of the destination space matching a published source page
+     * @return true if the page is an orphan
+     */
+    private boolean isOrphan(DocumentReference pageReference, DocumentReference targetDocumentReference,
+        Set<DocumentReference> publishedReferences)
+    {
+        return !pageReference.equals(targetDocumentReference)
+            && !BookVersionsConstants.XWIKI_PAGEADMINISTRATION_NAME.equals(pageReference.getName())
+            && !publishedReferences.contains(pageReference);
+    }
+
+    /**
+     * Return if the given space is empty, except for his WebHome and WebPreferences pages. Only the first pages of the
+     * space are fetched, as two of them at most can be ignored.
+     *
+     * @param targetDocumentReference WebHome document of the target space
+     * @return true if space is empty, except for his WebHome and WebPreferences pages. False if parameter is null
+     * @throws QueryException happens when the query creation or execution has an issue.
+     */
+    private boolean isEmptyTargetSpace(DocumentReference targetDocumentReference) throws QueryException
+    {
+        if (targetDocumentReference == null) {
+            return false;
+        }
+        int pageSize = 3;
+        Iterator<String> subTargetDocumentsString = iteratePages(targetDocumentReference, null, pageSize);
+        List<String> firstTargetDocumentsString = new ArrayList<>();
+        while (subTargetDocumentsString.hasNext() && firstTargetDocumentsString.size() < pageSize) {
+            firstTargetDocumentsString.add(subTargetDocumentsString.next());
+        }
+        return isEmptyTargetSpace(firstTargetDocumentsString, targetDocumentReference);
+    }
+
     /**
      * Return if the given space is empty, except for his WebHome and WebPreferences pages
      *
@@ -2884,21 +4267,36 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             return false;
         }
 
-        // use a fake 3 way merge: previous is toDocument without the provided list of objects
-        // current version is current toDocument
-        // next version is fromDocument without the provided list of objects
-        XWikiDocument previousDoc = toDocument.clone();
-        this.removeObjects(previousDoc, removedObjects);
-        // set reference and language
-
         // make sure that the attachments are properly loaded in memory for the duplicate to work fine, otherwise it's a
         // bit impredictable about attachments
         fromDocument.loadAttachments(xcontext);
         XWikiDocument nextDoc = fromDocument.duplicate(toDocument.getDocumentReference());
         this.removeObjects(nextDoc, removedObjects);
 
-        // and now merge. Normally the attachments which are not in the next doc are deleted from the current doc
-        MergeResult result = toDocument.merge(previousDoc, nextDoc, new MergeConfiguration(), xcontext);
+        MergeResult result = null;
+        if (isDirectCopy(fromDocument, toDocument, removedObjects)) {
+            // The merge would give the next version as is, copy it directly. The attachments which are not in the
+            // next doc are deleted from the current doc as well, while the publication bookkeeping is kept
+            for (EntityReference objectRef : BookVersionsConstants.PUBLICATION_BOOKKEEPING_OBJECTS) {
+                List<BaseObject> bookkeepingObjects = new ArrayList<>();
+                for (BaseObject object : toDocument.getXObjects(objectRef)) {
+                    bookkeepingObjects.add(object != null ? object.clone() : null);
+                }
+                if (!bookkeepingObjects.isEmpty()) {
+                    nextDoc.setXObjects(toDocument.resolveClassReference(objectRef), bookkeepingObjects);
+                }
+            }
+            toDocument.apply(nextDoc, true);
+        } else {
+            // use a fake 3 way merge: previous is toDocument without the provided list of objects
+            // current version is current toDocument
+            // next version is fromDocument without the provided list of objects
+            XWikiDocument previousDoc = toDocument.clone();
+            this.removeObjects(previousDoc, removedObjects);
+
+            // and now merge. Normally the attachments which are not in the next doc are deleted from the current doc
+            result = toDocument.merge(previousDoc, nextDoc, new MergeConfiguration(), xcontext);
+        }
 
         // for some reason the creator doesn't seem to be copied if the toDocument is new, so let's put it
         if (toDocument.isNew()) {
@@ -2907,7 +4305,8 @@ public class DefaultBookVersionsManager implements BookVersionsManager
         // Author does not seem to be merged anymore in the merge function in newer versions, so we'll do it here
         toDocument.setAuthorReference(fromDocument.getAuthorReference());
 
-        List<LogEvent> exception = result.getLog().getLogs(LogLevel.ERROR);
+        List<LogEvent> exception =
+            result != null ? result.getLog().getLogs(LogLevel.ERROR) : Collections.emptyList();
         if (exception.isEmpty()) {
             return true;
         } else {
@@ -2926,8 +4325,43 @@ public class DefaultBookVersionsManager implements BookVersionsManager
         }
     }
 
+    /**
+     * Return if a document can be copied over the given target without merging. The merge done by
+     * {@link #copyContentsToNewVersion(XWikiDocument, XWikiDocument, XWikiContext, List)} only keeps the target's
+     * objects which are removed from the copy. When the target is new, or has none of these objects except the
+     * publication bookkeeping ones, the merge result is the copy itself plus the bookkeeping objects. A published
+     * page is only copied directly when its fingerprint records that it was published from the same page, as it is
+     * otherwise unknown what the target holds.
+     *
+     * @param fromDocument the copied document
+     * @param toDocument the target document
+     * @param removedObjects the objects removed during the copy
+     * @return true if the copy can be applied directly to the target
+     */
+    private boolean isDirectCopy(XWikiDocument fromDocument, XWikiDocument toDocument,
+        List<EntityReference> removedObjects)
+    {
+        if (toDocument.isNew() || removedObjects == null) {
+            return true;
+        }
+
+        if (!PublicationFingerprint.isPublishedFrom(toDocument,
+            localSerializer.serialize(fromDocument.getDocumentReference())))
+        {
+            return false;
+        }
+        for (EntityReference objectRef : removedObjects) {
+            if (!BookVersionsConstants.PUBLICATION_BOOKKEEPING_OBJECTS.contains(objectRef)
+                && !toDocument.getXObjects(objectRef).isEmpty())
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private void addTopPublicationData(SpaceReference targetTopReference, String publicationComment,
-        XWikiDocument collection, Map<String, Object> configuration,
+        XWikiDocument collection, String collectionVersion, Map<String, Object> configuration,
         UserReference userReference, DocumentReference collectionReference) throws XWikiException
     {
         if (targetTopReference == null || collection == null || configuration == null) {
@@ -2973,16 +4407,19 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             publicationObject.set(BookVersionsConstants.PUBLISHEDCOLLECTION_PROP_VARIANTNAME, variant.getTitle(),
                 xcontext);
         }
+        // The collection is saved by the publication itself, which doesn't make the top page outdated when the
+        // collection is one of its sources
+        updatePublicationSource(targetTop, collectionReference, collection.getVersion(), collectionVersion);
         targetTop.getAuthors().setEffectiveMetadataAuthor(userReference);
         targetTop.getAuthors().setOriginalMetadataAuthor(userReference);
         xwiki.saveDocument(targetTop, publicationComment != null ? publicationComment : "", xcontext);
     }
 
-    private void addMasterPublicationData(XWikiDocument collection, Map<String, Object> configuration,
+    private String addMasterPublicationData(XWikiDocument collection, Map<String, Object> configuration,
         UserReference userReference) throws XWikiException
     {
         if (collection == null || configuration == null) {
-            return;
+            return null;
         }
 
         logger.debug("[addMasterPublicationData] Adding metadata to [{}]", collection.getDocumentReference());
@@ -3006,7 +4443,7 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             logger.error(
                 "Couldn't read the publication configuration when attempting to add metadata in the master and "
                     + "published locations.");
-            return;
+            return null;
         }
 
         String publicationId;
@@ -3055,6 +4492,7 @@ public class DefaultBookVersionsManager implements BookVersionsManager
         collectionClone.getAuthors().setEffectiveMetadataAuthor(userReference);
         collectionClone.getAuthors().setOriginalMetadataAuthor(userReference);
         xwiki.saveDocument(collectionClone, publicationComment, xcontext);
+        return collectionClone.getVersion();
     }
 
     /**
@@ -3202,9 +4640,11 @@ public class DefaultBookVersionsManager implements BookVersionsManager
     }
 
     private XWikiDocument prepareForPublication(DocumentReference publicationSourceReference,
-        XWikiDocument originalDocument, XWikiDocument publishedDocument,
+        XWikiDocument originalDocument, XDOM originalXdom, XWikiDocument publishedDocument,
         Map<String, Map<DocumentReference, DocumentReference>> publishedLibraries, Map<String, Object> configuration,
-        Locale userLocale) throws XWikiException, ComponentLookupException, ParseException, QueryException
+        Locale userLocale, Set<DocumentReference> includedLibraryPages,
+        Map<String, Object> transformationProperties)
+        throws XWikiException, ComponentLookupException, ParseException, QueryException
     {
         if (originalDocument == null || publishedDocument == null || configuration == null) {
             return null;
@@ -3216,297 +4656,21 @@ public class DefaultBookVersionsManager implements BookVersionsManager
         // Work directly on the document
         publishedDocument.setTitle(originalDocument.getTitle());
         publishedDocument.setHidden(false);
-        // Work on the XDOM
-        XDOM xdom = publishedDocument.getXDOM();
+        // Work on the XDOM, parsed only if the caller doesn't have it already
+        XDOM xdom = originalXdom != null ? originalXdom : publishedDocument.getXDOM();
         String syntax = publishedDocument.getSyntax().toIdString();
-        DocumentReference sourceCollectionReference = getVersionedCollectionReference(publicationSourceReference);
-        transformXDOM(sourceCollectionReference, publicationSourceReference, xdom, syntax, originalDocument.getDocumentReference(),
-            publishedLibraries, configuration, userLocale);
+        PublicationTransformationContext transformationContext =
+            new PublicationTransformationContext(publicationSourceReference, originalDocument.getDocumentReference(),
+                syntax, configuration, publishedLibraries, userLocale, transformationProperties);
+        publicationTransformationPipeline.transform(xdom, transformationContext);
+        if (includedLibraryPages != null) {
+            includedLibraryPages.addAll(transformationContext.getIncludedLibraryPages());
+        }
         // Set the modified XDOM
         publishedDocument.setContent(xdom);
         return publishedDocument;
     }
 
-    // Heavily inspired from "Bulk update links according to a TSV mapping using XDOM" on https://snippets.xwiki.org
-    private boolean transformXDOM(DocumentReference sourceCollectionReference,
-        DocumentReference publicationSourceReference, XDOM xdom, String syntaxId,
-        DocumentReference originalDocumentReference,
-        Map<String, Map<DocumentReference, DocumentReference>> publishedLibraries, Map<String, Object> configuration,
-        Locale userLocale) throws ComponentLookupException, ParseException, QueryException, XWikiException
-    {
-        if (xdom == null || syntaxId == null || originalDocumentReference == null || configuration == null) {
-            logger.error("[transformXDOM] Can't execute because one input is null.");
-            return false;
-        }
-
-        boolean hasXDOMChanged = false;
-        DocumentReference publishedVariantReference =
-            (DocumentReference) configuration.get(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_VARIANT);
-        DocumentReference versionReference =
-            (DocumentReference) configuration.get(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_VERSION);
-        String language = (String) configuration.get(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_LANGUAGE);
-
-        // First, update any document macro that could contain nested content (variant macro)
-
-        for (Block b : xdom.getBlocks(new ClassBlockMatcher(MacroBlock.class), Block.Axes.DESCENDANT_OR_SELF)) {
-            MacroBlock block = (MacroBlock) b;
-            String id = block.getId();
-
-            // Should never happen.
-            if (id == null) {
-                logger.error("[transformXDOM] Can't find macro block id.");
-                continue;
-            }
-
-            String content = block.getContent();
-            logger.debug("[transformXDOM] Checking macro [{}] - [{}]", id, block.getClass());
-
-            // Get the possible variants from the variant macro
-            String variants = block.getParameter(BookVersionsConstants.VARIANT_MACRO_PROP_NAME);
-            List<DocumentReference> variantReferences = new ArrayList<>();
-            if (variants != null) {
-                for (String variant : variants.split(",")) {
-                    variantReferences.add(referenceResolver.resolve(variant, originalDocumentReference));
-                }
-            }
-
-            if (id.equals(BookVersionsConstants.VARIANT_MACRO_ID) && ((publishedVariantReference == null)
-                || (publishedVariantReference != null && !variantReferences.contains(publishedVariantReference))))
-            {
-                // The macro is removed if it's a macro variant AND ((no variant is published)) OR (variant is
-                // published but macro is not for the published variant)
-                logger.debug("[transformXDOM] Variant macro is for [{}], it is removed from content.",
-                    variantReferences);
-                block.getParent().removeBlock(block);
-            } else {
-                if (content == null || StringUtils.isEmpty(content)) {
-                    continue;
-                }
-
-                // We will take a quick shortcut here and directly parse the macro content with the syntax of the
-                // document
-                logger.debug("[transformXDOM] Calling parse on [{}] with syntax [{}]", id, syntaxId);
-                Parser parser = componentManagerProvider.get().getInstance(Parser.class, syntaxId);
-                XDOM contentXDOM = parser.parse(new StringReader(content));
-                boolean hasMacroContentChanged =
-                    transformXDOM(sourceCollectionReference, publicationSourceReference, contentXDOM, syntaxId, originalDocumentReference, publishedLibraries, configuration
-                        , userLocale);
-                if (hasMacroContentChanged || id.equals(BookVersionsConstants.VARIANT_MACRO_ID)) {
-                    logger.debug("[transformXDOM] The content of macro [{}] has changed", id);
-                    if (id.equals(BookVersionsConstants.VARIANT_MACRO_ID)) {
-                       logger.debug("[transformXDOM] Variant macro is for [{}], it is replaced by the {} macro.",
-                           variantReferences, BookVersionsConstants.INLINE_MACRO_ID);
-                    }
-                    WikiPrinter printer = new DefaultWikiPrinter();
-                    BlockRenderer renderer =
-                        this.componentManagerProvider.get().getInstance(BlockRenderer.class, syntaxId);
-                    renderer.render(contentXDOM, printer);
-                    String newMacroContent = printer.toString();
-                    // Create a new macro block and swap it
-                    MacroBlock newMacroBlock =
-                        new MacroBlock(id, block.getParameters(), newMacroContent, block.isInline());
-                    if (id.equals(BookVersionsConstants.VARIANT_MACRO_ID)) {
-                        newMacroBlock = new MacroBlock(BookVersionsConstants.INLINE_MACRO_ID, new HashMap<>(),
-                        newMacroContent, block.isInline());
-                    }
-                    block.getParent().replaceChild(newMacroBlock, block);
-                    hasXDOMChanged = true;
-                }
-            }
-        }
-
-        boolean transformedTranslation = transformTranslation(xdom, language);
-        boolean transformedLibrary =
-            transformLibrary(xdom, originalDocumentReference, publishedLibraries, versionReference,
-                BookVersionsConstants.INCLUDELIBRARY_MACRO_ID, userLocale);
-        boolean transformedExceptLibrary =
-            transformLibrary(xdom, originalDocumentReference, publishedLibraries, versionReference,
-                BookVersionsConstants.EXCERPTINCLUDELIBRARY_MACRO_ID, userLocale);
-        Map<DocumentReference, DocumentReference> currentPublishedLibraries =
-            publishedLibraries != null ? publishedLibraries.get(getVersionName(versionReference)) : new HashMap<>();
-        boolean transformSiblingBookPage =
-            transformSiblingBookPage(xdom, originalDocumentReference, configuration, userLocale);
-        boolean transformedReferences = publicationReferencesTransformationHelper.transform(sourceCollectionReference,
-            publicationSourceReference, xdom, originalDocumentReference, currentPublishedLibraries, configuration);
-
-        return hasXDOMChanged || transformedTranslation || transformedLibrary || transformedExceptLibrary
-            || transformSiblingBookPage || transformedReferences;
-    }
-
-    private boolean transformTranslation(XDOM xdom, String language)
-    {
-        if (xdom == null) {
-            return false;
-        }
-        logger.debug("[transformTranslation] Starting to remove macro [{}] with not a [{}] status.",
-            BookVersionsConstants.CONTENTTRANSLATION_MACRO_ID, PageTranslationStatus.TRANSLATED);
-        if (StringUtils.isNotEmpty(language)) {
-            logger.debug("[transformTranslation] Removing canceled as only [{}] are part of the publication of "
-                + "language [{}].", PageTranslationStatus.TRANSLATED, language);
-        }
-
-        boolean hasChanged = false;
-        List<MacroBlock> listBlock = xdom.getBlocks(new ClassBlockMatcher(
-            new MacroBlock(BookVersionsConstants.CONTENTTRANSLATION_MACRO_ID, Collections.emptyMap(),
-                true).getClass()), Block.Axes.DESCENDANT_OR_SELF);
-        logger.debug("[transformTranslation] Found [{}] [{}] macros.", listBlock.size(),
-            BookVersionsConstants.CONTENTTRANSLATION_MACRO_ID);
-        for (MacroBlock macroBlock : listBlock) {
-            String macroStatus = macroBlock.getParameter(BookVersionsConstants.PAGETRANSLATION_STATUS);
-            if (StringUtils.isNotEmpty(macroStatus)
-                && !macroStatus.toLowerCase().equals(PageTranslationStatus.TRANSLATED.getTranslationStatus()))
-            {
-                logger.debug("[transformTranslation] Status is [{}], macro is removed.", macroStatus);
-                macroBlock.getParent().removeBlock(macroBlock);
-                hasChanged = true;
-            } else {
-                logger.debug("[transformTranslation] Status is [{}], macro is kept.", macroStatus);
-            }
-        }
-        return hasChanged;
-    }
-
-    /**
-     * Transform the includeLibrary or excerptIncludeLibrary macros to include or excerpt-include respectively.
-     * @param xdom the XDOM to work on
-     * @param originalDocumentReference the page from which the content is taken from
-     * @param publishedLibraries the published libraries used in the book
-     * @param versionReference the version selected for the publication
-     * @param macroId the macro to work on, includeLibrary or excerptIncludeLibrary
-     * @param userLocale the current locale of the user
-     * @return true if the XDOM has been changed
-     * @throws QueryException if an error happens when searching for the referenced library page
-     * @throws XWikiException if an error happens when searching for the referenced library page or checking if
-     *      originalDocumentReference is versioned content
-     */
-    private boolean transformLibrary(XDOM xdom, DocumentReference originalDocumentReference,
-        Map<String, Map<DocumentReference, DocumentReference>> publishedLibraries, DocumentReference versionReference,
-        String macroId, Locale userLocale)
-        throws QueryException, XWikiException
-    {
-        if (xdom == null || originalDocumentReference == null || versionReference == null || macroId == null) {
-            return false;
-        }
-
-        String referenceProperty = "";
-        String replaceMacroId = "";
-        if (macroId.equals(BookVersionsConstants.INCLUDELIBRARY_MACRO_ID)) {
-            referenceProperty = BookVersionsConstants.INCLUDELIBRARY_MACRO_PROP_KEYREFERENCE;
-            replaceMacroId = BookVersionsConstants.DISPLAY_MACRO_ID;
-        } else if (macroId.equals(BookVersionsConstants.EXCERPTINCLUDELIBRARY_MACRO_ID)) {
-            referenceProperty = BookVersionsConstants.EXCERPTINCLUDELIBRARY_MACRO_PROP_KEYREFERENCE;
-            replaceMacroId = BookVersionsConstants.EXCERPTINCLUDE_MACRO_ID;
-        } else {
-            logger.error("[transformLibrary] [{}] is not an expected macro ID", macroId);
-            return false;
-        }
-
-        logger.debug("[transformLibrary] Starting to transform [{}] macro reference", macroId);
-        boolean hasChanged = false;
-        List<MacroBlock> listBlock = xdom.getBlocks(
-            new ClassBlockMatcher(
-                new MacroBlock(macroId, Collections.emptyMap(), true).getClass()),
-            Block.Axes.DESCENDANT_OR_SELF);
-        logger.debug("[transformLibrary] [{}] '{}' macros found in the passed XDOM", listBlock.size(), macroId);
-
-        String versionName = getVersionName(versionReference);
-        String inheritedVersionName = null;
-        if (isVersionedContent(originalDocumentReference)) {
-            // If versioned page is published, use the inherited version, provided by the document to be published.
-            // This allows to use library version corresponding to the inherited content version instead of the
-            // selected version for publication.
-            inheritedVersionName = originalDocumentReference.getName();
-        }
-
-        for (MacroBlock macroBlock : listBlock) {
-            if (!macroId.equals(macroBlock.getId())) {
-                continue;
-            }
-            // Get the key reference (library page reference)
-            String keyRefString = macroBlock.getParameter(referenceProperty);
-            if (keyRefString == null || StringUtils.isEmpty(keyRefString)) {
-                logger.debug("[transformLibrary] {} macro found without {} parameter. Macro is ignored.", macroId,
-                    referenceProperty);
-                continue;
-            }
-
-            DocumentReference libraryPageReference = referenceResolver.resolve(keyRefString, originalDocumentReference);
-            logger.debug("[transformLibrary] Updating {} macro referencing [{}].", macroId, libraryPageReference);
-            // Get the library reference
-            DocumentReference libraryReference = getVersionedCollectionReference(libraryPageReference);
-            // Get the published library reference
-            // If the library version was not published, then get the inherited published library reference
-            DocumentReference publishedLibraryReference =
-                publishedLibraries != null && versionName != null && libraryReference != null
-                    ? publishedLibraries.get(versionName).get(libraryReference) : (inheritedVersionName != null
-                        ? publishedLibraries.get(inheritedVersionName).get(libraryReference) : null);
-            if (publishedLibraryReference == null) {
-                logger.error(localization.getTranslationPlain(
-                    "BookVersions.DefaultBookVersionsManager." + "transformLibrary.notPublished", userLocale,
-                    libraryReference));
-                continue;
-            }
-
-            // Compute the published page reference
-            DocumentReference publishedPageReference =
-                getPublishedReference(libraryPageReference, libraryReference,
-                    publishedLibraryReference.getLastSpaceReference());
-            if (publishedPageReference != null) {
-                logger.debug("[transformLibrary] Page reference is changed to [{}], macro is changed to [{}].",
-                    publishedPageReference, replaceMacroId);
-                // Replace the macro change to the published reference
-                Map<String, String> parametersMap = new HashMap<>();
-                if (macroId.equals(BookVersionsConstants.INCLUDELIBRARY_MACRO_ID)) {
-                    parametersMap = Map.of(
-                        BookVersionsConstants.INCLUDE_MACRO_PROP_REFERENCE, publishedPageReference.toString());
-                } else if (macroId.equals(BookVersionsConstants.EXCERPTINCLUDELIBRARY_MACRO_ID)) {
-                    parametersMap = new HashMap<>(macroBlock.getParameters());
-                    parametersMap.put(
-                        BookVersionsConstants.EXCERPTINCLUDE_MACRO_PROP_0, publishedPageReference.toString());
-                }
-                MacroBlock newMacroBlock = new MacroBlock(replaceMacroId, parametersMap, macroBlock.isInline());
-                macroBlock.getParent().replaceChild(newMacroBlock, macroBlock);
-                hasChanged = true;
-            }
-        }
-
-        return hasChanged;
-    }
-
-    private boolean transformSiblingBookPage(XDOM xdom, DocumentReference originalDocumentReference,
-        Map<String, Object> configuration, Locale userLocale) throws QueryException, XWikiException
-    {
-        if (xdom == null || originalDocumentReference == null || configuration == null) {
-            return false;
-        }
-
-        boolean hasChanged = false;
-        List<MacroBlock> listBlock = xdom.getBlocks(new ClassBlockMatcher(
-            new MacroBlock(BookVersionsConstants.INCLUDESIBLINGBOOKPAGE_MACRO_ID, Collections.emptyMap(), true)
-                .getClass()),
-            Block.Axes.DESCENDANT_OR_SELF);
-
-        for (MacroBlock macroBlock : listBlock) {
-            if (!BookVersionsConstants.INCLUDESIBLINGBOOKPAGE_MACRO_ID.equals(macroBlock.getId())) {
-                continue;
-            }
-            // Get the reference
-            String refString =
-                macroBlock.getParameter(BookVersionsConstants.INCLUDESIBLINGBOOKPAGE_MACRO_PROP_REFERENCE);
-            if (refString == null || StringUtils.isEmpty(refString)) {
-                continue;
-            }
-
-            // Replace the macro by display macro and change to the published reference
-            MacroBlock newMacroBlock = new MacroBlock(BookVersionsConstants.DISPLAY_MACRO_ID,
-                Map.of(BookVersionsConstants.DISPLAY_MACRO_PROP_REFERENCE, refString), macroBlock.isInline());
-            macroBlock.getParent().replaceChild(newMacroBlock, macroBlock);
-            hasChanged = true;
-        }
-
-        return hasChanged;
-    }
-
     private void copyPinnedPagesInfo(DocumentReference sourceReference, SpaceReference targetReference,
         String publicationComment, DocumentReference configurationReference, UserReference userReference)
         throws QueryException, XWikiException
@@ -3591,18 +4755,18 @@ public class DefaultBookVersionsManager implements BookVersionsManager
             (DocumentReference) configuration.get(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_VERSION));
     }
 
-    private boolean isToBePublished(DocumentReference pageReference, XWikiDocument variant, Map<String, Object> configuration,
-        Locale userLocale) throws XWikiException, QueryException
+    private boolean isToBePublished(DocumentReference pageReference, PageMetadata pageMetadata, XWikiDocument variant,
+        Map<String, Object> configuration, Locale userLocale)
     {
-        if (pageReference == null || configuration == null) {
+        if (pageReference == null || pageMetadata == null || configuration == null) {
             return false;
         }
         if (userLocale == null) {
             userLocale = new Locale(BookVersionsConstants.DEFAULT_LOCALE);
         }
 
-        List<DocumentReference> variants = getPageVariants(pageReference);
-        String status = getPageStatus(pageReference);
+        List<DocumentReference> variants = pageMetadata.getVariants();
+        String status = pageMetadata.getStatus();
         boolean publishOnlyComplete =
             (boolean) configuration.get(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_PUBLISHONLYCOMPLETE);
         boolean excludePagesOutsideVariant = false;
@@ -3611,7 +4775,7 @@ public class DefaultBookVersionsManager implements BookVersionsManager
                 .getIntValue(BookVersionsConstants.VARIANT_PROP_EXCLUDE) == 1);
         }
         String language = (String) configuration.get(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_LANGUAGE);
-        if (isMarkedDeleted(pageReference)) {
+        if (pageMetadata.isMarkedDeleted()) {
             // Page is marked as deleted
             logger.debug("[isToBePublished] Page [{}] is ignored because it is marked as deleted.", pageReference);
             logger.info(localization.getTranslationPlain("BookVersions.DefaultBookVersionsManager.isToBePublished."
@@ -3646,7 +4810,7 @@ public class DefaultBookVersionsManager implements BookVersionsManager
                     + "otherVariant", userLocale, pageReference, variant));
             return false;
         } else if (StringUtils.isNotEmpty(language)) {
-            Map<String, Map<String, Object>> languageData = getLanguageData(pageReference);
+            Map<String, Map<String, Object>> languageData = pageMetadata.getLanguageData();
             if (languageData.get(language) == null) {
                 // The page has no translation
                 logger.debug("[isToBePublished] Page [{}] is ignored because it is not associated with the "
@@ -3696,31 +4860,114 @@ public class DefaultBookVersionsManager implements BookVersionsManager
         return result;
     }
 
-    private List<String> getPageReferenceTree(DocumentReference sourceReference) throws QueryException
+    /**
+     * Get the metadata of a page from the ones loaded for a whole tree, loading it separately when the page is not
+     * part of the tree.
+     *
+     * @param pagesMetadata the metadata loaded for the tree, see {@link PageMetadataLoader#load(DocumentReference)}
+     * @param rootReference the reference of the top page of the tree
+     * @param pageReference the reference of the page
+     * @return the metadata of the page
+     * @throws QueryException happens when the query creation or execution has an issue.
+     */
+    private PageMetadata getPageMetadata(Map<DocumentReference, PageMetadata> pagesMetadata,
+        DocumentReference rootReference, DocumentReference pageReference) throws QueryException
+    {
+        PageMetadata pageMetadata = pagesMetadata.get(pageReference);
+        if (pageMetadata == null) {
+            // The pages of the tree without any metadata object are not part of the loaded metadata
+            pageMetadata = pageReference.equals(rootReference)
+                || pageReference.hasParent(rootReference.getLastSpaceReference()) ? PageMetadata.EMPTY
+                : pageMetadataLoader.load(Collections.singletonList(pageReference)).get(pageReference);
+        }
+
+        return pageMetadata;
+    }
+
+    /**
+     * Iterate over the source page followed by the book pages under it, ordered by full name.
+     *
+     * @param sourceReference the reference of the top page of the tree
+     * @return an iterator over the serialized references of the pages of the tree
+     * @throws QueryException happens when the query creation or execution has an issue.
+     */
+    private Iterator<String> getPageReferenceTree(DocumentReference sourceReference) throws QueryException
     {
-        // Can be refactored with queryPages
         if (sourceReference == null) {
-            return Collections.emptyList();
+            return Collections.emptyIterator();
         }
-        SpaceReference spaceReference = sourceReference.getLastSpaceReference();
-        String spaceSerialized = localSerializer.serialize(spaceReference);
-        String spacePrefix = spaceSerialized.replaceAll("([%_/])", "/$1").concat(".%");
 
-        logger.debug("[getPageReferenceTree] spaceSerialized : [{}]", spaceSerialized);
-        logger.debug("[getPageReferenceTree] spacePrefix : [{}]", spacePrefix);
+        Iterator<String> subPages =
+            iteratePages(sourceReference, BookVersionsConstants.BOOKPAGE_CLASS_REFERENCE, QUERY_PAGE_SIZE);
+        // add the source as first element, as it's not given by the query
+        return Stream.concat(Stream.of(sourceReference.toString()),
+            StreamSupport.stream(Spliterators.spliteratorUnknownSize(subPages, Spliterator.ORDERED), false))
+            .iterator();
+    }
 
-        // Query inspired from getDocumentReferences of DefaultModelBridge.java in xwiki-platform
-        List<String> result = this.queryManagerProvider.get()
-            .createQuery(", BaseObject as obj where doc.fullName = obj.name and obj.className = :class "
-                + "and doc.space like :space escape '/' order by doc.fullName asc", Query.HQL)
-            .bindValue("class", localSerializer.serialize(BookVersionsConstants.BOOKPAGE_CLASS_REFERENCE))
-            .bindValue("space", spacePrefix).setWiki(sourceReference.getWikiReference().getName()).execute();
-        // add the source as first element, as it's given by the query
-        result.add(0, sourceReference.toString());
+    /**
+     * Resolve the types of the given pages in one go, so that the checks done on each page hit the types cache.
+     *
+     * @param pageStringReferences the serialized references of the pages
+     * @param baseReference the reference used to resolve the relative page references
+     * @throws QueryException happens when the query creation or execution has an issue.
+     */
+    private void resolvePageTypes(Collection<String> pageStringReferences, EntityReference baseReference)
+        throws QueryException
+    {
+        List<DocumentReference> pageReferences = new ArrayList<>(pageStringReferences.size());
+        for (String pageStringReference : pageStringReferences) {
+            if (pageStringReference != null) {
+                pageReferences.add(referenceResolver.resolve(pageStringReference, baseReference));
+            }
+        }
+        typeResolver.resolve(pageReferences);
+    }
 
-        logger.debug("[getPageReferenceTree] result : [{}]", result);
+    /**
+     * Read the given pages ahead by chunks and resolve the types of each chunk before it's iterated.
+     *
+     * @param pageStringReferences the serialized references of the pages
+     * @param baseReference the reference used to resolve the relative page references
+     * @return an iterator over the same serialized references
+     */
+    private Iterator<String> resolvingPageTypes(Iterator<String> pageStringReferences, EntityReference baseReference)
+    {
+        return new Iterator<String>()
+        {
+            private Iterator<String> chunk = Collections.emptyIterator();
 
-        return result;
+            @Override
+            public boolean hasNext()
+            {
+                if (!this.chunk.hasNext() && pageStringReferences.hasNext()) {
+                    List<String> nextChunk = new ArrayList<>(QUERY_PAGE_SIZE);
+                    while (pageStringReferences.hasNext() && nextChunk.size() < QUERY_PAGE_SIZE) {
+                        nextChunk.add(pageStringReferences.next());
+                    }
+                    try {
+                        resolvePageTypes(nextChunk, baseReference);
+                    } catch (QueryException e) {
+                        // The types are then resolved one by one, when checking each page
+                        logger.warn("Failed to resolve the types of [{}] pages: [{}]", nextChunk.size(),
+                            ExceptionUtils.getRootCauseMessage(e));
+                    }
+                    this.chunk = nextChunk.iterator();
+                }
+
+                return this.chunk.hasNext();
+            }
+
+            @Override
+            public String next()
+            {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                return this.chunk.next();
+            }
+        };
     }
 
     private Map<String, Map<String, Object>> getLanguageData(Document document)
@@ -3814,47 +5061,8 @@ public class DefaultBookVersionsManager implements BookVersionsManager
                     continue;
                 }
 
-                String language = (String) entry[0];
-                if (language != null && !language.isEmpty()) {
-                    // Title
-                    String title = (String) entry[1];
-
-                    // Status
-                    String statusParameterValue = (String) entry[2];
-                    Integer isDefault = (Integer) entry[3];
-
-                    // Status
-                    PageTranslationStatus status = PageTranslationStatus.NOT_TRANSLATED;
-                    if (statusParameterValue != null && !statusParameterValue.isEmpty()
-                        && statusParameterValue.toLowerCase().equals("translated")) {
-                        status = PageTranslationStatus.TRANSLATED;
-                    }
-                    if (statusParameterValue != null && !statusParameterValue.isEmpty()
-                        && statusParameterValue.toLowerCase().equals("outdated")) {
-                        status = PageTranslationStatus.OUTDATED;
-                    }
-
-                    // Default language
-                    Map<String, Object> currentLanguageData = new HashMap<String, Object>();
-                    currentLanguageData.put(BookVersionsConstants.PAGETRANSLATION_TITLE,
-                        title != null && !title.isEmpty() ? title : "");
-                    currentLanguageData.put(BookVersionsConstants.PAGETRANSLATION_STATUS,
-                        status != null ? status : PageTranslationStatus.NOT_TRANSLATED);
-                    if (languageData.get(language) != null
-                        && languageData.get(language).get(BookVersionsConstants.PAGETRANSLATION_HASTRANSLATED) != null
-                        && (boolean) languageData.get(language)
-                            .get(BookVersionsConstants.PAGETRANSLATION_HASTRANSLATED)) {
-                        // the current language already has a Translated status which should be kept
-                        currentLanguageData.put(BookVersionsConstants.PAGETRANSLATION_HASTRANSLATED, true);
-                    } else {
-                        currentLanguageData.put(BookVersionsConstants.PAGETRANSLATION_HASTRANSLATED,
-                            status == PageTranslationStatus.TRANSLATED);
-                    }
-                    currentLanguageData.put(BookVersionsConstants.PAGETRANSLATION_ISDEFAULT,
-                        isDefault != null && isDefault > 0 ? true : false);
-
-                    languageData.put(language, currentLanguageData);
-                }
+                PageMetadataLoader.addLanguageData(languageData, (String) entry[0], (String) entry[1],
+                    (String) entry[2], (Integer) entry[3]);
             }
         } catch (QueryException e) {
             logger.error("Could not compute teh list of variants for page [{}] : [{}]", documentReference, e);
@@ -0,0 +1,367 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentCreatingEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentDeletingEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.bridge.event.DocumentUpdatingEvent;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.CancelableEvent;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiAttachment;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.store.XWikiCacheStore;
+import com.xpn.xwiki.store.XWikiHibernateStore;
+import com.xpn.xwiki.store.XWikiHibernateVersioningStore;
+import com.xpn.xwiki.store.XWikiStoreInterface;
+
+/**
+ * Saves and deletes documents by groups, writing each group to the database in a single store transaction.
+ * <p>
+ * Only the database writes are grouped. The listeners are notified that a document is about to be saved or deleted
+ * when it's added to the batch, and that it was saved or deleted once its group is committed, so they never see an
+ * operation which is rolled back. When the transaction of a group fails, each operation of the group is done again in
+ * a transaction of its own, from a copy of the document taken before the first attempt, so that only the failing
+ * operation is lost. The documents whose save or deletion writes outside of the database, like the attachment
+ * contents, are saved or deleted right away through {@link XWiki}.
+ * <p>
+ * The operations are only visible to the other readers once their group is written, the batch has to be flushed
+ * before reading the documents again.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+public class DocumentBatch implements AutoCloseable
+{
+    private final XWikiContext xcontext;
+
+    private final int batchSize;
+
+    private final ObservationManager observationManager;
+
+    private final Logger logger;
+
+    private final List<PendingOperation> pendingOperations = new ArrayList<>();
+
+    /**
+     * The wiki of the pending operations, the documents of a group being written in the database of a single wiki.
+     */
+    private String wikiId;
+
+    /**
+     * The kind of a pending operation, which decides the events sent once it's written.
+     */
+    private enum OperationType
+    {
+        CREATE,
+        UPDATE,
+        DELETE
+    }
+
+    /**
+     * A document waiting to be written or deleted, with the information needed to notify the listeners once it is.
+     */
+    private static final class PendingOperation
+    {
+        private final XWikiDocument document;
+
+        /**
+         * The previous version of a saved document, or the blank document standing for a deleted document.
+         */
+        private final XWikiDocument eventDocument;
+
+        private final OperationType type;
+
+        private PendingOperation(XWikiDocument document, XWikiDocument eventDocument, OperationType type)
+        {
+            this.document = document;
+            this.eventDocument = eventDocument;
+            this.type = type;
+        }
+    }
+
+    /**
+     * @param xcontext the context the documents are saved in
+     * @param batchSize the number of documents written in a single transaction
+     * @param observationManager the observation manager notifying the listeners of the saves and deletions
+     * @param logger the logger to report the failed groups to
+     */
+    DocumentBatch(XWikiContext xcontext, int batchSize, ObservationManager observationManager, Logger logger)
+    {
+        this.xcontext = xcontext;
+        this.batchSize = Math.max(1, batchSize);
+        this.observationManager = observationManager;
+        this.logger = logger;
+    }
+
+    /**
+     * Add the save of a document to the batch. The document must not be modified afterwards.
+     *
+     * @param document the document to save
+     * @param comment the comment of the new document version
+     * @throws XWikiException happens if a listener cancels the save, or if the batch is full and the operations of
+     *     its documents have an issue
+     */
+    public void save(XWikiDocument document, String comment) throws XWikiException
+    {
+        if (!isBatchable(document) || hasAttachmentChanges(document)) {
+            this.xcontext.getWiki().saveDocument(document, comment, this.xcontext);
+            return;
+        }
+
+        document.setComment(StringUtils.defaultString(comment));
+        document.setMinorEdit(false);
+        // Same as XWiki#saveDocument, the listeners can modify the document before it's saved, or cancel its save
+        XWikiDocument originalDocument = document.getOriginalDocument();
+        if (originalDocument == null) {
+            originalDocument = new XWikiDocument(document.getDocumentReferenceWithLocale());
+        }
+        DocumentReference documentReference = document.getDocumentReference();
+        boolean created = originalDocument.isNew();
+        add(new PendingOperation(document, originalDocument, created ? OperationType.CREATE : OperationType.UPDATE),
+            created ? new DocumentCreatingEvent(documentReference) : new DocumentUpdatingEvent(documentReference),
+            document, XWikiException.ERROR_XWIKI_STORE_HIBERNATE_SAVING_DOC);
+    }
+
+    /**
+     * Add the deletion of a document to the batch, without keeping a copy of it in the recycle bin. It's done with the
+     * user of the context at the time it's added.
+     *
+     * @param document the document to delete
+     * @throws XWikiException happens if a listener cancels the deletion, or if the batch is full and the operations
+     *     of its documents have an issue
+     */
+    public void delete(XWikiDocument document) throws XWikiException
+    {
+        // The attachment contents are removed from their own store when the document is deleted
+        if (!isBatchable(document) || !document.getAttachmentList().isEmpty()) {
+            this.xcontext.getWiki().deleteDocument(document, false, this.xcontext);
+            return;
+        }
+
+        // Same as XWiki#deleteDocument, the listeners get a blank document giving access to the deleted one through
+        // its original document
+        DocumentReference documentReference = document.getDocumentReference();
+        XWikiDocument blankDocument = new XWikiDocument(documentReference);
+        blankDocument.setOriginalDocument(document.getOriginalDocument());
+        blankDocument.setAuthorReference(this.xcontext.getUserReference());
+        blankDocument.setContentAuthorReference(this.xcontext.getUserReference());
+        add(new PendingOperation(document, blankDocument, OperationType.DELETE),
+            new DocumentDeletingEvent(documentReference), blankDocument,
+            XWikiException.ERROR_XWIKI_STORE_HIBERNATE_DELETING_DOC);
+    }
+
+    /**
+     * Write the pending operations.
+     *
+     * @throws XWikiException happens if the operation of a document failed, even when written alone
+     */
+    public void flush() throws XWikiException
+    {
+        if (this.pendingOperations.isEmpty()) {
+            return;
+        }
+
+        List<PendingOperation> operations = new ArrayList<>(this.pendingOperations);
+        this.pendingOperations.clear();
+        XWikiHibernateStore store = this.xcontext.getWiki().getHibernateStore();
+        String currentWiki = this.xcontext.getWikiId();
+        try {
+            this.xcontext.setWikiId(this.wikiId);
+            List<XWikiDocument> writtenDocuments =
+                operations.size() > 1 ? writeInTransaction(store, operations) : null;
+            if (writtenDocuments != null) {
+                for (int i = 0; i < operations.size(); i++) {
+                    notifyWritten(operations.get(i), writtenDocuments.get(i));
+                }
+            } else {
+                for (PendingOperation operation : operations) {
+                    notifyWritten(operation, write(store, operation, true));
+                }
+            }
+        } finally {
+            this.xcontext.setWikiId(currentWiki);
+        }
+    }
+
+    @Override
+    public void close() throws XWikiException
+    {
+        flush();
+    }
+
+    /**
+     * Notify the listeners that a document is about to be written, and queue it unless they cancel the operation.
+     */
+    private void add(PendingOperation operation, CancelableEvent event, XWikiDocument eventSource, int errorCode)
+        throws XWikiException
+    {
+        String documentWiki = operation.document.getDocumentReference().getWikiReference().getName();
+        if (!documentWiki.equals(this.wikiId)) {
+            flush();
+            this.wikiId = documentWiki;
+        }
+
+        String currentWiki = this.xcontext.getWikiId();
+        try {
+            this.xcontext.setWikiId(documentWiki);
+            this.observationManager.notify(event, eventSource, this.xcontext);
+        } finally {
+            this.xcontext.setWikiId(currentWiki);
+        }
+        if (event.isCanceled()) {
+            throw new XWikiException(XWikiException.MODULE_XWIKI_STORE, errorCode,
+                String.format("An Event Listener has cancelled the document %s for [%s]. Reason: [%s]",
+                    operation.type == OperationType.DELETE ? "deletion" : "save",
+                    operation.document.getDocumentReference(), event.getReason()));
+        }
+
+        this.pendingOperations.add(operation);
+        if (this.pendingOperations.size() >= this.batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * The store transaction only covers the database, all the documents are written alone when the history isn't
+     * stored in the database.
+     */
+    private boolean isBatchable(XWikiDocument document)
+    {
+        XWiki xwiki = this.xcontext.getWiki();
+        return xwiki.getHibernateStore() != null
+            && xwiki.getVersioningStore() instanceof XWikiHibernateVersioningStore;
+    }
+
+    private boolean hasAttachmentChanges(XWikiDocument document)
+    {
+        if (!document.getAttachmentsToRemove().isEmpty()) {
+            return true;
+        }
+        for (XWikiAttachment attachment : document.getAttachmentList()) {
+            if (attachment.isContentDirty()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Write copies of the documents in a single transaction, as writing a document modifies it (its version, its
+     * history) and the documents might have to be written again if the transaction fails.
+     *
+     * @return the written copies, or {@code null} if the transaction failed and was rolled back
+     */
+    private List<XWikiDocument> writeInTransaction(XWikiHibernateStore store, List<PendingOperation> operations)
+    {
+        List<XWikiDocument> writtenDocuments = new ArrayList<>(operations.size());
+        boolean transaction = false;
+        try {
+            transaction = store.beginTransaction(this.xcontext);
+            if (!transaction) {
+                // The caller already opened a transaction, it's the one committing the documents
+                return null;
+            }
+            for (PendingOperation operation : operations) {
+                writtenDocuments.add(write(store, operation, false));
+            }
+            transaction = false;
+            store.endTransaction(this.xcontext, true);
+
+            return writtenDocuments;
+        } catch (XWikiException | RuntimeException e) {
+            if (transaction) {
+                store.endTransaction(this.xcontext, false);
+            }
+            this.logger.warn("Failed to write a batch of [{}] documents, writing them one by one. Root cause: [{}]",
+                operations.size(), ExceptionUtils.getRootCauseMessage(e));
+
+            return null;
+        }
+    }
+
+    private XWikiDocument write(XWikiHibernateStore store, PendingOperation operation, boolean transaction)
+        throws XWikiException
+    {
+        XWikiDocument writtenDocument = operation.document.clone();
+        if (operation.type == OperationType.DELETE) {
+            store.deleteXWikiDoc(writtenDocument, this.xcontext, transaction);
+        } else {
+            store.saveXWikiDoc(writtenDocument, this.xcontext, transaction);
+        }
+
+        return writtenDocument;
+    }
+
+    private void notifyWritten(PendingOperation operation, XWikiDocument writtenDocument)
+    {
+        // The documents cache may have loaded the previous version while the transaction was not committed
+        XWikiStoreInterface store = this.xcontext.getWiki().getStore();
+        if (store instanceof XWikiCacheStore) {
+            XWikiCacheStore cacheStore = (XWikiCacheStore) store;
+            String key = cacheStore.getKey(writtenDocument, this.xcontext);
+            if (cacheStore.getCache() != null) {
+                cacheStore.getCache().remove(key);
+            }
+            if (cacheStore.getPageExistCache() != null) {
+                cacheStore.getPageExistCache().remove(key);
+            }
+        }
+
+        DocumentReference documentReference = writtenDocument.getDocumentReference();
+        if (operation.type == OperationType.DELETE) {
+            try {
+                this.observationManager.notify(new DocumentDeletedEvent(documentReference), operation.eventDocument,
+                    this.xcontext);
+            } catch (Exception e) {
+                this.logger.error("Failed to send the deletion notification of document [{}]", documentReference, e);
+            }
+            return;
+        }
+
+        // Same as XWiki#saveDocument, the saved document gives access to the previous version through its original
+        // document while the listeners are notified
+        XWikiDocument newOriginalDocument = writtenDocument.getOriginalDocument();
+        try {
+            writtenDocument.setOriginalDocument(operation.eventDocument);
+            this.observationManager.notify(operation.type == OperationType.CREATE
+                ? new DocumentCreatedEvent(documentReference) : new DocumentUpdatedEvent(documentReference),
+                writtenDocument, this.xcontext);
+        } catch (Exception e) {
+            this.logger.error("Failed to send the save notification of document [{}]", documentReference, e);
+        } finally {
+            writtenDocument.setOriginalDocument(newOriginalDocument);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.observation.ObservationManager;
+
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * Open batches grouping the saves of many documents into a few store transactions.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+@Component(roles = DocumentBatchWriter.class)
+@Singleton
+public class DocumentBatchWriter
+{
+    private static final int DEFAULT_BATCH_SIZE = 100;
+
+    @Inject
+    @Named("wiki")
+    private ConfigurationSource wikiConfiguration;
+
+    @Inject
+    private ObservationManager observationManager;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * @param xcontext the context the documents are saved in
+     * @return a new batch, of the size configured in the wiki, to be closed once all its documents are added
+     */
+    public DocumentBatch open(XWikiContext xcontext)
+    {
+        Integer batchSize =
+            wikiConfiguration.getProperty(BookVersionsConstants.STORE_BATCH_SIZE_PROPERTY, DEFAULT_BATCH_SIZE);
+        return new DocumentBatch(xcontext, batchSize != null ? batchSize : DEFAULT_BATCH_SIZE, observationManager,
+            logger);
+    }
+}
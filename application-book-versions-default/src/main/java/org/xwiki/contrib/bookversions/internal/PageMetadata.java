@@ -0,0 +1,97 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.xwiki.model.reference.DocumentReference;
+
+/**
+ * The metadata of a page which decide if it has to be published: its status, its deleted mark, the variants it is
+ * associated with and its translations.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+public class PageMetadata
+{
+    /**
+     * The metadata of a page having none of the metadata objects.
+     */
+    public static final PageMetadata EMPTY = new PageMetadata(null, false, null, null);
+
+    private final String status;
+
+    private final boolean markedDeleted;
+
+    private final List<DocumentReference> variants;
+
+    private final Map<String, Map<String, Object>> languageData;
+
+    /**
+     * @param status the status of the page, {@code null} if it has none
+     * @param markedDeleted true if the page is marked as deleted
+     * @param variants the variants the page is associated with
+     * @param languageData the data of each translation of the page, as returned by
+     *     {@link org.xwiki.contrib.bookversions.BookVersionsManager#getLanguageData(DocumentReference)}
+     */
+    public PageMetadata(String status, boolean markedDeleted, List<DocumentReference> variants,
+        Map<String, Map<String, Object>> languageData)
+    {
+        this.status = status;
+        this.markedDeleted = markedDeleted;
+        this.variants = variants != null ? Collections.unmodifiableList(variants) : Collections.emptyList();
+        this.languageData = languageData != null ? Collections.unmodifiableMap(languageData) : Collections.emptyMap();
+    }
+
+    /**
+     * @return the status of the page, {@code null} if it has none
+     */
+    public String getStatus()
+    {
+        return this.status;
+    }
+
+    /**
+     * @return true if the page is marked as deleted
+     */
+    public boolean isMarkedDeleted()
+    {
+        return this.markedDeleted;
+    }
+
+    /**
+     * @return the variants the page is associated with
+     */
+    public List<DocumentReference> getVariants()
+    {
+        return this.variants;
+    }
+
+    /**
+     * @return the data of each translation of the page
+     */
+    public Map<String, Map<String, Object>> getLanguageData()
+    {
+        return this.languageData;
+    }
+}
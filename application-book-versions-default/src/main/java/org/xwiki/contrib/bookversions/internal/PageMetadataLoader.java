@@ -0,0 +1,310 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.bookversions.PageTranslationStatus;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+
+/**
+ * Load the publication metadata (status, deleted mark, variants and translations) of many pages at once, with a few
+ * set-based queries instead of several queries per page.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+@Component(roles = PageMetadataLoader.class)
+@Singleton
+public class PageMetadataLoader
+{
+    private static final int BULK_QUERY_SIZE = 1000;
+
+    private static final String NAMES = "names";
+
+    private static final String CLASS = "class";
+
+    private static final String PROPERTY = "property";
+
+    private static final List<String> TRANSLATION_PROPERTIES = List.of(BookVersionsConstants.PAGETRANSLATION_LANGUAGE,
+        BookVersionsConstants.PAGETRANSLATION_TITLE, BookVersionsConstants.PAGETRANSLATION_STATUS,
+        BookVersionsConstants.PAGETRANSLATION_ISDEFAULT);
+
+    private static final String DOCUMENT_FROM = "XWikiDocument as doc, BaseObject as obj";
+
+    private static final String DOCUMENT_CONDITION = "doc.fullName = obj.name and doc.translation = 0 and ";
+
+    @Inject
+    private Provider<QueryManager> queryManagerProvider;
+
+    @Inject
+    private DocumentReferenceResolver<String> referenceResolver;
+
+    @Inject
+    private SubspacesResolver subspacesResolver;
+
+    @Inject
+    @Named("local")
+    private EntityReferenceSerializer<String> localSerializer;
+
+    /**
+     * Load the metadata of the pages in the space of the given document and in its subspaces. The pages having none
+     * of the metadata objects are not part of the result.
+     *
+     * @param rootReference the reference of the top page
+     * @return the metadata of the pages under the top page (included) having some
+     * @throws QueryException happens when the query creation or execution has an issue.
+     */
+    public Map<DocumentReference, PageMetadata> load(DocumentReference rootReference) throws QueryException
+    {
+        Map<DocumentReference, PageMetadata> result = new HashMap<>();
+        if (rootReference == null) {
+            return result;
+        }
+
+        List<String> spaces = new ArrayList<>();
+        spaces.add(this.localSerializer.serialize(rootReference.getLastSpaceReference()));
+        spaces.addAll(this.subspacesResolver.getSubspaces(rootReference.getLastSpaceReference()));
+        Map<String, Object> parameters = new HashMap<>();
+        String condition = DOCUMENT_CONDITION + this.subspacesResolver.getCondition(spaces, parameters);
+        Map<String, PageData> pagesData = query(rootReference.getWikiReference(), DOCUMENT_FROM, condition, parameters);
+        for (Entry<String, PageData> pageData : pagesData.entrySet()) {
+            result.put(this.referenceResolver.resolve(pageData.getKey(), rootReference.getWikiReference()),
+                pageData.getValue().toMetadata(rootReference.getWikiReference()));
+        }
+
+        return result;
+    }
+
+    /**
+     * Load the metadata of the given pages.
+     *
+     * @param pageReferences the references of the pages
+     * @return the metadata of each given page, {@link PageMetadata#EMPTY} for the pages having none
+     * @throws QueryException happens when the query creation or execution has an issue.
+     */
+    public Map<DocumentReference, PageMetadata> load(Collection<DocumentReference> pageReferences)
+        throws QueryException
+    {
+        Map<DocumentReference, PageMetadata> result = new HashMap<>();
+        Map<WikiReference, Map<String, DocumentReference>> wikiReferences = new HashMap<>();
+        for (DocumentReference pageReference : pageReferences) {
+            if (pageReference != null) {
+                wikiReferences.computeIfAbsent(pageReference.getWikiReference(), k -> new HashMap<>())
+                    .put(this.localSerializer.serialize(pageReference), pageReference);
+            }
+        }
+
+        for (Entry<WikiReference, Map<String, DocumentReference>> wikiEntry : wikiReferences.entrySet()) {
+            List<String> names = new ArrayList<>(wikiEntry.getValue().keySet());
+            for (int i = 0; i < names.size(); i += BULK_QUERY_SIZE) {
+                List<String> chunk = names.subList(i, Math.min(i + BULK_QUERY_SIZE, names.size()));
+                Map<String, Object> parameters = new HashMap<>();
+                parameters.put(NAMES, chunk);
+                Map<String, PageData> pagesData =
+                    query(wikiEntry.getKey(), "BaseObject as obj", "obj.name in (:names)", parameters);
+                for (String name : chunk) {
+                    PageData pageData = pagesData.get(name);
+                    result.put(wikiEntry.getValue().get(name),
+                        pageData != null ? pageData.toMetadata(wikiEntry.getKey()) : PageMetadata.EMPTY);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Add the data of a translation object to the translations of a page. A language keeps being flagged as
+     * translated when another of its translation objects is translated.
+     *
+     * @param languageData the data of each translation of the page
+     * @param language the language of the translation
+     * @param title the title of the translation
+     * @param statusValue the status of the translation
+     * @param isDefault the default language flag of the translation
+     */
+    static void addLanguageData(Map<String, Map<String, Object>> languageData, String language, String title,
+        String statusValue, Integer isDefault)
+    {
+        if (language == null || language.isEmpty()) {
+            return;
+        }
+
+        PageTranslationStatus status = PageTranslationStatus.NOT_TRANSLATED;
+        if (statusValue != null
+            && statusValue.toLowerCase().equals(PageTranslationStatus.TRANSLATED.getTranslationStatus()))
+        {
+            status = PageTranslationStatus.TRANSLATED;
+        } else if (statusValue != null
+            && statusValue.toLowerCase().equals(PageTranslationStatus.OUTDATED.getTranslationStatus()))
+        {
+            status = PageTranslationStatus.OUTDATED;
+        }
+
+        Map<String, Object> previousLanguageData = languageData.get(language);
+        Map<String, Object> currentLanguageData = new HashMap<String, Object>();
+        currentLanguageData.put(BookVersionsConstants.PAGETRANSLATION_TITLE,
+            title != null && !title.isEmpty() ? title : "");
+        currentLanguageData.put(BookVersionsConstants.PAGETRANSLATION_STATUS, status);
+        currentLanguageData.put(BookVersionsConstants.PAGETRANSLATION_HASTRANSLATED,
+            status == PageTranslationStatus.TRANSLATED || (previousLanguageData != null
+                && Boolean.TRUE.equals(previousLanguageData.get(BookVersionsConstants.PAGETRANSLATION_HASTRANSLATED))));
+        currentLanguageData.put(BookVersionsConstants.PAGETRANSLATION_ISDEFAULT, isDefault != null && isDefault > 0);
+
+        languageData.put(language, currentLanguageData);
+    }
+
+    private Map<String, PageData> query(WikiReference wikiReference, String from, String condition,
+        Map<String, Object> parameters) throws QueryException
+    {
+        Map<String, PageData> pagesData = new HashMap<>();
+        String pageStatusClass = this.localSerializer.serialize(BookVersionsConstants.PAGESTATUS_CLASS_REFERENCE);
+        String translationClass =
+            this.localSerializer.serialize(BookVersionsConstants.PAGETRANSLATION_CLASS_REFERENCE);
+
+        // Status and translations, which are all string properties
+        List<Object[]> stringRows = createQuery(wikiReference,
+            "select obj.name, obj.className, obj.number, prop.name, prop.value from " + from
+                + ", StringProperty as prop where " + condition
+                + " and obj.className in (:classes) and prop.id.id = obj.id", parameters)
+            .bindValue("classes", List.of(pageStatusClass, translationClass))
+            .execute();
+        for (Object[] row : stringRows) {
+            PageData pageData = pagesData.computeIfAbsent((String) row[0], k -> new PageData());
+            if (pageStatusClass.equals(row[1])) {
+                if (BookVersionsConstants.PAGESTATUS_PROP_STATUS.equals(row[3])) {
+                    pageData.statuses.put((Integer) row[2], (String) row[4]);
+                }
+            } else if (TRANSLATION_PROPERTIES.contains(row[3])) {
+                pageData.getTranslation((Integer) row[2]).put((String) row[3], row[4]);
+            }
+        }
+
+        List<Object[]> isDefaultRows = createQuery(wikiReference,
+            "select obj.name, obj.number, prop.value from " + from + ", IntegerProperty as prop where " + condition
+                + " and obj.className = :class and prop.id.id = obj.id and prop.name = :property", parameters)
+            .bindValue(CLASS, translationClass)
+            .bindValue(PROPERTY, BookVersionsConstants.PAGETRANSLATION_ISDEFAULT)
+            .execute();
+        for (Object[] row : isDefaultRows) {
+            pagesData.computeIfAbsent((String) row[0], k -> new PageData()).getTranslation((Integer) row[1])
+                .put(BookVersionsConstants.PAGETRANSLATION_ISDEFAULT, row[2]);
+        }
+
+        List<Object[]> variantRows = createQuery(wikiReference,
+            "select obj.name, prop.value from " + from + ", LargeStringProperty as prop where " + condition
+                + " and obj.className = :class and prop.id.id = obj.id and prop.name = :property", parameters)
+            .bindValue(CLASS, this.localSerializer.serialize(BookVersionsConstants.VARIANTLIST_CLASS_REFERENCE))
+            .bindValue(PROPERTY, BookVersionsConstants.VARIANTLIST_PROP_VARIANTSLIST)
+            .execute();
+        for (Object[] row : variantRows) {
+            PageData pageData = pagesData.computeIfAbsent((String) row[0], k -> new PageData());
+            if (pageData.variants == null) {
+                pageData.variants = (String) row[1];
+            }
+        }
+
+        List<String> markedDeletedRows = createQuery(wikiReference,
+            "select distinct obj.name from " + from + " where " + condition + " and obj.className = :class",
+            parameters)
+            .bindValue(CLASS, this.localSerializer.serialize(BookVersionsConstants.MARKEDDELETED_CLASS_REFERENCE))
+            .execute();
+        for (String name : markedDeletedRows) {
+            pagesData.computeIfAbsent(name, k -> new PageData()).markedDeleted = true;
+        }
+
+        return pagesData;
+    }
+
+    private Query createQuery(WikiReference wikiReference, String statement, Map<String, Object> parameters)
+        throws QueryException
+    {
+        Query query = this.queryManagerProvider.get().createQuery(statement, Query.HQL)
+            .setWiki(wikiReference.getName());
+        for (Entry<String, Object> parameter : parameters.entrySet()) {
+            query = query.bindValue(parameter.getKey(), parameter.getValue());
+        }
+
+        return query;
+    }
+
+    /**
+     * The raw metadata of a page, as returned by the queries.
+     */
+    private final class PageData
+    {
+        private final TreeMap<Integer, String> statuses = new TreeMap<>();
+
+        private final TreeMap<Integer, Map<String, Object>> translations = new TreeMap<>();
+
+        private String variants;
+
+        private boolean markedDeleted;
+
+        private Map<String, Object> getTranslation(Integer number)
+        {
+            return this.translations.computeIfAbsent(number, k -> new HashMap<>());
+        }
+
+        private PageMetadata toMetadata(WikiReference wikiReference)
+        {
+            List<DocumentReference> variantReferences = new ArrayList<>();
+            if (this.variants != null) {
+                for (String variant : this.variants.split("\\|")) {
+                    variantReferences.add(referenceResolver.resolve(variant).setWikiReference(wikiReference));
+                }
+            }
+
+            Map<String, Map<String, Object>> languageData = new HashMap<>();
+            for (Map<String, Object> translation : this.translations.values()) {
+                // Only the complete translation objects are taken into account, as in getLanguageData
+                if (translation.keySet().containsAll(TRANSLATION_PROPERTIES)) {
+                    addLanguageData(languageData,
+                        (String) translation.get(BookVersionsConstants.PAGETRANSLATION_LANGUAGE),
+                        (String) translation.get(BookVersionsConstants.PAGETRANSLATION_TITLE),
+                        (String) translation.get(BookVersionsConstants.PAGETRANSLATION_STATUS),
+                        (Integer) translation.get(BookVersionsConstants.PAGETRANSLATION_ISDEFAULT));
+                }
+            }
+
+            return new PageMetadata(this.statuses.isEmpty() ? null : this.statuses.firstEntry().getValue(),
+                this.markedDeleted, variantReferences, languageData);
+        }
+    }
+}
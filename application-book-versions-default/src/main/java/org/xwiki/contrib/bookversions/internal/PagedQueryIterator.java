@@ -0,0 +1,134 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+
+/**
+ * Iterator over the document full names returned by a HQL query, fetching them lazily one page at a time. Pages are
+ * selected on the last full name returned instead of an offset, so the documents already iterated over can be
+ * deleted or modified while iterating without shifting the following pages.
+ * <p>
+ * The statement has to filter on {@code doc.fullName > :lastFullName} and to be ordered by {@code doc.fullName asc}.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+public class PagedQueryIterator implements Iterator<String>
+{
+    /**
+     * The name of the parameter holding the last full name of the previous page.
+     */
+    public static final String LAST_FULLNAME = "lastFullName";
+
+    private final QueryManager queryManager;
+
+    private final String statement;
+
+    private final Map<String, Object> parameters;
+
+    private final String wiki;
+
+    private final int pageSize;
+
+    private List<String> page = Collections.emptyList();
+
+    private int index;
+
+    private String lastFullName = "";
+
+    private boolean lastPage;
+
+    /**
+     * Create the iterator and fetch its first page.
+     *
+     * @param queryManager the query manager
+     * @param statement the HQL statement returning the document full names
+     * @param parameters the values to bind to the statement, except the last full name
+     * @param wiki the wiki to execute the query on
+     * @param pageSize the maximum number of full names to fetch at once
+     * @throws QueryException happens when the query creation or execution has an issue.
+     */
+    public PagedQueryIterator(QueryManager queryManager, String statement, Map<String, Object> parameters,
+        String wiki, int pageSize) throws QueryException
+    {
+        this.queryManager = queryManager;
+        this.statement = statement;
+        this.parameters = parameters;
+        this.wiki = wiki;
+        this.pageSize = pageSize;
+
+        fetch();
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        if (this.index < this.page.size()) {
+            return true;
+        }
+        if (this.lastPage) {
+            return false;
+        }
+
+        try {
+            fetch();
+        } catch (QueryException e) {
+            throw new IllegalStateException(
+                String.format("Failed to fetch the results following [%s] of [%s]", this.lastFullName,
+                    this.statement), e);
+        }
+
+        return this.index < this.page.size();
+    }
+
+    @Override
+    public String next()
+    {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        return this.page.get(this.index++);
+    }
+
+    private void fetch() throws QueryException
+    {
+        Query query = this.queryManager.createQuery(this.statement, Query.HQL);
+        for (Map.Entry<String, Object> parameter : this.parameters.entrySet()) {
+            query = query.bindValue(parameter.getKey(), parameter.getValue());
+        }
+        this.page = query.bindValue(LAST_FULLNAME, this.lastFullName).setLimit(this.pageSize).setWiki(this.wiki)
+            .execute();
+        this.index = 0;
+        this.lastPage = this.page.size() < this.pageSize;
+        if (!this.page.isEmpty()) {
+            this.lastFullName = this.page.get(this.page.size() - 1);
+        }
+    }
+}
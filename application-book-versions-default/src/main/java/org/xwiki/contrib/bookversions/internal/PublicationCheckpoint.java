@@ -0,0 +1,122 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.xwiki.model.reference.DocumentReference;
+
+/**
+ * The progress of a publication, saved periodically so that an interrupted publication can be resumed instead of
+ * being started again.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+public class PublicationCheckpoint
+{
+    private final String stamp;
+
+    private final Set<String> processedPages = ConcurrentHashMap.newKeySet();
+
+    private final List<DocumentReference> deletionQueue;
+
+    private final Set<DocumentReference> publishedPages;
+
+    /**
+     * @param stamp the state of the published documents when the publication started
+     */
+    public PublicationCheckpoint(String stamp)
+    {
+        this(stamp, Collections.emptyList(), Collections.emptyList(), Collections.emptySet());
+    }
+
+    /**
+     * @param stamp the state of the published documents when the publication started
+     * @param processedPages the references of the pages already processed by the publication
+     * @param deletionQueue the published pages still to remove at the end of the publication
+     * @param publishedPages the published pages matching the pages already processed, which are not orphans
+     */
+    public PublicationCheckpoint(String stamp, Collection<String> processedPages,
+        List<DocumentReference> deletionQueue, Set<DocumentReference> publishedPages)
+    {
+        this.stamp = stamp;
+        this.processedPages.addAll(processedPages);
+        this.deletionQueue = deletionQueue;
+        this.publishedPages = publishedPages;
+    }
+
+    /**
+     * @return the state of the published documents when the publication started, to be compared with their current
+     *     state before resuming
+     */
+    public String getStamp()
+    {
+        return this.stamp;
+    }
+
+    /**
+     * @return the references of the pages already processed by the publication
+     */
+    public Set<String> getProcessedPages()
+    {
+        return Collections.unmodifiableSet(this.processedPages);
+    }
+
+    /**
+     * @return the published pages still to remove at the end of the publication
+     */
+    public List<DocumentReference> getDeletionQueue()
+    {
+        return this.deletionQueue;
+    }
+
+    /**
+     * @return the published pages matching the pages already processed, including the skipped and unchanged ones,
+     *     which are not orphans
+     */
+    public Set<DocumentReference> getPublishedPages()
+    {
+        return this.publishedPages;
+    }
+
+    /**
+     * @param pageStringReference the reference of a page of the published tree
+     * @return {@code true} if the page has already been processed by the publication
+     */
+    public boolean isProcessed(String pageStringReference)
+    {
+        return this.processedPages.contains(pageStringReference);
+    }
+
+    /**
+     * @param pageStringReference the reference of the page just processed by the publication
+     * @return the number of pages processed by the publication
+     */
+    public int markProcessed(String pageStringReference)
+    {
+        this.processedPages.add(pageStringReference);
+        return this.processedPages.size();
+    }
+}
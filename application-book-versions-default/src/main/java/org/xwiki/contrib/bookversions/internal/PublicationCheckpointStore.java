@@ -0,0 +1,232 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.user.UserReference;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+
+/**
+ * Save the checkpoints of the publications in hidden documents, one per publication configuration. They are not
+ * saved in the configuration itself, as its version is part of the stamp the checkpoint is checked against.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+@Component(roles = PublicationCheckpointStore.class)
+@Singleton
+public class PublicationCheckpointStore
+{
+    private static final List<String> CHECKPOINTS_SPACES = Arrays.asList("BookVersions", "PublicationCheckpoints");
+
+    private static final int DEFAULT_INTERVAL = 500;
+
+    private static final String LINE_SEPARATOR = "\n";
+
+    @Inject
+    private Provider<XWikiContext> xcontextProvider;
+
+    @Inject
+    private DocumentReferenceResolver<String> referenceResolver;
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    @Inject
+    @Named("local")
+    private EntityReferenceSerializer<String> localSerializer;
+
+    @Inject
+    @Named("wiki")
+    private ConfigurationSource wikiConfiguration;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * @return the number of published pages between two checkpoints, configured in the wiki
+     */
+    public int getInterval()
+    {
+        Integer interval =
+            wikiConfiguration.getProperty(BookVersionsConstants.PUBLICATION_CHECKPOINT_INTERVAL_PROPERTY,
+                DEFAULT_INTERVAL);
+        return interval != null && interval > 0 ? interval : DEFAULT_INTERVAL;
+    }
+
+    /**
+     * @param configurationReference the reference of the publication configuration
+     * @return {@code true} if an interrupted publication of the configuration can be resumed
+     * @throws XWikiException happens if the existence of the checkpoint can't be checked
+     */
+    public boolean exists(DocumentReference configurationReference) throws XWikiException
+    {
+        XWikiContext xcontext = xcontextProvider.get();
+        return xcontext.getWiki().exists(getCheckpointReference(configurationReference), xcontext);
+    }
+
+    /**
+     * @param configurationReference the reference of the publication configuration
+     * @return the last checkpoint of the publication, {@code null} if there is none
+     * @throws XWikiException happens if the checkpoint document can't be loaded
+     */
+    public PublicationCheckpoint load(DocumentReference configurationReference) throws XWikiException
+    {
+        XWikiContext xcontext = xcontextProvider.get();
+        XWikiDocument checkpointDocument =
+            xcontext.getWiki().getDocument(getCheckpointReference(configurationReference), xcontext);
+        BaseObject checkpointObject =
+            checkpointDocument.getXObject(BookVersionsConstants.PUBLICATIONCHECKPOINT_CLASS_REFERENCE);
+        if (checkpointDocument.isNew() || checkpointObject == null) {
+            return null;
+        }
+
+        List<DocumentReference> deletionQueue = new ArrayList<>();
+        for (String deletedReference : split(
+            checkpointObject.getLargeStringValue(BookVersionsConstants.PUBLICATIONCHECKPOINT_PROP_DELETIONQUEUE)))
+        {
+            deletionQueue.add(referenceResolver.resolve(deletedReference));
+        }
+        Set<DocumentReference> publishedPages = new HashSet<>();
+        for (String publishedReference : split(
+            checkpointObject.getLargeStringValue(BookVersionsConstants.PUBLICATIONCHECKPOINT_PROP_PUBLISHEDPAGES)))
+        {
+            publishedPages.add(referenceResolver.resolve(publishedReference));
+        }
+        List<String> processedPages = split(
+            checkpointObject.getLargeStringValue(BookVersionsConstants.PUBLICATIONCHECKPOINT_PROP_PROCESSEDPAGES));
+
+        return new PublicationCheckpoint(
+            checkpointObject.getStringValue(BookVersionsConstants.PUBLICATIONCHECKPOINT_PROP_STAMP), processedPages,
+            deletionQueue, publishedPages);
+    }
+
+    /**
+     * Save the progress of a publication.
+     *
+     * @param configurationReference the reference of the publication configuration
+     * @param checkpoint the progress of the publication
+     * @param deletionQueue the published pages still to remove at the end of the publication
+     * @param publishedReferences the published pages matching the pages already processed, which are not orphans
+     * @param userReference the user publishing
+     * @throws XWikiException happens if the checkpoint document can't be saved
+     */
+    public void save(DocumentReference configurationReference, PublicationCheckpoint checkpoint,
+        List<DocumentReference> deletionQueue, Collection<DocumentReference> publishedReferences,
+        UserReference userReference) throws XWikiException
+    {
+        XWikiContext xcontext = xcontextProvider.get();
+        XWiki xwiki = xcontext.getWiki();
+        DocumentReference checkpointReference = getCheckpointReference(configurationReference);
+        XWikiDocument checkpointDocument = xwiki.getDocument(checkpointReference, xcontext).clone();
+
+        List<String> deletedReferences = new ArrayList<>();
+        // The queue is filled by the threads publishing the pages
+        synchronized (deletionQueue) {
+            for (DocumentReference deletedReference : deletionQueue) {
+                deletedReferences.add(serializer.serialize(deletedReference));
+            }
+        }
+        List<String> publishedPages = new ArrayList<>();
+        for (DocumentReference publishedReference : publishedReferences) {
+            publishedPages.add(serializer.serialize(publishedReference));
+        }
+
+        BaseObject checkpointObject = checkpointDocument.getXObject(
+            BookVersionsConstants.PUBLICATIONCHECKPOINT_CLASS_REFERENCE, true, xcontext);
+        checkpointObject.setStringValue(BookVersionsConstants.PUBLICATIONCHECKPOINT_PROP_STAMP,
+            checkpoint.getStamp());
+        checkpointObject.setLargeStringValue(BookVersionsConstants.PUBLICATIONCHECKPOINT_PROP_PROCESSEDPAGES,
+            String.join(LINE_SEPARATOR, checkpoint.getProcessedPages()));
+        checkpointObject.setLargeStringValue(BookVersionsConstants.PUBLICATIONCHECKPOINT_PROP_DELETIONQUEUE,
+            String.join(LINE_SEPARATOR, deletedReferences));
+        checkpointObject.setLargeStringValue(BookVersionsConstants.PUBLICATIONCHECKPOINT_PROP_PUBLISHEDPAGES,
+            String.join(LINE_SEPARATOR, publishedPages));
+        checkpointDocument.setHidden(true);
+        checkpointDocument.getAuthors().setEffectiveMetadataAuthor(userReference);
+        checkpointDocument.getAuthors().setOriginalMetadataAuthor(userReference);
+        if (checkpointDocument.isNew()) {
+            checkpointDocument.getAuthors().setCreator(userReference);
+        }
+        logger.debug("[save] Saving the checkpoint of [{}] in [{}], [{}] pages processed.", configurationReference,
+            checkpointReference, checkpoint.getProcessedPages().size());
+        xwiki.saveDocument(checkpointDocument, "Publication checkpoint", true, xcontext);
+    }
+
+    /**
+     * Remove the checkpoint of a publication, once it ended.
+     *
+     * @param configurationReference the reference of the publication configuration
+     * @throws XWikiException happens if the checkpoint document can't be removed
+     */
+    public void delete(DocumentReference configurationReference) throws XWikiException
+    {
+        XWikiContext xcontext = xcontextProvider.get();
+        XWiki xwiki = xcontext.getWiki();
+        DocumentReference checkpointReference = getCheckpointReference(configurationReference);
+        if (xwiki.exists(checkpointReference, xcontext)) {
+            logger.debug("[delete] Removing the checkpoint of [{}].", configurationReference);
+            // The checkpoint has no value once the publication ended, there's no need to keep it in the recycle bin
+            xwiki.deleteDocument(xwiki.getDocument(checkpointReference, xcontext), false, xcontext);
+        }
+    }
+
+    private DocumentReference getCheckpointReference(DocumentReference configurationReference)
+    {
+        return new DocumentReference(configurationReference.getWikiReference().getName(), CHECKPOINTS_SPACES,
+            localSerializer.serialize(configurationReference));
+    }
+
+    private List<String> split(String lines)
+    {
+        List<String> values = new ArrayList<>();
+        if (StringUtils.isNotEmpty(lines)) {
+            for (String line : lines.split(LINE_SEPARATOR)) {
+                if (StringUtils.isNotBlank(line)) {
+                    values.add(line.trim());
+                }
+            }
+        }
+        return values;
+    }
+}
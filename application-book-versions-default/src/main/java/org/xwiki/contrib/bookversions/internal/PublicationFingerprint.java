@@ -0,0 +1,161 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.xwiki.model.reference.DocumentReference;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiAttachment;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.objects.BaseProperty;
+import com.xpn.xwiki.objects.PropertyInterface;
+
+/**
+ * Computes a stable fingerprint of what a published document displays: its title, content, class, objects and
+ * attachments. The object holding the fingerprint itself is not part of it.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+public final class PublicationFingerprint
+{
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private static final char SEPARATOR = '\u0000';
+
+    private static final String HEXADECIMAL_FORMAT = "%064x";
+
+    private PublicationFingerprint()
+    {
+    }
+
+    /**
+     * @param document the document to compute the fingerprint of
+     * @param xcontext the context, used to load the attachment contents
+     * @return the hexadecimal fingerprint of the document
+     * @throws XWikiException happens if an attachment content can't be loaded
+     */
+    public static String compute(XWikiDocument document, XWikiContext xcontext) throws XWikiException
+    {
+        MessageDigest digest = getDigest();
+        update(digest, document.getTitle());
+        update(digest, document.getContent());
+        update(digest, document.getSyntax() != null ? document.getSyntax().toIdString() : null);
+        update(digest, String.valueOf(document.isHidden()));
+        update(digest, document.getXClassXML());
+
+        // The objects are sorted by class name, as the map order is not stable between two loads of the document
+        Map<String, List<BaseObject>> objects = new TreeMap<>();
+        DocumentReference fingerprintClassReference =
+            document.resolveClassReference(BookVersionsConstants.PUBLICATIONFINGERPRINT_CLASS_REFERENCE);
+        for (Map.Entry<DocumentReference, List<BaseObject>> classObjects : document.getXObjects().entrySet()) {
+            if (!fingerprintClassReference.equals(classObjects.getKey())) {
+                objects.put(classObjects.getKey().toString(), classObjects.getValue());
+            }
+        }
+        for (Map.Entry<String, List<BaseObject>> classObjects : objects.entrySet()) {
+            update(digest, classObjects.getKey());
+            for (BaseObject object : classObjects.getValue()) {
+                if (object == null) {
+                    continue;
+                }
+                update(digest, String.valueOf(object.getNumber()));
+                for (String propertyName : new TreeSet<>(object.getPropertyList())) {
+                    PropertyInterface property = object.safeget(propertyName);
+                    update(digest, propertyName);
+                    update(digest, property instanceof BaseProperty
+                        ? String.valueOf(((BaseProperty) property).getValue()) : null);
+                }
+            }
+        }
+
+        Map<String, XWikiAttachment> attachments = new TreeMap<>();
+        for (XWikiAttachment attachment : document.getAttachmentList()) {
+            attachments.put(attachment.getFilename(), attachment);
+        }
+        for (XWikiAttachment attachment : attachments.values()) {
+            update(digest, attachment.getFilename());
+            update(digest, attachment.getMimeType(xcontext));
+            update(digest, getAttachmentHash(attachment, xcontext));
+        }
+
+        return String.format(HEXADECIMAL_FORMAT, new BigInteger(1, digest.digest()));
+    }
+
+    /**
+     * @param document the published document
+     * @param source the serialized local reference of the page the document would be copied from
+     * @return true if the document holds a fingerprint recording that it was published from the given page
+     */
+    public static boolean isPublishedFrom(XWikiDocument document, String source)
+    {
+        BaseObject fingerprintObject =
+            document.getXObject(BookVersionsConstants.PUBLICATIONFINGERPRINT_CLASS_REFERENCE);
+
+        return fingerprintObject != null && source.equals(
+            fingerprintObject.getStringValue(BookVersionsConstants.PUBLICATIONFINGERPRINT_PROP_SOURCE));
+    }
+
+    private static String getAttachmentHash(XWikiAttachment attachment, XWikiContext xcontext)
+        throws XWikiException
+    {
+        MessageDigest digest = getDigest();
+        try (InputStream content = new DigestInputStream(attachment.getContentInputStream(xcontext), digest)) {
+            content.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            throw new XWikiException(XWikiException.MODULE_XWIKI_DOC, XWikiException.ERROR_XWIKI_UNKNOWN,
+                "Could not read the content of attachment " + attachment.getReference(), e);
+        }
+        return String.format(HEXADECIMAL_FORMAT, new BigInteger(1, digest.digest()));
+    }
+
+    private static void update(MessageDigest digest, String value)
+    {
+        if (value != null) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((byte) SEPARATOR);
+    }
+
+    private static MessageDigest getDigest()
+    {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
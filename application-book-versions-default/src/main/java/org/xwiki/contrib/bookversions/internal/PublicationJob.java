@@ -34,12 +34,15 @@ import org.xwiki.contrib.bookversions.PublishBookRight;
 import org.xwiki.job.AbstractJob;
 import org.xwiki.job.DefaultJobStatus;
 import org.xwiki.job.DefaultRequest;
+import org.xwiki.job.GroupedJob;
+import org.xwiki.job.JobGroupPath;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.security.authorization.AuthorizationManager;
 import org.xwiki.model.reference.EntityReference;
 
 /**
- * The job dedicated to publication of books and library.
+ * The job dedicated to publication of books and library. The publications to the same destination space share a job
+ * group, so that they are executed one after the other.
  * @version $Id$
  * @since 0.1
  */
@@ -47,6 +50,7 @@ import org.xwiki.model.reference.EntityReference;
 @Named(BookVersionsConstants.PUBLICATIONJOB_TYPE)
 @InstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP)
 public class PublicationJob extends AbstractJob<DefaultRequest, DefaultJobStatus<DefaultRequest>>
+    implements GroupedJob
 {
     @Inject
     private Provider<BookVersionsManager> bookVersionsManagerProvider;
@@ -54,18 +58,31 @@ public class PublicationJob extends AbstractJob<DefaultRequest, DefaultJobStatus
     @Inject
     private AuthorizationManager authorizationManager;
 
+    @Inject
+    private PublicationScheduler publicationScheduler;
+
     @Override
     public String getType()
     {
         return BookVersionsConstants.PUBLICATIONJOB_TYPE;
     }
 
+    @Override
+    public JobGroupPath getGroupPath()
+    {
+        return publicationScheduler.getGroupPath(this.request.getProperty(PublicationScheduler.DESTINATION_REFERENCE));
+    }
+
     @Override
     protected void runInternal() throws Exception
     {
-        DocumentReference configurationReference = this.request.getProperty("configurationReference");
+        DocumentReference configurationReference =
+            this.request.getProperty(PublicationScheduler.CONFIGURATION_REFERENCE);
         DocumentReference userReference = this.request.getProperty("userReference");
         Locale userLocale = this.request.getProperty("userLocale");
+        boolean resume = Boolean.TRUE.equals(this.request.getProperty(PublicationScheduler.RESUME));
+        // From now on, a new request of the same publication has to wait for this one
+        publicationScheduler.started(this.request.getId());
 
         // Verify that the user has the rights needed to execute the publication before actually publishing
         BookVersionsManager bookVersionsManager = bookVersionsManagerProvider.get();
@@ -85,7 +102,7 @@ public class PublicationJob extends AbstractJob<DefaultRequest, DefaultJobStatus
                 sourceReference.getLastSpaceReference())
                 && authorizationManager.hasAccess(PublishBookRight.getRight(), userReference, destinationReference))
             {
-                bookVersionsManager.publishInternal(configurationReference, userReference, userLocale);
+                bookVersionsManager.publishInternal(configurationReference, userReference, userLocale, resume);
             } else if (!authorizationManager.hasAccess(PublishBookRight.getRight(), userReference, sourceReference)) {
                 logger.error("User [{}] is missing book publication right on source book [{}]", userReference,
                     sourceReference);
@@ -97,4 +114,13 @@ public class PublicationJob extends AbstractJob<DefaultRequest, DefaultJobStatus
             logger.error("Incomplete publication configuration found for [{}]", configurationReference);
         }
     }
+
+    @Override
+    protected void jobFinished(Throwable error)
+    {
+        // The job may have never started, when it was canceled while waiting for its group
+        publicationScheduler.finished(this.request.getId());
+
+        super.jobFinished(error);
+    }
 }
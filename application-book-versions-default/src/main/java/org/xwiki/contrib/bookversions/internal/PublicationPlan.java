@@ -0,0 +1,239 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xwiki.model.reference.DocumentReference;
+
+/**
+ * The actions a publication does, as computed by its preview: which page is copied to where, which one is skipped
+ * and why, which published page is deleted. It's valid as long as the documents it was computed from did not
+ * change, as identified by its stamp.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+public class PublicationPlan
+{
+    /**
+     * The type of a planned action.
+     */
+    public enum ActionType
+    {
+        /**
+         * The content page is copied to the published page.
+         */
+        COPY,
+
+        /**
+         * The page is not published.
+         */
+        SKIP,
+
+        /**
+         * The published page is deleted, as the page is marked as deleted.
+         */
+        DELETE,
+
+        /**
+         * The order of the pinned pages is copied to the published pages.
+         */
+        PAGE_ORDER
+    }
+
+    /**
+     * An action planned on one page.
+     */
+    public static class Action
+    {
+        private final ActionType type;
+
+        private final String pageStringReference;
+
+        private final DocumentReference contentPageReference;
+
+        private final DocumentReference publishedReference;
+
+        private final String reason;
+
+        private final List<Object> reasonParameters;
+
+        /**
+         * @param type the type of action
+         * @param pageStringReference the reference of the page in the source, as listed by the page tree
+         * @param contentPageReference the page holding the published content, {@code null} if none
+         * @param publishedReference the published page, {@code null} if none
+         * @param reason why the page is skipped, {@code null} if it is not
+         */
+        public Action(ActionType type, String pageStringReference, DocumentReference contentPageReference,
+            DocumentReference publishedReference, String reason)
+        {
+            this(type, pageStringReference, contentPageReference, publishedReference, reason,
+                Collections.emptyList());
+        }
+
+        /**
+         * @param type the type of action
+         * @param pageStringReference the reference of the page in the source, as listed by the page tree
+         * @param contentPageReference the page holding the published content, {@code null} if none
+         * @param publishedReference the published page, {@code null} if none
+         * @param reason why the page is skipped, {@code null} if it is not
+         * @param reasonParameters the parameters of the message logged when the page is skipped
+         */
+        public Action(ActionType type, String pageStringReference, DocumentReference contentPageReference,
+            DocumentReference publishedReference, String reason, List<Object> reasonParameters)
+        {
+            this.type = type;
+            this.pageStringReference = pageStringReference;
+            this.contentPageReference = contentPageReference;
+            this.publishedReference = publishedReference;
+            this.reason = reason;
+            this.reasonParameters = reasonParameters;
+        }
+
+        /**
+         * @return the type of action
+         */
+        public ActionType getType()
+        {
+            return this.type;
+        }
+
+        /**
+         * @return the reference of the page in the source, as listed by the page tree
+         */
+        public String getPageStringReference()
+        {
+            return this.pageStringReference;
+        }
+
+        /**
+         * @return the page holding the published content, {@code null} if none
+         */
+        public DocumentReference getContentPageReference()
+        {
+            return this.contentPageReference;
+        }
+
+        /**
+         * @return the published page, {@code null} if none
+         */
+        public DocumentReference getPublishedReference()
+        {
+            return this.publishedReference;
+        }
+
+        /**
+         * @return why the page is skipped, {@code null} if it is not
+         */
+        public String getReason()
+        {
+            return this.reason;
+        }
+
+        /**
+         * @return the parameters of the message logged when the page is skipped
+         */
+        public List<Object> getReasonParameters()
+        {
+            return this.reasonParameters;
+        }
+    }
+
+    private final DocumentReference configurationReference;
+
+    private final String stamp;
+
+    private final List<Action> actions;
+
+    private final Map<String, Action> pageActions = new LinkedHashMap<>();
+
+    /**
+     * @param configurationReference the reference of the publication configuration
+     * @param stamp identifies the state of the documents the plan was computed from
+     * @param actions the planned actions, in the order they are executed
+     */
+    public PublicationPlan(DocumentReference configurationReference, String stamp, List<Action> actions)
+    {
+        this.configurationReference = configurationReference;
+        this.stamp = stamp;
+        this.actions = Collections.unmodifiableList(actions);
+        for (Action action : actions) {
+            if (action.getPageStringReference() != null) {
+                this.pageActions.put(action.getPageStringReference(), action);
+            }
+        }
+    }
+
+    /**
+     * @return the reference of the publication configuration
+     */
+    public DocumentReference getConfigurationReference()
+    {
+        return this.configurationReference;
+    }
+
+    /**
+     * @return identifies the state of the documents the plan was computed from
+     */
+    public String getStamp()
+    {
+        return this.stamp;
+    }
+
+    /**
+     * @return the planned actions, in the order they are executed
+     */
+    public List<Action> getActions()
+    {
+        return this.actions;
+    }
+
+    /**
+     * @return the references of the pages of the tree, including the skipped ones so that the publication logs why
+     *     they are skipped, in the order of the page tree
+     */
+    public List<String> getPageStringReferences()
+    {
+        return List.copyOf(this.pageActions.keySet());
+    }
+
+    /**
+     * @param pageStringReference the reference of a page in the source, as listed by the page tree
+     * @return the action planned for the page, {@code null} if the page is not in the plan
+     */
+    public Action getPageAction(String pageStringReference)
+    {
+        return this.pageActions.get(pageStringReference);
+    }
+
+    /**
+     * @param type a type of action
+     * @return true if an action of this type is planned
+     */
+    public boolean contains(ActionType type)
+    {
+        return this.actions.stream().anyMatch(action -> action.getType() == type);
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.user.UserReference;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * The state shared by all the pages of one publication: what is published, where, and what was collected while
+ * publishing. It can be shared by the threads publishing the pages in parallel.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+public class PublicationRun
+{
+    private final DocumentReference configurationReference;
+
+    private final Map<String, Object> configuration;
+
+    private final DocumentReference sourceReference;
+
+    private final SpaceReference targetReference;
+
+    private final XWikiDocument variant;
+
+    private final Map<String, Map<DocumentReference, DocumentReference>> publishedLibraries;
+
+    private final Map<DocumentReference, PageMetadata> pagesMetadata;
+
+    private final UserReference userReference;
+
+    private final String publicationComment;
+
+    private final Locale userLocale;
+
+    private final PublicationPlan plan;
+
+    private final List<DocumentReference> markedAsDeletedReferences =
+        Collections.synchronizedList(new ArrayList<>());
+
+    private final Map<String, Object> transformationProperties = new ConcurrentHashMap<>();
+
+    private final Set<DocumentReference> publishedReferences = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param configurationReference the reference of the publication configuration
+     * @param configuration the publication configuration, as loaded by
+     *     {@link org.xwiki.contrib.bookversions.BookVersionsManager#loadPublicationConfiguration(DocumentReference)}
+     * @param sourceReference the reference of the top page to publish
+     * @param targetReference the space to publish to
+     * @param variant the variant to publish, {@code null} if none
+     * @param publishedLibraries the published libraries used by the published book
+     * @param pagesMetadata the metadata of the pages to publish
+     * @param userReference the user publishing
+     * @param publicationComment the comment of the saved published pages
+     * @param userLocale the locale of the user publishing
+     * @param plan the plan computed by the preview of the publication, {@code null} if the pages are checked while
+     *     publishing them
+     */
+    public PublicationRun(DocumentReference configurationReference, Map<String, Object> configuration,
+        DocumentReference sourceReference, SpaceReference targetReference, XWikiDocument variant,
+        Map<String, Map<DocumentReference, DocumentReference>> publishedLibraries,
+        Map<DocumentReference, PageMetadata> pagesMetadata, UserReference userReference, String publicationComment,
+        Locale userLocale, PublicationPlan plan)
+    {
+        this.configurationReference = configurationReference;
+        this.configuration = configuration;
+        this.sourceReference = sourceReference;
+        this.targetReference = targetReference;
+        this.variant = variant;
+        this.publishedLibraries = publishedLibraries;
+        this.pagesMetadata = pagesMetadata;
+        this.userReference = userReference;
+        this.publicationComment = publicationComment;
+        this.userLocale = userLocale;
+        this.plan = plan;
+    }
+
+    /**
+     * @return the reference of the publication configuration
+     */
+    public DocumentReference getConfigurationReference()
+    {
+        return this.configurationReference;
+    }
+
+    /**
+     * @return the publication configuration
+     */
+    public Map<String, Object> getConfiguration()
+    {
+        return this.configuration;
+    }
+
+    /**
+     * @return the reference of the top page to publish
+     */
+    public DocumentReference getSourceReference()
+    {
+        return this.sourceReference;
+    }
+
+    /**
+     * @return the space to publish to
+     */
+    public SpaceReference getTargetReference()
+    {
+        return this.targetReference;
+    }
+
+    /**
+     * @return the variant to publish, {@code null} if none
+     */
+    public XWikiDocument getVariant()
+    {
+        return this.variant;
+    }
+
+    /**
+     * @return the published libraries used by the published book
+     */
+    public Map<String, Map<DocumentReference, DocumentReference>> getPublishedLibraries()
+    {
+        return this.publishedLibraries;
+    }
+
+    /**
+     * @return the metadata of the pages to publish
+     */
+    public Map<DocumentReference, PageMetadata> getPagesMetadata()
+    {
+        return this.pagesMetadata;
+    }
+
+    /**
+     * @return the user publishing
+     */
+    public UserReference getUserReference()
+    {
+        return this.userReference;
+    }
+
+    /**
+     * @return the comment of the saved published pages
+     */
+    public String getPublicationComment()
+    {
+        return this.publicationComment;
+    }
+
+    /**
+     * @return the locale of the user publishing
+     */
+    public Locale getUserLocale()
+    {
+        return this.userLocale;
+    }
+
+    /**
+     * @return the plan computed by the preview of the publication, {@code null} if the pages are checked while
+     *     publishing them
+     */
+    public PublicationPlan getPlan()
+    {
+        return this.plan;
+    }
+
+    /**
+     * @return the published pages to remove because their source is marked as deleted
+     */
+    public List<DocumentReference> getMarkedAsDeletedReferences()
+    {
+        return this.markedAsDeletedReferences;
+    }
+
+    /**
+     * @return the values computed once by the content transformation stages for all the pages
+     */
+    public Map<String, Object> getTransformationProperties()
+    {
+        return this.transformationProperties;
+    }
+
+    /**
+     * @return the pages of the destination space the publication published, whether they were saved or not because
+     *     they did not change
+     */
+    public Set<DocumentReference> getPublishedReferences()
+    {
+        return this.publishedReferences;
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal;
+
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * The schedule of the automatic publications of a configuration: either a cron expression ("minute hour day month
+ * weekday", supporting {@code *}, lists, ranges and steps) triggering a publication at the matching minutes, or a
+ * time window ("HH:mm-HH:mm", possibly over midnight) in which a publication is started once.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+public abstract class PublicationSchedule
+{
+    private static final Pattern WINDOW_PATTERN =
+        Pattern.compile("^(\\d{1,2}):(\\d{2})\\s*-\\s*(\\d{1,2}):(\\d{2})$");
+
+    /**
+     * A cron trigger missed for longer than that is ignored, as the schedules are only checked while the wiki runs.
+     */
+    private static final long MAXIMUM_CATCH_UP_MINUTES = TimeUnit.DAYS.toMinutes(1);
+
+    private static final int MAX_MINUTE = 59;
+
+    private static final int MAX_HOUR = 23;
+
+    /**
+     * @param schedule the schedule, as entered in the publication configuration
+     * @return the parsed schedule
+     * @throws IllegalArgumentException if the schedule is neither a cron expression nor a valid time window
+     */
+    public static PublicationSchedule parse(String schedule)
+    {
+        String trimmedSchedule = StringUtils.trimToEmpty(schedule);
+        Matcher windowMatcher = WINDOW_PATTERN.matcher(trimmedSchedule);
+        if (windowMatcher.matches()) {
+            LocalTime start = parseTime(windowMatcher.group(1), windowMatcher.group(2));
+            LocalTime end = parseTime(windowMatcher.group(3), windowMatcher.group(4));
+            if (start.equals(end)) {
+                throw new IllegalArgumentException(
+                    String.format("Invalid time window [%s]: it starts and ends at the same time", trimmedSchedule));
+            }
+            return new WindowSchedule(start, end);
+        }
+
+        return new CronSchedule(trimmedSchedule);
+    }
+
+    private static LocalTime parseTime(String hour, String minute)
+    {
+        int parsedHour = Integer.parseInt(hour);
+        int parsedMinute = Integer.parseInt(minute);
+        if (parsedHour > MAX_HOUR || parsedMinute > MAX_MINUTE) {
+            throw new IllegalArgumentException(String.format("Invalid time [%s:%s]", hour, minute));
+        }
+        return LocalTime.of(parsedHour, parsedMinute);
+    }
+
+    /**
+     * @param from the last time the schedule was checked, excluded
+     * @param to the current time, included
+     * @param lastStart the last time a publication was started by this schedule, {@code null} if none
+     * @return {@code true} if a publication has to be started
+     */
+    public boolean isTriggered(ZonedDateTime from, ZonedDateTime to, ZonedDateTime lastStart)
+    {
+        return getTrigger(from, to, lastStart) != null;
+    }
+
+    /**
+     * @param from the last time the schedule was checked, excluded
+     * @param to the current time, included
+     * @param lastStart the last trigger a publication was started for, {@code null} if none
+     * @return the latest time a publication was triggered at since the last start, {@code null} if none. The same
+     *     trigger is returned to every cluster node checking the schedule, so that only one of them starts it
+     */
+    public abstract ZonedDateTime getTrigger(ZonedDateTime from, ZonedDateTime to, ZonedDateTime lastStart);
+
+    /**
+     * @param now the current time
+     * @return {@code true} if a triggered publication waiting for the previous ones to end can still be started
+     */
+    public abstract boolean canStart(ZonedDateTime now);
+
+    private static final class WindowSchedule extends PublicationSchedule
+    {
+        private final LocalTime start;
+
+        private final LocalTime end;
+
+        WindowSchedule(LocalTime start, LocalTime end)
+        {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public ZonedDateTime getTrigger(ZonedDateTime from, ZonedDateTime to, ZonedDateTime lastStart)
+        {
+            if (!canStart(to)) {
+                return null;
+            }
+            // Only one publication per opening of the window
+            ZonedDateTime opening = getOpening(to);
+            return lastStart == null || lastStart.isBefore(opening) ? opening : null;
+        }
+
+        @Override
+        public boolean canStart(ZonedDateTime now)
+        {
+            LocalTime time = now.toLocalTime();
+            if (this.start.isBefore(this.end)) {
+                return !time.isBefore(this.start) && time.isBefore(this.end);
+            }
+            // The window goes over midnight
+            return !time.isBefore(this.start) || time.isBefore(this.end);
+        }
+
+        private ZonedDateTime getOpening(ZonedDateTime now)
+        {
+            ZonedDateTime opening = now.with(this.start).truncatedTo(ChronoUnit.MINUTES);
+            return opening.isAfter(now) ? opening.minusDays(1) : opening;
+        }
+    }
+
+    private static final class CronSchedule extends PublicationSchedule
+    {
+        private static final String ANY = "*";
+
+        private static final String STEP = "/";
+
+        private static final String RANGE = "-";
+
+        private static final int FIELD_COUNT = 5;
+
+        private static final int MAX_DAY_OF_MONTH = 31;
+
+        private static final int MAX_MONTH = 12;
+
+        private static final int SUNDAY = 7;
+
+        private final BitSet minutes;
+
+        private final BitSet hours;
+
+        private final BitSet daysOfMonth;
+
+        private final BitSet months;
+
+        private final BitSet daysOfWeek;
+
+        private final boolean restrictedDays;
+
+        CronSchedule(String expression)
+        {
+            String[] fields = StringUtils.split(expression);
+            if (fields.length != FIELD_COUNT) {
+                throw new IllegalArgumentException(
+                    String.format("Invalid schedule [%s]: expected a cron expression or a time window", expression));
+            }
+            this.minutes = parseField(fields[0], 0, MAX_MINUTE);
+            this.hours = parseField(fields[1], 0, MAX_HOUR);
+            this.daysOfMonth = parseField(fields[2], 1, MAX_DAY_OF_MONTH);
+            this.months = parseField(fields[3], 1, MAX_MONTH);
+            this.daysOfWeek = parseField(fields[4], 0, SUNDAY);
+            // Sunday can be written 0 or 7
+            if (this.daysOfWeek.get(SUNDAY)) {
+                this.daysOfWeek.set(0);
+            }
+            // As in cron, a day matching any of the day of month and day of week restrictions is a match. A field
+            // starting with "*", such as "*/2", is not a restriction
+            this.restrictedDays = !fields[2].startsWith(ANY) && !fields[4].startsWith(ANY);
+        }
+
+        @Override
+        public ZonedDateTime getTrigger(ZonedDateTime from, ZonedDateTime to, ZonedDateTime lastStart)
+        {
+            ZonedDateTime start = from.truncatedTo(ChronoUnit.MINUTES);
+            ZonedDateTime minute = to.truncatedTo(ChronoUnit.MINUTES);
+            if (start.isBefore(minute.minusMinutes(MAXIMUM_CATCH_UP_MINUTES))) {
+                start = minute.minusMinutes(MAXIMUM_CATCH_UP_MINUTES);
+            }
+            if (lastStart != null && lastStart.isAfter(start)) {
+                start = lastStart;
+            }
+            // Look for the latest matching minute, from the current one back to the last check or start
+            while (minute.isAfter(start)) {
+                if (matches(minute)) {
+                    return minute;
+                }
+                minute = minute.minusMinutes(1);
+            }
+            return null;
+        }
+
+        @Override
+        public boolean canStart(ZonedDateTime now)
+        {
+            // A triggered publication waits for the previous ones, whatever the time
+            return true;
+        }
+
+        private boolean matches(ZonedDateTime minute)
+        {
+            boolean dayOfMonth = this.daysOfMonth.get(minute.getDayOfMonth());
+            boolean dayOfWeek = this.daysOfWeek.get(minute.getDayOfWeek().getValue() % SUNDAY);
+            return this.minutes.get(minute.getMinute()) && this.hours.get(minute.getHour())
+                && this.months.get(minute.getMonthValue())
+                && (this.restrictedDays ? dayOfMonth || dayOfWeek : dayOfMonth && dayOfWeek);
+        }
+
+        private static BitSet parseField(String field, int min, int max)
+        {
+            BitSet values = new BitSet(max + 1);
+            for (String part : StringUtils.split(field, ',')) {
+                String range = StringUtils.substringBefore(part, STEP);
+                int step = part.contains(STEP) ? parseValue(StringUtils.substringAfter(part, STEP), 1, max) : 1;
+                int first;
+                int last;
+                if (ANY.equals(range)) {
+                    first = min;
+                    last = max;
+                } else if (range.contains(RANGE)) {
+                    first = parseValue(StringUtils.substringBefore(range, RANGE), min, max);
+                    last = parseValue(StringUtils.substringAfter(range, RANGE), first, max);
+                } else {
+                    first = parseValue(range, min, max);
+                    // "5/15" means every 15 starting at 5
+                    last = part.contains(STEP) ? max : first;
+                }
+                for (int value = first; value <= last; value += step) {
+                    values.set(value);
+                }
+            }
+            return values;
+        }
+
+        private static int parseValue(String value, int min, int max)
+        {
+            int parsedValue;
+            try {
+                parsedValue = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(String.format("Invalid cron value [%s]", value), e);
+            }
+            if (parsedValue < min || parsedValue > max) {
+                throw new IllegalArgumentException(
+                    String.format("Cron value [%s] is not between [%s] and [%s]", value, min, max));
+            }
+            return parsedValue;
+        }
+    }
+}
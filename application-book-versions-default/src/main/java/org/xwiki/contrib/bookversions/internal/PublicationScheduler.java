@@ -0,0 +1,217 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.bookversions.BookVersionsManager;
+import org.xwiki.job.DefaultRequest;
+import org.xwiki.job.Job;
+import org.xwiki.job.JobException;
+import org.xwiki.job.JobExecutor;
+import org.xwiki.job.JobGroupPath;
+import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.SpaceReference;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+
+/**
+ * Submit the publication jobs. The publications to the same destination space are executed one after the other, in
+ * a job group of their own, and a publication requested while the same one is still waiting to start is not queued a
+ * second time. Only the requests of the same user and locale are joined, as the publication is done on behalf of the
+ * user and logs its messages in the locale.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+@Component(roles = PublicationScheduler.class)
+@Singleton
+public class PublicationScheduler
+{
+    /**
+     * The request property holding the reference of the publication configuration.
+     */
+    public static final String CONFIGURATION_REFERENCE = "configurationReference";
+
+    /**
+     * The request property holding the destination space of the publication.
+     */
+    public static final String DESTINATION_REFERENCE = "destinationReference";
+
+    /**
+     * The request property telling if the publication continues from its last checkpoint.
+     */
+    public static final String RESUME = "resume";
+
+    private static final List<String> PUBLICATION_GROUP = Arrays.asList("bookversions", "publication");
+
+    @Inject
+    private JobExecutor jobExecutor;
+
+    @Inject
+    private Provider<XWikiContext> xcontextProvider;
+
+    @Inject
+    private Provider<BookVersionsManager> bookVersionsManagerProvider;
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * The ids of the jobs waiting to start, by configuration, resume mode, user and locale.
+     */
+    private final Map<List<Object>, List<String>> pendingJobs = new HashMap<>();
+
+    /**
+     * Request a publication, or join the same publication if it's still waiting for the previous publications to the
+     * same destination to end.
+     *
+     * @param configurationReference the reference of the publication configuration
+     * @param resume {@code true} to continue the publication from its last checkpoint
+     * @return the id of the publication job
+     * @throws JobException if the configuration can't be loaded or the job can't be submitted
+     */
+    public String schedule(DocumentReference configurationReference, boolean resume) throws JobException
+    {
+        XWikiContext xcontext = xcontextProvider.get();
+        return schedule(configurationReference, resume, xcontext.getUserReference(), xcontext.getLocale());
+    }
+
+    /**
+     * Request a publication on behalf of a user, or join the same publication if it's still waiting for the previous
+     * publications to the same destination to end.
+     *
+     * @param configurationReference the reference of the publication configuration
+     * @param resume {@code true} to continue the publication from its last checkpoint
+     * @param userReference the user executing the publication
+     * @param userLocale the locale of the publication messages
+     * @return the id of the publication job
+     * @throws JobException if the configuration can't be loaded or the job can't be submitted
+     */
+    public String schedule(DocumentReference configurationReference, boolean resume,
+        DocumentReference userReference, Locale userLocale) throws JobException
+    {
+        // Load the configuration before taking the lock, so that the other requests don't wait for it
+        SpaceReference destinationReference = getDestinationReference(configurationReference);
+        List<Object> key = Arrays.asList(configurationReference, resume, userReference, userLocale);
+        synchronized (this) {
+            // Forget the jobs which will never start, such as the ones canceled or lost before starting
+            this.pendingJobs.values().removeIf(pendingJobId -> !isWaiting(pendingJobId));
+            List<String> pendingJobId = this.pendingJobs.get(key);
+            if (pendingJobId != null) {
+                logger.debug("[schedule] Publication of [{}] is already waiting in job [{}].",
+                    configurationReference, pendingJobId);
+                return pendingJobId.get(0);
+            }
+
+            String jobId = execute(configurationReference, resume, userReference, userLocale,
+                destinationReference);
+            this.pendingJobs.put(key, Arrays.asList(jobId));
+
+            return jobId;
+        }
+    }
+
+    private String execute(DocumentReference configurationReference, boolean resume, DocumentReference userReference,
+        Locale userLocale, SpaceReference destinationReference) throws JobException
+    {
+        DefaultRequest jobRequest = new DefaultRequest();
+        String jobId = BookVersionsConstants.PUBLICATION_JOBID_PREFIX
+            + BookVersionsConstants.PUBLICATION_JOBID_SEPARATOR + configurationReference.getName()
+            + BookVersionsConstants.PUBLICATION_JOBID_SEPARATOR + Instant.now().toString();
+        jobRequest.setId(jobId);
+        jobRequest.setProperty(CONFIGURATION_REFERENCE, configurationReference);
+        jobRequest.setProperty(DESTINATION_REFERENCE, destinationReference);
+        // The context won't be full in publishInternal as it is executed by a job, so the user executing the
+        // publication and locale have to be passed as parameters.
+        jobRequest.setProperty("userReference", userReference);
+        jobRequest.setProperty("userLocale", userLocale);
+        jobRequest.setProperty(RESUME, resume);
+        jobExecutor.execute(BookVersionsConstants.PUBLICATIONJOB_TYPE, jobRequest);
+
+        return jobId;
+    }
+
+    /**
+     * Called by a publication job when it starts, after which a new request of the same publication is queued again.
+     *
+     * @param jobId the id of the started job
+     */
+    public synchronized void started(List<String> jobId)
+    {
+        this.pendingJobs.values().remove(jobId);
+    }
+
+    /**
+     * Called by a publication job when it's finished, including when it failed or was canceled before starting.
+     *
+     * @param jobId the id of the finished job
+     */
+    public synchronized void finished(List<String> jobId)
+    {
+        this.pendingJobs.values().remove(jobId);
+    }
+
+    /**
+     * @param destinationReference the destination space of the publication, {@code null} if unknown
+     * @return the group of the publication job, shared by all the publications to the same destination
+     */
+    public JobGroupPath getGroupPath(SpaceReference destinationReference)
+    {
+        JobGroupPath publicationGroup = new JobGroupPath(PUBLICATION_GROUP);
+        return destinationReference != null
+            ? new JobGroupPath(serializer.serialize(destinationReference), publicationGroup) : publicationGroup;
+    }
+
+    private boolean isWaiting(List<String> jobId)
+    {
+        Job job = jobExecutor.getJob(jobId);
+        // A job waiting for the previous jobs of its group is still in the NONE state
+        return job != null && job.getStatus() != null && job.getStatus().getState() == JobStatus.State.NONE;
+    }
+
+    private SpaceReference getDestinationReference(DocumentReference configurationReference) throws JobException
+    {
+        try {
+            return (SpaceReference) bookVersionsManagerProvider.get()
+                .loadPublicationConfiguration(configurationReference)
+                .get(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_DESTINATIONSPACE);
+        } catch (XWikiException e) {
+            throw new JobException("Failed to load the publication configuration " + configurationReference, e);
+        }
+    }
+}
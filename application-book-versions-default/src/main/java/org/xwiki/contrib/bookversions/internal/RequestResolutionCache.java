@@ -0,0 +1,134 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.query.QueryException;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+
+/**
+ * Memoize the resolutions (collection, selected version, content reference...) done while handling a request, so the
+ * same document is resolved only once per request. The memo is stored in the {@link XWikiContext} and bound to the
+ * thread which created it, so that the jobs started from the request (which receive a copy of the context) don't
+ * share it.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+@Component(roles = RequestResolutionCache.class)
+@Singleton
+public class RequestResolutionCache
+{
+    private static final String CONTEXT_KEY = "bookversions.requestResolutions";
+
+    /**
+     * A resolution to memoize.
+     *
+     * @param <T> the type of the resolved value
+     */
+    @FunctionalInterface
+    public interface Resolution<T>
+    {
+        /**
+         * @return the resolved value
+         * @throws XWikiException In case the system can't provide an answer.
+         * @throws QueryException If any exception occurs while querying the database.
+         */
+        T resolve() throws XWikiException, QueryException;
+    }
+
+    private static final class Memo
+    {
+        private final Thread thread = Thread.currentThread();
+
+        private final Map<List<Object>, Object> values = new HashMap<>();
+    }
+
+    @Inject
+    private Provider<XWikiContext> contextProvider;
+
+    /**
+     * @param <T> the type of the resolved value
+     * @param name the name of the resolution
+     * @param parameters the parameters of the resolution
+     * @param resolution the resolution to execute when it's not memoized yet for the current request
+     * @return the resolved value
+     * @throws XWikiException In case the system can't provide an answer.
+     * @throws QueryException If any exception occurs while querying the database.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String name, List<?> parameters, Resolution<T> resolution) throws XWikiException, QueryException
+    {
+        Memo memo = getMemo(true);
+        if (memo == null) {
+            return resolution.resolve();
+        }
+
+        List<Object> key = List.of(name, parameters);
+        if (memo.values.containsKey(key)) {
+            return (T) memo.values.get(key);
+        }
+
+        T value = resolution.resolve();
+        memo.values.put(key, value);
+
+        return value;
+    }
+
+    /**
+     * Forget all the resolutions of the current request, to be called when something they depend on is modified.
+     */
+    public void clear()
+    {
+        Memo memo = getMemo(false);
+        if (memo != null) {
+            memo.values.clear();
+        }
+    }
+
+    private Memo getMemo(boolean create)
+    {
+        XWikiContext xcontext = this.contextProvider.get();
+        if (xcontext == null || xcontext.getRequest() == null) {
+            return null;
+        }
+
+        Object memo = xcontext.get(CONTEXT_KEY);
+        if (memo instanceof Memo && ((Memo) memo).thread == Thread.currentThread()) {
+            return (Memo) memo;
+        } else if (create) {
+            Memo newMemo = new Memo();
+            xcontext.put(CONTEXT_KEY, newMemo);
+            return newMemo;
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,403 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal;
+
+import java.time.DateTimeException;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.contrib.bookversions.BookVersionsManager;
+import org.xwiki.contrib.bookversions.PublishBookRight;
+import org.xwiki.job.Job;
+import org.xwiki.job.JobException;
+import org.xwiki.job.JobExecutor;
+import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+import org.xwiki.security.authorization.AuthorizationManager;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+import org.xwiki.wiki.manager.WikiManagerException;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.store.XWikiHibernateStore;
+
+/**
+ * Start the publications of the configurations having a schedule. The schedules are checked every minute, and no
+ * more than the configured number of scheduled publications run or wait at the same time: a triggered publication
+ * which can't be started yet is started as soon as a previous one ends, as long as its schedule still allows it.
+ * <p>
+ * The publications are done as the publisher user set in the wiki configuration, when the last author of the
+ * publication configuration has the book publication right on its source and destination. In a cluster, every node
+ * checks the schedules, and the node which first claims a trigger in the hidden claim document of the configuration
+ * is the only one starting it.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+@Component(roles = ScheduledPublicationRunner.class)
+@Singleton
+public class ScheduledPublicationRunner implements Initializable, Disposable
+{
+    private static final long CHECK_PERIOD_SECONDS = 60;
+
+    private static final int DEFAULT_LIMIT = 1;
+
+    private static final String SCHEDULES_QUERY = "select doc.fullName, prop.value from XWikiDocument as doc, "
+        + "BaseObject as obj, StringProperty as prop where doc.fullName = obj.name and obj.className = :className "
+        + "and prop.id.id = obj.id and prop.id.name = :propName and prop.value is not null and prop.value <> ''";
+
+    private static final List<String> CLAIMS_SPACES = Arrays.asList("BookVersions", "PublicationScheduleClaims");
+
+    private static final String CLAIM_QUERY = "update LongProperty prop set prop.value = :trigger "
+        + "where prop.id.id = :objectId and prop.id.name = :propName and prop.value < :trigger";
+
+    @Inject
+    private Provider<QueryManager> queryManagerProvider;
+
+    @Inject
+    private WikiDescriptorManager wikiDescriptorManager;
+
+    @Inject
+    private DocumentReferenceResolver<String> referenceResolver;
+
+    @Inject
+    @Named("local")
+    private EntityReferenceSerializer<String> localSerializer;
+
+    @Inject
+    private PublicationScheduler publicationScheduler;
+
+    @Inject
+    private Provider<BookVersionsManager> bookVersionsManagerProvider;
+
+    @Inject
+    private AuthorizationManager authorizationManager;
+
+    @Inject
+    private JobExecutor jobExecutor;
+
+    @Inject
+    private Provider<XWikiContext> xcontextProvider;
+
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private ExecutionContextManager executionContextManager;
+
+    @Inject
+    @Named("wiki")
+    private ConfigurationSource wikiConfiguration;
+
+    @Inject
+    private Logger logger;
+
+    private ScheduledExecutorService executor;
+
+    /**
+     * The schedules of the configurations, {@code null} when they have to be loaded again.
+     */
+    private volatile Map<DocumentReference, PublicationSchedule> schedules;
+
+    private final Map<DocumentReference, ZonedDateTime> lastStarts = new HashMap<>();
+
+    /**
+     * The latest triggers of the configurations waiting to be started.
+     */
+    private final Map<DocumentReference, ZonedDateTime> triggeredPublications = new LinkedHashMap<>();
+
+    private final List<List<String>> startedJobs = new ArrayList<>();
+
+    private ZonedDateTime lastCheck;
+
+    @Override
+    public void initialize()
+    {
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "BookVersions scheduled publications");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.scheduleWithFixedDelay(this::check, CHECK_PERIOD_SECONDS, CHECK_PERIOD_SECONDS,
+            TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Load the schedules again at the next check, as a publication configuration changed.
+     */
+    public void invalidate()
+    {
+        this.schedules = null;
+    }
+
+    private synchronized void check()
+    {
+        ExecutionContext executionContext = new ExecutionContext();
+        try {
+            executionContextManager.initialize(executionContext);
+            ZonedDateTime now = ZonedDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+            ZonedDateTime from = this.lastCheck != null ? this.lastCheck : now.minusMinutes(1);
+            Map<DocumentReference, PublicationSchedule> currentSchedules = getSchedules();
+            for (Map.Entry<DocumentReference, PublicationSchedule> schedule : currentSchedules.entrySet()) {
+                ZonedDateTime trigger =
+                    schedule.getValue().getTrigger(from, now, this.lastStarts.get(schedule.getKey()));
+                if (trigger != null) {
+                    this.triggeredPublications.put(schedule.getKey(), trigger);
+                }
+            }
+            this.lastCheck = now;
+            startTriggeredPublications(currentSchedules, now);
+        } catch (Exception e) {
+            // Any exception would cancel the next checks. The wiki might also not be ready yet, the next check will
+            // try again
+            logger.warn("Failed to start the scheduled publications: [{}]", ExceptionUtils.getRootCauseMessage(e));
+        } finally {
+            execution.removeContext();
+        }
+    }
+
+    private void startTriggeredPublications(Map<DocumentReference, PublicationSchedule> currentSchedules,
+        ZonedDateTime now) throws XWikiException, JobException
+    {
+        this.startedJobs.removeIf(this::isEnded);
+        int limit = Math.max(1, wikiConfiguration.getProperty(
+            BookVersionsConstants.SCHEDULED_PUBLICATIONS_LIMIT_PROPERTY, DEFAULT_LIMIT));
+        Iterator<Map.Entry<DocumentReference, ZonedDateTime>> triggeredIterator =
+            this.triggeredPublications.entrySet().iterator();
+        while (triggeredIterator.hasNext()) {
+            Map.Entry<DocumentReference, ZonedDateTime> triggered = triggeredIterator.next();
+            DocumentReference configurationReference = triggered.getKey();
+            if (!currentSchedules.get(configurationReference).canStart(now)) {
+                logger.debug("[startTriggeredPublications] Scheduled publication of [{}] is dropped, its time "
+                    + "window is closed.", configurationReference);
+                triggeredIterator.remove();
+            } else if (this.startedJobs.size() < limit) {
+                // Whether this node or another one of the cluster starts it, this trigger is handled
+                this.lastStarts.put(configurationReference, triggered.getValue());
+                triggeredIterator.remove();
+                String jobId = start(configurationReference, triggered.getValue());
+                if (jobId != null) {
+                    this.startedJobs.add(Collections.singletonList(jobId));
+                }
+            }
+        }
+    }
+
+    private String start(DocumentReference configurationReference, ZonedDateTime trigger)
+        throws XWikiException, JobException
+    {
+        XWikiContext xcontext = xcontextProvider.get();
+        xcontext.setWikiId(configurationReference.getWikiReference().getName());
+        // The publication is done as the publisher explicitly chosen by the wiki administrators, as long as the user
+        // who set up the schedule is allowed to publish the book themselves
+        String publisher = wikiConfiguration.getProperty(
+            BookVersionsConstants.SCHEDULED_PUBLICATIONS_USER_PROPERTY, String.class);
+        if (StringUtils.isBlank(publisher)) {
+            logger.warn("Scheduled publication of [{}] is not started, no publisher user is set in the [{}] wiki "
+                + "configuration property.", configurationReference,
+                BookVersionsConstants.SCHEDULED_PUBLICATIONS_USER_PROPERTY);
+            return null;
+        }
+        DocumentReference userReference =
+            referenceResolver.resolve(publisher, configurationReference.getWikiReference());
+        XWikiDocument configuration = xcontext.getWiki().getDocument(configurationReference, xcontext);
+        if (!canPublish(configuration.getAuthorReference(), configurationReference)) {
+            logger.warn("Scheduled publication of [{}] is not started, its last author [{}] is missing the book "
+                + "publication right on its source or destination.", configurationReference,
+                configuration.getAuthorReference());
+            return null;
+        }
+        if (!claim(configurationReference, trigger, xcontext)) {
+            logger.debug("[start] Scheduled publication of [{}] at [{}] is started by another cluster node.",
+                configurationReference, trigger);
+            return null;
+        }
+        logger.debug("[start] Starting the scheduled publication of [{}] as [{}].", configurationReference,
+            userReference);
+
+        return publicationScheduler.schedule(configurationReference, false, userReference,
+            configuration.getDefaultLocale());
+    }
+
+    private boolean canPublish(DocumentReference authorReference, DocumentReference configurationReference)
+        throws XWikiException
+    {
+        Map<String, Object> publicationConfiguration =
+            bookVersionsManagerProvider.get().loadPublicationConfiguration(configurationReference);
+        DocumentReference sourceReference = (DocumentReference) publicationConfiguration.get(
+            BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_SOURCE);
+        EntityReference destinationReference = (EntityReference) publicationConfiguration.get(
+            BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_DESTINATIONSPACE);
+        // An incomplete configuration is reported by the publication job
+        return sourceReference == null || destinationReference == null
+            || authorizationManager.hasAccess(PublishBookRight.getRight(), authorReference,
+                sourceReference.getLastSpaceReference())
+            && authorizationManager.hasAccess(PublishBookRight.getRight(), authorReference, destinationReference);
+    }
+
+    /**
+     * Claim a trigger of a schedule in the claim document of the configuration, which records the last claimed
+     * trigger. The recorded trigger is compared and updated in a single statement, so that of the cluster nodes
+     * claiming the same trigger only the first one updates it. When the claim document doesn't exist yet, only one of
+     * the nodes creating it at the same time succeeds, as they insert the same document.
+     *
+     * @return {@code true} if this node claimed the trigger
+     */
+    private boolean claim(DocumentReference configurationReference, ZonedDateTime trigger, XWikiContext xcontext)
+    {
+        XWikiHibernateStore store = xcontext.getWiki().getHibernateStore();
+        DocumentReference claimReference = getClaimReference(configurationReference);
+        long triggerTime = trigger.toEpochSecond();
+        try {
+            return store.executeWrite(xcontext, session -> {
+                // The claim document is read from the store and not from the documents cache, which doesn't know
+                // about the claims of the other nodes
+                XWikiDocument claimDocument = store.loadXWikiDoc(new XWikiDocument(claimReference), xcontext);
+                BaseObject claimObject =
+                    claimDocument.getXObject(BookVersionsConstants.PUBLICATIONSCHEDULECLAIM_CLASS_REFERENCE);
+                if (claimObject == null) {
+                    claimObject = claimDocument.newXObject(
+                        BookVersionsConstants.PUBLICATIONSCHEDULECLAIM_CLASS_REFERENCE, xcontext);
+                    claimObject.setLongValue(BookVersionsConstants.PUBLICATIONSCHEDULECLAIM_PROP_TRIGGER,
+                        triggerTime);
+                    claimDocument.setHidden(true);
+                    store.saveXWikiDoc(claimDocument, xcontext, false);
+                    return true;
+                }
+
+                return session.createQuery(CLAIM_QUERY)
+                    .setParameter("trigger", triggerTime)
+                    .setParameter("objectId", claimObject.getId())
+                    .setParameter("propName", BookVersionsConstants.PUBLICATIONSCHEDULECLAIM_PROP_TRIGGER)
+                    .executeUpdate() > 0;
+            });
+        } catch (XWikiException e) {
+            logger.debug("[claim] Failed to claim the trigger [{}] of [{}]: [{}]", trigger, configurationReference,
+                ExceptionUtils.getRootCauseMessage(e));
+            return false;
+        }
+    }
+
+    /**
+     * Remove the claim document of a configuration, once it's deleted or not scheduled anymore.
+     *
+     * @param configurationReference the reference of the publication configuration
+     */
+    public void removeClaim(DocumentReference configurationReference)
+    {
+        XWikiContext xcontext = xcontextProvider.get();
+        XWiki xwiki = xcontext.getWiki();
+        DocumentReference claimReference = getClaimReference(configurationReference);
+        try {
+            if (xwiki.exists(claimReference, xcontext)) {
+                logger.debug("[removeClaim] Removing the schedule claim of [{}].", configurationReference);
+                xwiki.deleteDocument(xwiki.getDocument(claimReference, xcontext), false, xcontext);
+            }
+        } catch (XWikiException e) {
+            logger.warn("Failed to remove the schedule claim of [{}]: [{}]", configurationReference,
+                ExceptionUtils.getRootCauseMessage(e));
+        }
+    }
+
+    private DocumentReference getClaimReference(DocumentReference configurationReference)
+    {
+        return new DocumentReference(configurationReference.getWikiReference().getName(), CLAIMS_SPACES,
+            localSerializer.serialize(configurationReference));
+    }
+
+    private boolean isEnded(List<String> jobId)
+    {
+        Job job = jobExecutor.getJob(jobId);
+        return job == null || job.getStatus() == null || job.getStatus().getState() == JobStatus.State.FINISHED;
+    }
+
+    private Map<DocumentReference, PublicationSchedule> getSchedules()
+        throws WikiManagerException, QueryException
+    {
+        Map<DocumentReference, PublicationSchedule> currentSchedules = this.schedules;
+        if (currentSchedules == null) {
+            currentSchedules = new HashMap<>();
+            for (String wikiId : wikiDescriptorManager.getAllIds()) {
+                List<Object[]> results = this.queryManagerProvider.get().createQuery(SCHEDULES_QUERY, Query.HQL)
+                    .bindValue("className",
+                        localSerializer.serialize(BookVersionsConstants.PUBLICATIONCONFIGURATION_CLASS_REFERENCE))
+                    .bindValue("propName", BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_SCHEDULE)
+                    .setWiki(wikiId).execute();
+                for (Object[] result : results) {
+                    DocumentReference configurationReference =
+                        referenceResolver.resolve((String) result[0], new WikiReference(wikiId));
+                    try {
+                        currentSchedules.put(configurationReference, PublicationSchedule.parse((String) result[1]));
+                    } catch (IllegalArgumentException | DateTimeException e) {
+                        logger.warn("Ignoring the schedule of publication configuration [{}]: [{}]",
+                            configurationReference, e.getMessage());
+                    }
+                }
+            }
+            this.schedules = currentSchedules;
+            // Forget the publications which are not scheduled anymore
+            this.triggeredPublications.keySet().retainAll(currentSchedules.keySet());
+        }
+        return currentSchedules;
+    }
+}
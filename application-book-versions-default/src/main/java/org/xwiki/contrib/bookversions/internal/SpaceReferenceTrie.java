@@ -0,0 +1,109 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.SpaceReference;
+
+/**
+ * Immutable mapping between source spaces and target spaces, organized as a tree of space names so that finding the
+ * mapped space containing a reference only walks the reference chain once.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+public final class SpaceReferenceTrie
+{
+    private final Node root = new Node();
+
+    private final boolean empty;
+
+    /**
+     * @param mappings the target space of each source space
+     */
+    public SpaceReferenceTrie(Map<SpaceReference, SpaceReference> mappings)
+    {
+        for (Map.Entry<SpaceReference, SpaceReference> mapping : mappings.entrySet()) {
+            if (mapping.getKey() == null) {
+                continue;
+            }
+            Node node = this.root;
+            for (EntityReference entityReference : mapping.getKey().getReversedReferenceChain()) {
+                node = node.children.computeIfAbsent(entityReference.getName(), name -> new Node());
+            }
+            node.source = mapping.getKey();
+            node.target = mapping.getValue();
+        }
+        this.empty = mappings.isEmpty();
+    }
+
+    /**
+     * @return true if no space is mapped
+     */
+    public boolean isEmpty()
+    {
+        return this.empty;
+    }
+
+    /**
+     * Move a document from the mapped space containing it to the target of this space. When several mapped spaces
+     * contain the document, the one closest to the wiki is used.
+     *
+     * @param reference the reference of the document
+     * @return the reference of the document in the target space, {@code null} if the document is not in a mapped
+     *     space
+     */
+    public DocumentReference replaceMatchingSpace(DocumentReference reference)
+    {
+        if (this.empty) {
+            return null;
+        }
+
+        Node node = this.root;
+        for (EntityReference entityReference : reference.getReversedReferenceChain()) {
+            if (EntityType.DOCUMENT.equals(entityReference.getType())) {
+                break;
+            }
+            node = node.children.get(entityReference.getName());
+            if (node == null) {
+                break;
+            }
+            if (node.source != null && EntityType.SPACE.equals(entityReference.getType())) {
+                return reference.replaceParent(node.source, node.target);
+            }
+        }
+
+        return null;
+    }
+
+    private static final class Node
+    {
+        private final Map<String, Node> children = new HashMap<>();
+
+        private SpaceReference source;
+
+        private SpaceReference target;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+
+/**
+ * Find the subspaces of a space by walking the space hierarchy, one level at a time, and build the query conditions
+ * matching the documents of these spaces. The spaces are matched on their exact reference, so that the special
+ * characters of the space names don't have to be escaped in a {@code LIKE} pattern, and the space index of the
+ * documents table can be used.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+@Component(roles = SubspacesResolver.class)
+@Singleton
+public class SubspacesResolver
+{
+    private static final int BULK_QUERY_SIZE = 1000;
+
+    private static final String SPACES = "spaces";
+
+    @Inject
+    private Provider<QueryManager> queryManagerProvider;
+
+    @Inject
+    @Named("local")
+    private EntityReferenceSerializer<String> localSerializer;
+
+    /**
+     * @param spaceReference the reference of the space
+     * @return the local serialized references of the spaces under the given space, at any depth, without the space
+     *     itself
+     * @throws QueryException happens when the query creation or execution has an issue.
+     */
+    public List<String> getSubspaces(SpaceReference spaceReference) throws QueryException
+    {
+        if (spaceReference == null) {
+            return Collections.emptyList();
+        }
+
+        List<String> subspaces = new ArrayList<>();
+        List<String> parents = Collections.singletonList(this.localSerializer.serialize(spaceReference));
+        while (!parents.isEmpty()) {
+            List<String> children = new ArrayList<>();
+            for (int i = 0; i < parents.size(); i += BULK_QUERY_SIZE) {
+                List<String> chunk = parents.subList(i, Math.min(i + BULK_QUERY_SIZE, parents.size()));
+                children.addAll(this.queryManagerProvider.get()
+                    .createQuery("select space.reference from XWikiSpace space where space.parent in (:parents)",
+                        Query.HQL)
+                    .bindValue("parents", chunk)
+                    .setWiki(spaceReference.getWikiReference().getName())
+                    .<String>execute());
+            }
+            subspaces.addAll(children);
+            parents = children;
+        }
+
+        return subspaces;
+    }
+
+    /**
+     * Build the condition matching the documents of the given spaces. The spaces are split in several lists, as some
+     * databases limit the number of values of an {@code IN} list.
+     *
+     * @param spaces the local serialized references of the spaces, not empty
+     * @param parameters the query parameters, where the space lists are added
+     * @return the condition on {@code doc.space}, between parentheses
+     */
+    public String getCondition(List<String> spaces, Map<String, Object> parameters)
+    {
+        StringBuilder condition = new StringBuilder("(");
+        for (int i = 0; i < spaces.size(); i += BULK_QUERY_SIZE) {
+            String parameter = SPACES + (i / BULK_QUERY_SIZE);
+            if (i > 0) {
+                condition.append(" or ");
+            }
+            condition.append("doc.space in (:").append(parameter).append(')');
+            parameters.put(parameter, new ArrayList<>(spaces.subList(i, Math.min(i + BULK_QUERY_SIZE, spaces.size()))));
+        }
+
+        return condition.append(')').toString();
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.xwiki.model.reference.DocumentReference;
+
+/**
+ * Immutable graph of the versions of a collection, linked by their preceding version. The lineage of each version is
+ * computed once when the graph is built, so walking the preceding versions doesn't require to load any document.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+public final class VersionGraph
+{
+    private final Map<DocumentReference, DocumentReference> precedingVersions;
+
+    private final Map<DocumentReference, List<DocumentReference>> lineages;
+
+    private final Set<DocumentReference> cyclicVersions;
+
+    private final List<DocumentReference> topologicalOrder;
+
+    /**
+     * Constructor.
+     *
+     * @param precedingVersions the preceding version of each version of the collection, the value is {@code null}
+     *     for the root versions
+     */
+    public VersionGraph(Map<DocumentReference, DocumentReference> precedingVersions)
+    {
+        this.precedingVersions = Collections.unmodifiableMap(new LinkedHashMap<>(precedingVersions));
+
+        Map<DocumentReference, List<DocumentReference>> computedLineages = new HashMap<>();
+        Set<DocumentReference> computedCyclicVersions = new HashSet<>();
+        for (DocumentReference version : this.precedingVersions.keySet()) {
+            List<DocumentReference> lineage = computeLineage(version);
+            if (lineage == null) {
+                computedCyclicVersions.add(version);
+            } else {
+                computedLineages.put(version, Collections.unmodifiableList(lineage));
+            }
+        }
+        this.lineages = computedLineages;
+        this.cyclicVersions = Collections.unmodifiableSet(computedCyclicVersions);
+        this.topologicalOrder = Collections.unmodifiableList(computeTopologicalOrder());
+    }
+
+    /**
+     * @param version the reference of a version
+     * @return true if the version is part of the graph
+     */
+    public boolean contains(DocumentReference version)
+    {
+        return this.precedingVersions.containsKey(version);
+    }
+
+    /**
+     * @param version the reference of a version
+     * @return the preceding version of the given version, {@code null} if it's a root version or unknown
+     */
+    public DocumentReference getPrecedingVersion(DocumentReference version)
+    {
+        return this.precedingVersions.get(version);
+    }
+
+    /**
+     * @param version the reference of a version
+     * @return the given version followed by its preceding versions, up to the root version. Empty if the version is
+     *     unknown or if its preceding versions contain a loop
+     */
+    public List<DocumentReference> getLineage(DocumentReference version)
+    {
+        return this.lineages.getOrDefault(version, Collections.emptyList());
+    }
+
+    /**
+     * @return the versions whose preceding versions contain a loop
+     */
+    public Set<DocumentReference> getCyclicVersions()
+    {
+        return this.cyclicVersions;
+    }
+
+    /**
+     * @return the versions of the collection, each version being listed after its preceding version. The versions
+     *     whose preceding versions contain a loop are excluded
+     */
+    public List<DocumentReference> getTopologicalOrder()
+    {
+        return this.topologicalOrder;
+    }
+
+    /**
+     * @return the preceding version of each version of the collection
+     */
+    public Map<DocumentReference, DocumentReference> getPrecedingVersions()
+    {
+        return this.precedingVersions;
+    }
+
+    /**
+     * @param version the reference of the created or updated version
+     * @param precedingVersion the new preceding version of the version
+     * @return a new graph including the given version
+     */
+    public VersionGraph withVersion(DocumentReference version, DocumentReference precedingVersion)
+    {
+        Map<DocumentReference, DocumentReference> newPrecedingVersions = new LinkedHashMap<>(this.precedingVersions);
+        newPrecedingVersions.put(version, precedingVersion);
+
+        return new VersionGraph(newPrecedingVersions);
+    }
+
+    /**
+     * @param version the reference of the deleted version
+     * @return a new graph without the given version
+     */
+    public VersionGraph withoutVersion(DocumentReference version)
+    {
+        Map<DocumentReference, DocumentReference> newPrecedingVersions = new LinkedHashMap<>(this.precedingVersions);
+        newPrecedingVersions.remove(version);
+
+        return new VersionGraph(newPrecedingVersions);
+    }
+
+    private List<DocumentReference> computeLineage(DocumentReference version)
+    {
+        List<DocumentReference> lineage = new ArrayList<>();
+        Set<DocumentReference> visited = new HashSet<>();
+        DocumentReference current = version;
+        while (current != null) {
+            if (!visited.add(current)) {
+                return null;
+            }
+            lineage.add(current);
+            current = this.precedingVersions.get(current);
+        }
+
+        return lineage;
+    }
+
+    private List<DocumentReference> computeTopologicalOrder()
+    {
+        Map<DocumentReference, List<DocumentReference>> followingVersions = new HashMap<>();
+        Deque<DocumentReference> queue = new ArrayDeque<>();
+        for (Entry<DocumentReference, DocumentReference> entry : this.precedingVersions.entrySet()) {
+            if (this.cyclicVersions.contains(entry.getKey())) {
+                continue;
+            }
+            if (entry.getValue() == null || !this.precedingVersions.containsKey(entry.getValue())) {
+                queue.add(entry.getKey());
+            } else {
+                followingVersions.computeIfAbsent(entry.getValue(), k -> new ArrayList<>()).add(entry.getKey());
+            }
+        }
+
+        List<DocumentReference> order = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            DocumentReference version = queue.poll();
+            order.add(version);
+            queue.addAll(followingVersions.getOrDefault(version, Collections.emptyList()));
+        }
+
+        return order;
+    }
+}
@@ -33,6 +33,8 @@ import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
 import org.xwiki.component.namespace.Namespace;
 import org.xwiki.component.namespace.NamespaceUtils;
 import org.xwiki.contrib.bookversions.internal.BookVersionsConstants;
+import org.xwiki.contrib.bookversions.internal.DocumentBatch;
+import org.xwiki.contrib.bookversions.internal.DocumentBatchWriter;
 import org.xwiki.job.AbstractJob;
 import org.xwiki.job.DefaultJobStatus;
 import org.xwiki.livedata.LiveData;
@@ -96,6 +98,9 @@ public class BatchChangeStatusJob extends AbstractJob<LiveDataBatchRequest, Defa
     @Inject
     private AuthorizationManager authorizationManager;
 
+    @Inject
+    private DocumentBatchWriter documentBatchWriter;
+
     @Override
     public String getType()
     {
@@ -107,7 +112,7 @@ public class BatchChangeStatusJob extends AbstractJob<LiveDataBatchRequest, Defa
     {
         XWikiContext xcontext = contextProvider.get();
         XWiki xwiki = xcontext.getWiki();
-        try {
+        try (DocumentBatch batch = documentBatchWriter.open(xcontext)) {
             List<String> pagesReference;
             LiveDataBatchRequest exportRequest = getRequest();
 
@@ -157,7 +162,7 @@ public class BatchChangeStatusJob extends AbstractJob<LiveDataBatchRequest, Defa
 
                     document.getAuthors().setEffectiveMetadataAuthor(userReference);
                     document.getAuthors().setOriginalMetadataAuthor(userReference);
-                    xwiki.saveDocument(document, "Batch change status", xcontext);
+                    batch.save(document, "Batch change status");
                 } else {
                     logger.error("Can't change status, user [{}] is not allowed to edit the page {}",
                         exportRequest.getProperty("userReference"), pageRef);
@@ -0,0 +1,60 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal.cache;
+
+/**
+ * Generations of the keys of a cache, incremented by each update of a key. An entry computed from the stored data
+ * without holding the cache lock is only cached if the generation of its key didn't change during the computation,
+ * as an update happening meanwhile might not be part of it. The keys share a fixed number of counters, so that an
+ * update only rarely discards the computation of another key.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+public class CacheGenerations
+{
+    private static final int COUNTERS = 64;
+
+    private final long[] generations = new long[COUNTERS];
+
+    /**
+     * @param key a key of the cache
+     * @return the current generation of the key
+     */
+    public synchronized long get(String key)
+    {
+        return this.generations[getIndex(key)];
+    }
+
+    /**
+     * Record an update of the key, so that the entries computed before it are not cached.
+     *
+     * @param key a key of the cache
+     */
+    public synchronized void increment(String key)
+    {
+        this.generations[getIndex(key)]++;
+    }
+
+    private int getIndex(String key)
+    {
+        return Math.floorMod(key.hashCode(), COUNTERS);
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.contrib.bookversions.BookVersionsManager;
+import org.xwiki.contrib.bookversions.internal.BookVersionsConstants;
+import org.xwiki.contrib.bookversions.internal.CollectionCatalog;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.query.QueryException;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+
+/**
+ * Cache of the version and variant catalog of each collection. A catalog is built once from the version and variant
+ * documents, and then kept up to date from their modifications. A catalog built while a version or variant of its
+ * collection is modified is not cached, as it might miss the modification.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+@Component(roles = CollectionCatalogCache.class)
+@Singleton
+public class CollectionCatalogCache implements Initializable, Disposable
+{
+    private static final String CACHE_ID = "bookversions.collectionCatalogs";
+
+    private static final int CACHE_CAPACITY = 500;
+
+    @Inject
+    private CacheManager cacheManager;
+
+    @Inject
+    private Provider<BookVersionsManager> bookVersionsManagerProvider;
+
+    @Inject
+    private Provider<XWikiContext> contextProvider;
+
+    @Inject
+    private DocumentReferenceResolver<String> referenceResolver;
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    @Inject
+    @Named("local")
+    private EntityReferenceSerializer<String> localSerializer;
+
+    private Cache<CollectionCatalog> cache;
+
+    private final CacheGenerations generations = new CacheGenerations();
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            this.cache = this.cacheManager.createNewCache(new LRUCacheConfiguration(CACHE_ID, CACHE_CAPACITY));
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to create the collection catalogs cache.", e);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.cache.dispose();
+    }
+
+    /**
+     * @param collectionReference the reference of the versioned collection (book or library)
+     * @return the version and variant catalog of the collection
+     * @throws XWikiException In case a version or variant document can't be loaded.
+     * @throws QueryException If any exception occurs while querying the versions and variants of the collection.
+     */
+    public CollectionCatalog getCatalog(DocumentReference collectionReference) throws XWikiException, QueryException
+    {
+        String key = this.serializer.serialize(collectionReference);
+        CollectionCatalog catalog = this.cache.get(key);
+        if (catalog == null) {
+            // The catalog is built without holding the lock, and only cached if nothing was modified meanwhile
+            long generation = this.generations.get(key);
+            catalog = new CollectionCatalog(
+                loadEntries(collectionReference, BookVersionsConstants.VERSION_CLASS_REFERENCE, true),
+                loadEntries(collectionReference, BookVersionsConstants.VARIANT_CLASS_REFERENCE, false));
+            synchronized (this) {
+                CollectionCatalog cachedCatalog = this.cache.get(key);
+                if (cachedCatalog != null) {
+                    catalog = cachedCatalog;
+                } else if (generation == this.generations.get(key)) {
+                    this.cache.set(key, catalog);
+                }
+            }
+        }
+
+        return catalog;
+    }
+
+    /**
+     * Update the catalog containing the given version, if it's already built.
+     *
+     * @param versionDocument the created or updated version document
+     * @throws XWikiException In case the collection of the version can't be resolved.
+     * @throws QueryException If any exception occurs while resolving the collection of the version.
+     */
+    public synchronized void updateVersion(XWikiDocument versionDocument) throws XWikiException, QueryException
+    {
+        String key = recordUpdate(versionDocument.getDocumentReference());
+        CollectionCatalog catalog = key != null ? this.cache.get(key) : null;
+        if (catalog != null) {
+            this.cache.set(key, catalog.withVersion(createEntry(versionDocument, true)));
+        }
+    }
+
+    /**
+     * Update the catalog containing the given variant, if it's already built.
+     *
+     * @param variantDocument the created or updated variant document
+     * @throws XWikiException In case the collection of the variant can't be resolved.
+     * @throws QueryException If any exception occurs while resolving the collection of the variant.
+     */
+    public synchronized void updateVariant(XWikiDocument variantDocument) throws XWikiException, QueryException
+    {
+        String key = recordUpdate(variantDocument.getDocumentReference());
+        CollectionCatalog catalog = key != null ? this.cache.get(key) : null;
+        if (catalog != null) {
+            this.cache.set(key, catalog.withVariant(createEntry(variantDocument, false)));
+        }
+    }
+
+    /**
+     * Remove the given version or variant from the catalog containing it, if it's already built.
+     *
+     * @param reference the reference of the deleted version or variant
+     * @throws XWikiException In case the collection of the version or variant can't be resolved.
+     * @throws QueryException If any exception occurs while resolving the collection of the version or variant.
+     */
+    public synchronized void remove(DocumentReference reference) throws XWikiException, QueryException
+    {
+        String key = recordUpdate(reference);
+        CollectionCatalog catalog = key != null ? this.cache.get(key) : null;
+        if (catalog != null) {
+            this.cache.set(key, catalog.without(reference));
+        }
+    }
+
+    /**
+     * Record a modification of the catalog of the collection of the given version or variant.
+     *
+     * @param reference the reference of the modified version or variant
+     * @return the key of the catalog, {@code null} if the collection can't be resolved
+     */
+    private String recordUpdate(DocumentReference reference) throws XWikiException, QueryException
+    {
+        DocumentReference collectionReference =
+            this.bookVersionsManagerProvider.get().getVersionedCollectionReference(reference);
+        if (collectionReference == null) {
+            return null;
+        }
+        String key = this.serializer.serialize(collectionReference);
+        this.generations.increment(key);
+
+        return key;
+    }
+
+    private List<CollectionCatalog.Entry> loadEntries(DocumentReference collectionReference,
+        EntityReference classReference, boolean version) throws XWikiException, QueryException
+    {
+        XWikiContext xcontext = this.contextProvider.get();
+        List<CollectionCatalog.Entry> entries = new ArrayList<>();
+        for (String fullName : this.bookVersionsManagerProvider.get().queryPages(collectionReference,
+            classReference))
+        {
+            DocumentReference reference = this.referenceResolver.resolve(fullName, collectionReference);
+            entries.add(createEntry(xcontext.getWiki().getDocument(reference, xcontext), version));
+        }
+
+        return entries;
+    }
+
+    private CollectionCatalog.Entry createEntry(XWikiDocument document, boolean version)
+    {
+        BookVersionsManager bookVersionsManager = this.bookVersionsManagerProvider.get();
+        DocumentReference reference = document.getDocumentReference();
+        DocumentReference precedingVersion = null;
+        if (version) {
+            BaseObject versionObject = document.getXObject(BookVersionsConstants.VERSION_CLASS_REFERENCE);
+            String precedingVersionValue = versionObject != null
+                ? versionObject.getStringValue(BookVersionsConstants.VERSION_PROP_PRECEDINGVERSION) : null;
+            precedingVersion = precedingVersionValue != null && !precedingVersionValue.isBlank()
+                ? this.referenceResolver.resolve(precedingVersionValue, reference) : null;
+        }
+
+        return new CollectionCatalog.Entry(reference, this.localSerializer.serialize(reference),
+            version ? bookVersionsManager.getVersionName(reference) : bookVersionsManager.getVariantName(reference),
+            document.getTitle(), precedingVersion, document.getCreationDate());
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal.cache;
+
+import java.util.Optional;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+
+/**
+ * Cache of the versioned collection (book, library or published collection) a document belongs to. Negative results
+ * (documents not belonging to any collection) are cached as well.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+@Component(roles = CollectionReferenceCache.class)
+@Singleton
+public class CollectionReferenceCache implements Initializable, Disposable
+{
+    private static final String CACHE_ID = "bookversions.collectionReferences";
+
+    private static final int CACHE_CAPACITY = 10000;
+
+    @Inject
+    private CacheManager cacheManager;
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    private Cache<Optional<DocumentReference>> cache;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            this.cache = this.cacheManager.createNewCache(new LRUCacheConfiguration(CACHE_ID, CACHE_CAPACITY));
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to create the collection references cache.", e);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.cache.dispose();
+    }
+
+    /**
+     * @param documentReference the reference of the document
+     * @return {@code null} if the document is not in the cache, an empty optional if the document is known to not
+     *     belong to any collection, the reference of the collection otherwise
+     */
+    public Optional<DocumentReference> get(DocumentReference documentReference)
+    {
+        return this.cache.get(getKey(documentReference));
+    }
+
+    /**
+     * @param documentReference the reference of the document
+     * @param collectionReference the reference of the collection the document belongs to, {@code null} if none
+     */
+    public void set(DocumentReference documentReference, DocumentReference collectionReference)
+    {
+        this.cache.set(getKey(documentReference), Optional.ofNullable(collectionReference));
+    }
+
+    /**
+     * Remove all the entries from the cache.
+     */
+    public void invalidate()
+    {
+        this.cache.removeAll();
+    }
+
+    private String getKey(DocumentReference documentReference)
+    {
+        // The serialized reference contains the wiki, so the entries of different wikis don't collide.
+        return this.serializer.serialize(documentReference);
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal.cache;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.contrib.bookversions.BookVersionsManager;
+import org.xwiki.contrib.bookversions.internal.BookVersionsConstants;
+import org.xwiki.contrib.bookversions.internal.ContentPresenceIndex;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.query.QueryException;
+
+import com.xpn.xwiki.XWikiException;
+
+/**
+ * Cache of the content presence index of each collection. An index is built once with a single query, and then kept
+ * up to date from the creation and deletion of versioned content. An index built while versioned content of its
+ * collection is created or deleted is not cached, as it might miss the change.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+@Component(roles = ContentPresenceIndexCache.class)
+@Singleton
+public class ContentPresenceIndexCache implements Initializable, Disposable
+{
+    private static final String CACHE_ID = "bookversions.contentPresenceIndexes";
+
+    private static final int CACHE_CAPACITY = 100;
+
+    @Inject
+    private CacheManager cacheManager;
+
+    @Inject
+    private Provider<BookVersionsManager> bookVersionsManagerProvider;
+
+    @Inject
+    private DocumentReferenceResolver<String> referenceResolver;
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    private Cache<ContentPresenceIndex> cache;
+
+    private final CacheGenerations generations = new CacheGenerations();
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            this.cache = this.cacheManager.createNewCache(new LRUCacheConfiguration(CACHE_ID, CACHE_CAPACITY));
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to create the content presence indexes cache.", e);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.cache.dispose();
+    }
+
+    /**
+     * @param collectionReference the reference of the versioned collection (book or library)
+     * @return the content presence index of the collection
+     * @throws QueryException If any exception occurs while querying the versioned content of the collection.
+     */
+    public ContentPresenceIndex getIndex(DocumentReference collectionReference) throws QueryException
+    {
+        String key = this.serializer.serialize(collectionReference);
+        ContentPresenceIndex index = this.cache.get(key);
+        if (index == null) {
+            // The index is built without holding the lock, and only cached if no content changed meanwhile
+            long generation = this.generations.get(key);
+            index = new ContentPresenceIndex();
+            for (String content : this.bookVersionsManagerProvider.get().queryPages(collectionReference,
+                BookVersionsConstants.BOOKVERSIONEDCONTENT_CLASS_REFERENCE))
+            {
+                DocumentReference contentReference = this.referenceResolver.resolve(content, collectionReference);
+                index.add(contentReference.getParent(), contentReference.getName());
+            }
+            synchronized (this) {
+                ContentPresenceIndex cachedIndex = this.cache.get(key);
+                if (cachedIndex != null) {
+                    index = cachedIndex;
+                } else if (generation == this.generations.get(key)) {
+                    this.cache.set(key, index);
+                }
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Record the given versioned content in the index of its collection, if it's already built.
+     *
+     * @param contentReference the reference of the created versioned content
+     * @throws XWikiException In case the collection of the content can't be resolved.
+     * @throws QueryException If any exception occurs while resolving the collection of the content.
+     */
+    public synchronized void addContent(DocumentReference contentReference) throws XWikiException, QueryException
+    {
+        ContentPresenceIndex index = getIndexToUpdate(contentReference);
+        if (index != null) {
+            index.add(contentReference.getParent(), contentReference.getName());
+        }
+    }
+
+    /**
+     * Remove the given versioned content from the index of its collection, if it's already built.
+     *
+     * @param contentReference the reference of the deleted versioned content
+     * @throws XWikiException In case the collection of the content can't be resolved.
+     * @throws QueryException If any exception occurs while resolving the collection of the content.
+     */
+    public synchronized void removeContent(DocumentReference contentReference) throws XWikiException, QueryException
+    {
+        ContentPresenceIndex index = getIndexToUpdate(contentReference);
+        if (index != null) {
+            index.remove(contentReference.getParent(), contentReference.getName());
+        }
+    }
+
+    /**
+     * Record an update of the index of the collection of the given content.
+     *
+     * @param contentReference the reference of the created or deleted versioned content
+     * @return the cached index to update, {@code null} if it isn't built
+     */
+    private ContentPresenceIndex getIndexToUpdate(DocumentReference contentReference)
+        throws XWikiException, QueryException
+    {
+        DocumentReference collectionReference =
+            this.bookVersionsManagerProvider.get().getVersionedCollectionReference(contentReference);
+        if (collectionReference == null) {
+            return null;
+        }
+        String key = this.serializer.serialize(collectionReference);
+        this.generations.increment(key);
+
+        return this.cache.get(key);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal.cache;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.AttachmentReference;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceString;
+import org.xwiki.rendering.macro.Macro;
+import org.xwiki.rendering.macro.descriptor.ParameterDescriptor;
+
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * Cache of the parameters of each macro which hold a reference, by macro id and component manager namespace, so that
+ * the macro descriptors are not looked up for each macro of each published page. It is invalidated when a macro is
+ * registered or unregistered.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+@Component(roles = MacroReferenceParametersCache.class)
+@Singleton
+public class MacroReferenceParametersCache implements Initializable, Disposable
+{
+    private static final String CACHE_ID = "bookversions.macroReferenceParameters";
+
+    private static final int CACHE_CAPACITY = 500;
+
+    private static final String WIKI_NAMESPACE_PREFIX = "wiki:";
+
+    @Inject
+    private CacheManager cacheManager;
+
+    @Inject
+    private ComponentManager rootComponentManager;
+
+    @Inject
+    private Provider<XWikiContext> contextProvider;
+
+    private Cache<Map<String, EntityType>> cache;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            this.cache = this.cacheManager.createNewCache(new LRUCacheConfiguration(CACHE_ID, CACHE_CAPACITY));
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to create the macro reference parameters cache.", e);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.cache.dispose();
+    }
+
+    /**
+     * Get the parameters of a macro, as seen from the current wiki, which hold a reference: the parameters of type
+     * {@link DocumentReference} or displayed as {@link EntityReferenceString} are mapped to
+     * {@link EntityType#DOCUMENT}, the ones of type {@link AttachmentReference} to {@link EntityType#ATTACHMENT}.
+     *
+     * @param macroId the id of the macro
+     * @return the type of reference held by each parameter, empty if the macro has no such parameter or doesn't exist
+     * @throws ComponentLookupException if the component manager of the wiki can't be found
+     */
+    public Map<String, EntityType> get(String macroId) throws ComponentLookupException
+    {
+        String key = WIKI_NAMESPACE_PREFIX + this.contextProvider.get().getWikiId() + ':' + macroId;
+        Map<String, EntityType> referenceParameters = this.cache.get(key);
+        if (referenceParameters == null) {
+            referenceParameters = getReferenceParameters(macroId);
+            this.cache.set(key, referenceParameters);
+        }
+
+        return referenceParameters;
+    }
+
+    /**
+     * Remove all the cached macro parameters.
+     */
+    public void invalidateAll()
+    {
+        this.cache.removeAll();
+    }
+
+    private Map<String, EntityType> getReferenceParameters(String macroId) throws ComponentLookupException
+    {
+        ComponentManager componentManager = this.rootComponentManager.getInstance(ComponentManager.class, "wiki");
+        if (!componentManager.hasComponent(Macro.class, macroId)) {
+            return Collections.emptyMap();
+        }
+
+        Macro<?> macro = componentManager.getInstance(Macro.class, macroId);
+        Map<String, ParameterDescriptor> parameterDescriptors = macro.getDescriptor().getParameterDescriptorMap();
+        Map<String, EntityType> referenceParameters = new HashMap<>();
+        for (Map.Entry<String, ParameterDescriptor> parameterDescriptorEntry : parameterDescriptors.entrySet()) {
+            ParameterDescriptor parameterDescriptor = parameterDescriptorEntry.getValue();
+            if (DocumentReference.class.equals(parameterDescriptor.getParameterType())
+                || EntityReferenceString.class.equals(parameterDescriptor.getDisplayType()))
+            {
+                referenceParameters.put(parameterDescriptorEntry.getKey(), EntityType.DOCUMENT);
+            } else if (AttachmentReference.class.equals(parameterDescriptor.getParameterType())) {
+                referenceParameters.put(parameterDescriptorEntry.getKey(), EntityType.ATTACHMENT);
+            }
+        }
+
+        return referenceParameters.isEmpty() ? Collections.emptyMap()
+            : Collections.unmodifiableMap(referenceParameters);
+    }
+}
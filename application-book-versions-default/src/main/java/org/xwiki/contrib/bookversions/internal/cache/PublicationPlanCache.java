@@ -0,0 +1,96 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal.cache;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.contrib.bookversions.internal.PublicationPlan;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+
+/**
+ * Cache of the last publication plan computed by the preview of each publication configuration, so that the
+ * publication following a preview doesn't compute it again.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+@Component(roles = PublicationPlanCache.class)
+@Singleton
+public class PublicationPlanCache implements Initializable, Disposable
+{
+    private static final String CACHE_ID = "bookversions.publicationPlans";
+
+    private static final int CACHE_CAPACITY = 50;
+
+    @Inject
+    private CacheManager cacheManager;
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    private Cache<PublicationPlan> cache;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            this.cache = this.cacheManager.createNewCache(new LRUCacheConfiguration(CACHE_ID, CACHE_CAPACITY));
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to create the publication plans cache.", e);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.cache.dispose();
+    }
+
+    /**
+     * @param configurationReference the reference of the publication configuration
+     * @param stamp identifies the current state of the documents the plan is computed from
+     * @return the cached plan of the configuration if it was computed from the same state, {@code null} otherwise
+     */
+    public PublicationPlan get(DocumentReference configurationReference, String stamp)
+    {
+        PublicationPlan plan = this.cache.get(this.serializer.serialize(configurationReference));
+
+        return plan != null && plan.getStamp().equals(stamp) ? plan : null;
+    }
+
+    /**
+     * @param plan the plan to cache, replacing the previous plan of its configuration
+     */
+    public void set(PublicationPlan plan)
+    {
+        this.cache.set(this.serializer.serialize(plan.getConfigurationReference()), plan);
+    }
+}
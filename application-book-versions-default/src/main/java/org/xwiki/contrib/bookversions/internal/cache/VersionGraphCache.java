@@ -0,0 +1,207 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.contrib.bookversions.BookVersionsManager;
+import org.xwiki.contrib.bookversions.internal.BookVersionsConstants;
+import org.xwiki.contrib.bookversions.internal.CollectionCatalog;
+import org.xwiki.contrib.bookversions.internal.VersionGraph;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.query.QueryException;
+
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+
+/**
+ * Cache of the version graph of each collection. A graph is built once from the collection catalog, and then kept up
+ * to date from the version modifications. A graph built while a version of its collection is modified is not cached,
+ * as it might miss the modification.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+@Component(roles = VersionGraphCache.class)
+@Singleton
+public class VersionGraphCache implements Initializable, Disposable
+{
+    private static final String CACHE_ID = "bookversions.versionGraphs";
+
+    private static final int CACHE_CAPACITY = 500;
+
+    @Inject
+    private CacheManager cacheManager;
+
+    @Inject
+    private Provider<BookVersionsManager> bookVersionsManagerProvider;
+
+    @Inject
+    private CollectionCatalogCache collectionCatalogCache;
+
+    @Inject
+    private DocumentReferenceResolver<String> referenceResolver;
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    @Inject
+    private Logger logger;
+
+    private Cache<VersionGraph> cache;
+
+    private final CacheGenerations generations = new CacheGenerations();
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            this.cache = this.cacheManager.createNewCache(new LRUCacheConfiguration(CACHE_ID, CACHE_CAPACITY));
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to create the version graphs cache.", e);
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        this.cache.dispose();
+    }
+
+    /**
+     * @param collectionReference the reference of the versioned collection (book or library)
+     * @return the version graph of the collection
+     * @throws XWikiException In case a version document can't be loaded.
+     * @throws QueryException If any exception occurs while querying the versions of the collection.
+     */
+    public VersionGraph getGraph(DocumentReference collectionReference) throws XWikiException, QueryException
+    {
+        String key = this.serializer.serialize(collectionReference);
+        VersionGraph graph = this.cache.get(key);
+        if (graph == null) {
+            // The graph is built without holding the lock, and only cached if no version was modified meanwhile
+            long generation = this.generations.get(key);
+            graph = buildGraph(collectionReference);
+            synchronized (this) {
+                VersionGraph cachedGraph = this.cache.get(key);
+                if (cachedGraph != null) {
+                    graph = cachedGraph;
+                } else if (generation == this.generations.get(key)) {
+                    this.cache.set(key, graph);
+                }
+            }
+        }
+
+        return graph;
+    }
+
+    /**
+     * Update the graph containing the given version, if it's already built.
+     *
+     * @param versionDocument the created or updated version document
+     * @throws XWikiException In case the collection of the version can't be resolved.
+     * @throws QueryException If any exception occurs while resolving the collection of the version.
+     */
+    public synchronized void updateVersion(XWikiDocument versionDocument) throws XWikiException, QueryException
+    {
+        DocumentReference versionReference = versionDocument.getDocumentReference();
+        String key = getCollectionKey(versionReference);
+        if (key != null) {
+            this.generations.increment(key);
+            VersionGraph graph = this.cache.get(key);
+            if (graph != null) {
+                this.cache.set(key, graph.withVersion(versionReference, getPrecedingVersion(versionDocument)));
+            }
+        }
+    }
+
+    /**
+     * Remove the given version from the graph containing it, if it's already built.
+     *
+     * @param versionReference the reference of the deleted version
+     * @throws XWikiException In case the collection of the version can't be resolved.
+     * @throws QueryException If any exception occurs while resolving the collection of the version.
+     */
+    public synchronized void removeVersion(DocumentReference versionReference) throws XWikiException, QueryException
+    {
+        String key = getCollectionKey(versionReference);
+        if (key != null) {
+            this.generations.increment(key);
+            VersionGraph graph = this.cache.get(key);
+            if (graph != null) {
+                this.cache.set(key, graph.withoutVersion(versionReference));
+            }
+        }
+    }
+
+    private String getCollectionKey(DocumentReference versionReference) throws XWikiException, QueryException
+    {
+        DocumentReference collectionReference =
+            this.bookVersionsManagerProvider.get().getVersionedCollectionReference(versionReference);
+
+        return collectionReference != null ? this.serializer.serialize(collectionReference) : null;
+    }
+
+    private VersionGraph buildGraph(DocumentReference collectionReference) throws XWikiException, QueryException
+    {
+        Map<DocumentReference, DocumentReference> precedingVersions = new LinkedHashMap<>();
+        for (CollectionCatalog.Entry version : this.collectionCatalogCache.getCatalog(collectionReference)
+            .getVersions())
+        {
+            precedingVersions.put(version.getReference(), version.getPrecedingVersion());
+        }
+
+        VersionGraph graph = new VersionGraph(precedingVersions);
+        if (!graph.getCyclicVersions().isEmpty()) {
+            this.logger.error("Infinite loop detected in the preceding versions of [{}] in collection [{}].",
+                graph.getCyclicVersions(), collectionReference);
+        }
+
+        return graph;
+    }
+
+    private DocumentReference getPrecedingVersion(XWikiDocument versionDocument)
+    {
+        BaseObject versionObject = versionDocument.getXObject(BookVersionsConstants.VERSION_CLASS_REFERENCE);
+        String precedingVersion = versionObject != null
+            ? versionObject.getStringValue(BookVersionsConstants.VERSION_PROP_PRECEDINGVERSION) : null;
+
+        return precedingVersion != null && !precedingVersion.isBlank()
+            ? this.referenceResolver.resolve(precedingVersion, versionDocument.getDocumentReference()) : null;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal.publication;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.bookversions.BookVersionsManager;
+import org.xwiki.contrib.bookversions.PublicationTransformationContext;
+import org.xwiki.contrib.bookversions.PublicationTransformationStage;
+import org.xwiki.contrib.bookversions.internal.BookVersionsConstants;
+import org.xwiki.localization.LocalizationManager;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.query.QueryException;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.MacroBlock;
+
+import com.xpn.xwiki.XWikiException;
+
+/**
+ * Transforms the includeLibrary or excerptIncludeLibrary macros to include or excerpt-include macros respectively,
+ * pointing to the published library pages.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+@Component
+@Named("library")
+@Singleton
+public class LibraryPublicationTransformationStage implements PublicationTransformationStage
+{
+    private static final int PRIORITY = 300;
+
+    private static final String PROPERTY_INHERITEDVERSIONNAME = "library.inheritedVersionName";
+
+    @Inject
+    private Provider<BookVersionsManager> bookVersionsManagerProvider;
+
+    @Inject
+    private DocumentReferenceResolver<String> referenceResolver;
+
+    @Inject
+    private LocalizationManager localization;
+
+    @Inject
+    private Logger logger;
+
+    @Override
+    public int getPriority()
+    {
+        return PRIORITY;
+    }
+
+    @Override
+    public Block transform(Block block, PublicationTransformationContext context)
+        throws XWikiException, QueryException
+    {
+        if (!(block instanceof MacroBlock)) {
+            return block;
+        }
+
+        MacroBlock macroBlock = (MacroBlock) block;
+        String macroId = macroBlock.getId();
+        String referenceProperty;
+        String replaceMacroId;
+        if (BookVersionsConstants.INCLUDELIBRARY_MACRO_ID.equals(macroId)) {
+            referenceProperty = BookVersionsConstants.INCLUDELIBRARY_MACRO_PROP_KEYREFERENCE;
+            replaceMacroId = BookVersionsConstants.DISPLAY_MACRO_ID;
+        } else if (BookVersionsConstants.EXCERPTINCLUDELIBRARY_MACRO_ID.equals(macroId)) {
+            referenceProperty = BookVersionsConstants.EXCERPTINCLUDELIBRARY_MACRO_PROP_KEYREFERENCE;
+            replaceMacroId = BookVersionsConstants.EXCERPTINCLUDE_MACRO_ID;
+        } else {
+            return block;
+        }
+
+        DocumentReference versionReference = (DocumentReference) context.getConfiguration()
+            .get(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_VERSION);
+        if (versionReference == null) {
+            return block;
+        }
+
+        // Get the key reference (library page reference)
+        String keyRefString = macroBlock.getParameter(referenceProperty);
+        if (StringUtils.isEmpty(keyRefString)) {
+            logger.debug("[transform] {} macro found without {} parameter. Macro is ignored.", macroId,
+                referenceProperty);
+            return block;
+        }
+
+        BookVersionsManager bookVersionsManager = bookVersionsManagerProvider.get();
+        DocumentReference originalDocumentReference = context.getOriginalDocumentReference();
+        DocumentReference libraryPageReference = referenceResolver.resolve(keyRefString, originalDocumentReference);
+        logger.debug("[transform] Updating {} macro referencing [{}].", macroId, libraryPageReference);
+        context.getIncludedLibraryPages().add(libraryPageReference);
+        // Get the library reference
+        DocumentReference libraryReference = bookVersionsManager.getVersionedCollectionReference(libraryPageReference);
+        // Get the published library reference
+        // If the library version was not published, then get the inherited published library reference
+        Map<String, Map<DocumentReference, DocumentReference>> publishedLibraries = context.getPublishedLibraries();
+        String versionName = bookVersionsManager.getVersionName(versionReference);
+        String inheritedVersionName = getInheritedVersionName(context);
+        DocumentReference publishedLibraryReference =
+            publishedLibraries != null && versionName != null && libraryReference != null
+                ? publishedLibraries.get(versionName).get(libraryReference) : (inheritedVersionName != null
+                    ? publishedLibraries.get(inheritedVersionName).get(libraryReference) : null);
+        if (publishedLibraryReference == null) {
+            logger.error(localization.getTranslationPlain(
+                "BookVersions.DefaultBookVersionsManager." + "transformLibrary.notPublished", context.getUserLocale(),
+                libraryReference));
+            return block;
+        }
+
+        // Compute the published page reference
+        DocumentReference publishedPageReference = libraryReference != null
+            ? libraryPageReference.replaceParent(libraryReference.getParent(),
+                publishedLibraryReference.getLastSpaceReference())
+            : null;
+        if (publishedPageReference == null) {
+            return block;
+        }
+
+        logger.debug("[transform] Page reference is changed to [{}], macro is changed to [{}].",
+            publishedPageReference, replaceMacroId);
+        // Replace the macro change to the published reference
+        Map<String, String> parametersMap;
+        if (BookVersionsConstants.INCLUDELIBRARY_MACRO_ID.equals(macroId)) {
+            parametersMap =
+                Map.of(BookVersionsConstants.INCLUDE_MACRO_PROP_REFERENCE, publishedPageReference.toString());
+        } else {
+            parametersMap = new HashMap<>(macroBlock.getParameters());
+            parametersMap.put(BookVersionsConstants.EXCERPTINCLUDE_MACRO_PROP_0, publishedPageReference.toString());
+        }
+        MacroBlock newMacroBlock = new MacroBlock(replaceMacroId, parametersMap, macroBlock.isInline());
+        macroBlock.getParent().replaceChild(newMacroBlock, macroBlock);
+
+        return newMacroBlock;
+    }
+
+    private String getInheritedVersionName(PublicationTransformationContext context) throws XWikiException
+    {
+        // The value is the same for all the library macros of the page, an empty string meaning there is none
+        String inheritedVersionName = (String) context.getProperty(PROPERTY_INHERITEDVERSIONNAME);
+        if (inheritedVersionName == null) {
+            DocumentReference originalDocumentReference = context.getOriginalDocumentReference();
+            // If versioned page is published, use the inherited version, provided by the document to be published.
+            // This allows to use library version corresponding to the inherited content version instead of the
+            // selected version for publication.
+            inheritedVersionName = bookVersionsManagerProvider.get().isVersionedContent(originalDocumentReference)
+                ? originalDocumentReference.getName() : "";
+            context.setProperty(PROPERTY_INHERITEDVERSIONNAME, inheritedVersionName);
+        }
+
+        return StringUtils.defaultIfEmpty(inheritedVersionName, null);
+    }
+}
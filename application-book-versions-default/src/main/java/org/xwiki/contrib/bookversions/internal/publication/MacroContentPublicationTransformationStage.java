@@ -0,0 +1,161 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal.publication;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.contrib.bookversions.PublicationTransformationContext;
+import org.xwiki.contrib.bookversions.PublicationTransformationStage;
+import org.xwiki.contrib.bookversions.internal.BookVersionsConstants;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.query.QueryException;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.MacroBlock;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.parser.ParseException;
+
+import com.xpn.xwiki.XWikiException;
+
+/**
+ * Removes the variant macros which are not for the published variant, and transforms the content of the other macros
+ * with all the stages. The variant macros for the published variant are replaced by inline macros.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+@Component
+@Named("macroContent")
+@Singleton
+public class MacroContentPublicationTransformationStage implements PublicationTransformationStage
+{
+    private static final int PRIORITY = 100;
+
+    @Inject
+    private Provider<PublicationTransformationPipeline> pipelineProvider;
+
+    @Inject
+    private DocumentReferenceResolver<String> referenceResolver;
+
+    @Inject
+    private Logger logger;
+
+    @Override
+    public int getPriority()
+    {
+        return PRIORITY;
+    }
+
+    @Override
+    public Block transform(Block block, PublicationTransformationContext context)
+        throws XWikiException, QueryException, ComponentLookupException, ParseException
+    {
+        if (!(block instanceof MacroBlock)) {
+            return block;
+        }
+
+        MacroBlock macroBlock = (MacroBlock) block;
+        String id = macroBlock.getId();
+
+        // Should never happen.
+        if (id == null) {
+            logger.error("[transform] Can't find macro block id.");
+            return block;
+        }
+
+        logger.debug("[transform] Checking macro [{}] - [{}]", id, block.getClass());
+        boolean isVariantMacro = id.equals(BookVersionsConstants.VARIANT_MACRO_ID);
+        if (isVariantMacro && !isPublishedVariant(macroBlock, context)) {
+            // The macro is removed if it's a macro variant AND ((no variant is published)) OR (variant is
+            // published but macro is not for the published variant)
+            logger.debug("[transform] Variant macro is for [{}], it is removed from content.",
+                macroBlock.getParameter(BookVersionsConstants.VARIANT_MACRO_PROP_NAME));
+            block.getParent().removeBlock(block);
+            return null;
+        }
+
+        String content = macroBlock.getContent();
+        if (StringUtils.isEmpty(content)) {
+            return block;
+        }
+
+        // We will take a quick shortcut here and directly parse the macro content with the syntax of the
+        // document
+        String syntaxId = context.getSyntaxId();
+        logger.debug("[transform] Calling parse on [{}] with syntax [{}]", id, syntaxId);
+        PublicationTransformationPipeline pipeline = pipelineProvider.get();
+        XDOM contentXDOM = pipeline.parse(content, syntaxId);
+        boolean hasMacroContentChanged = pipeline.transform(contentXDOM, context.createNestedContext());
+        if (!hasMacroContentChanged && !isVariantMacro) {
+            return block;
+        }
+
+        // The content is only rendered again when it has been transformed
+        String newMacroContent = content;
+        if (hasMacroContentChanged) {
+            logger.debug("[transform] The content of macro [{}] has changed", id);
+            newMacroContent = pipeline.render(contentXDOM, syntaxId);
+        }
+        // Create a new macro block and swap it
+        MacroBlock newMacroBlock;
+        if (isVariantMacro) {
+            logger.debug("[transform] Variant macro is replaced by the {} macro.",
+                BookVersionsConstants.INLINE_MACRO_ID);
+            newMacroBlock = new MacroBlock(BookVersionsConstants.INLINE_MACRO_ID, new HashMap<>(), newMacroContent,
+                macroBlock.isInline());
+        } else {
+            newMacroBlock = new MacroBlock(id, macroBlock.getParameters(), newMacroContent, macroBlock.isInline());
+        }
+        block.getParent().replaceChild(newMacroBlock, block);
+
+        return newMacroBlock;
+    }
+
+    private boolean isPublishedVariant(MacroBlock macroBlock, PublicationTransformationContext context)
+    {
+        DocumentReference publishedVariantReference = (DocumentReference) context.getConfiguration()
+            .get(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_VARIANT);
+        if (publishedVariantReference == null) {
+            return false;
+        }
+
+        // Get the possible variants from the variant macro
+        String variants = macroBlock.getParameter(BookVersionsConstants.VARIANT_MACRO_PROP_NAME);
+        List<DocumentReference> variantReferences = new ArrayList<>();
+        if (variants != null) {
+            for (String variant : variants.split(",")) {
+                variantReferences.add(referenceResolver.resolve(variant, context.getOriginalDocumentReference()));
+            }
+        }
+
+        return variantReferences.contains(publishedVariantReference);
+    }
+}
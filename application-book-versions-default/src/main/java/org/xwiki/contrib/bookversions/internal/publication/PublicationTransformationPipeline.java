@@ -0,0 +1,232 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal.publication;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.contrib.bookversions.PublicationTransformationContext;
+import org.xwiki.contrib.bookversions.PublicationTransformationStage;
+import org.xwiki.query.QueryException;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.renderer.BlockRenderer;
+import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
+import org.xwiki.rendering.renderer.printer.WikiPrinter;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+
+/**
+ * Walks the content of a published page once, handing each block to the {@link PublicationTransformationStage}s
+ * ordered by priority. The stages are resolved and sorted once per wiki, and kept for the whole publication so that
+ * all its pages and nested contents are transformed by the same stages. It also provides the parsers and renderers
+ * used for nested contents, looked up once per wiki and syntax.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+@Component(roles = PublicationTransformationPipeline.class)
+@Singleton
+public class PublicationTransformationPipeline
+{
+    private static final String STAGES_PROPERTY = PublicationTransformationPipeline.class.getName() + ".stages";
+
+    @Inject
+    @Named("context")
+    private Provider<ComponentManager> componentManagerProvider;
+
+    @Inject
+    private Provider<XWikiContext> xcontextProvider;
+
+    @Inject
+    private Logger logger;
+
+    private volatile Map<String, List<PublicationTransformationStage>> stagesByWiki = new ConcurrentHashMap<>();
+
+    private final Map<String, Parser> parsers = new ConcurrentHashMap<>();
+
+    private final Map<String, BlockRenderer> renderers = new ConcurrentHashMap<>();
+
+    /**
+     * Transform the descendants of the given block.
+     *
+     * @param root the block to transform the descendants of, usually the XDOM of the page
+     * @param context the context of the transformation
+     * @return true if the content has been modified
+     * @throws XWikiException In case a document needed by a stage can't be loaded.
+     * @throws QueryException In case a query needed by a stage fails.
+     * @throws ComponentLookupException In case the stages or a component needed by a stage can't be found.
+     * @throws ParseException In case a nested content can't be parsed.
+     */
+    public boolean transform(Block root, PublicationTransformationContext context)
+        throws XWikiException, QueryException, ComponentLookupException, ParseException
+    {
+        if (root == null || context == null) {
+            logger.error("[transform] Can't execute because one input is null.");
+            return false;
+        }
+
+        List<PublicationTransformationStage> stages = getStages(context);
+        transformChildren(root, stages, context);
+
+        return context.isChanged();
+    }
+
+    /**
+     * Parse a nested content, like the content of a macro.
+     *
+     * @param content the content to parse
+     * @param syntaxId the syntax of the content
+     * @return the parsed content
+     * @throws ComponentLookupException In case there is no parser for the syntax.
+     * @throws ParseException In case the content can't be parsed.
+     */
+    public XDOM parse(String content, String syntaxId) throws ComponentLookupException, ParseException
+    {
+        // The context component manager depends on the current wiki, which may have its own parsers
+        String key = getRenderingComponentKey(syntaxId);
+        Parser parser = this.parsers.get(key);
+        if (parser == null) {
+            parser = componentManagerProvider.get().getInstance(Parser.class, syntaxId);
+            this.parsers.put(key, parser);
+        }
+
+        return parser.parse(new StringReader(content));
+    }
+
+    /**
+     * Render a transformed nested content back to its syntax.
+     *
+     * @param block the content to render
+     * @param syntaxId the syntax to render the content with
+     * @return the rendered content
+     * @throws ComponentLookupException In case there is no renderer for the syntax.
+     */
+    public String render(Block block, String syntaxId) throws ComponentLookupException
+    {
+        String key = getRenderingComponentKey(syntaxId);
+        BlockRenderer renderer = this.renderers.get(key);
+        if (renderer == null) {
+            renderer = componentManagerProvider.get().getInstance(BlockRenderer.class, syntaxId);
+            this.renderers.put(key, renderer);
+        }
+
+        WikiPrinter printer = new DefaultWikiPrinter();
+        renderer.render(block, printer);
+
+        return printer.toString();
+    }
+
+    /**
+     * Forget the parsers and renderers looked up so far, as they may have been unregistered or replaced.
+     */
+    public void invalidateRenderingComponents()
+    {
+        this.parsers.clear();
+        this.renderers.clear();
+    }
+
+    /**
+     * Forget the stages resolved so far, as one of them may have been registered, unregistered or replaced. The
+     * publications already running keep the stages they started with.
+     */
+    public void invalidateStages()
+    {
+        // Replaced rather than cleared, so that stages resolved before the invalidation are stored in the old map
+        this.stagesByWiki = new ConcurrentHashMap<>();
+    }
+
+    private void transformChildren(Block parent, List<PublicationTransformationStage> stages,
+        PublicationTransformationContext context)
+        throws XWikiException, QueryException, ComponentLookupException, ParseException
+    {
+        // The stages replace or remove the blocks in their parent, so we iterate on a copy of the children
+        for (Block child : new ArrayList<>(parent.getChildren())) {
+            Block block = child;
+            for (PublicationTransformationStage stage : stages) {
+                Block transformedBlock = stage.transform(block, context);
+                if (transformedBlock != block) {
+                    context.setChanged();
+                }
+                block = transformedBlock;
+                if (block == null) {
+                    break;
+                }
+            }
+
+            if (block != null) {
+                transformChildren(block, stages, context);
+            }
+        }
+    }
+
+    private String getRenderingComponentKey(String syntaxId)
+    {
+        return xcontextProvider.get().getWikiId() + ':' + syntaxId;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<PublicationTransformationStage> getStages(PublicationTransformationContext context)
+        throws ComponentLookupException
+    {
+        List<PublicationTransformationStage> stages =
+            (List<PublicationTransformationStage>) context.getPublicationProperty(STAGES_PROPERTY);
+        if (stages == null) {
+            stages = getStages(xcontextProvider.get().getWikiId());
+            context.setPublicationProperty(STAGES_PROPERTY, stages);
+        }
+
+        return stages;
+    }
+
+    private List<PublicationTransformationStage> getStages(String wikiId) throws ComponentLookupException
+    {
+        Map<String, List<PublicationTransformationStage>> currentStagesByWiki = this.stagesByWiki;
+        List<PublicationTransformationStage> stages = currentStagesByWiki.get(wikiId);
+        if (stages == null) {
+            // Stages can be registered by other extensions, for the whole farm or for a single wiki
+            List<PublicationTransformationStage> sortedStages =
+                new ArrayList<>(componentManagerProvider.get().getInstanceList(PublicationTransformationStage.class));
+            sortedStages.sort(Comparator.comparingInt(PublicationTransformationStage::getPriority));
+            logger.debug("[getStages] Resolved [{}] stages for wiki [{}].", sortedStages.size(), wikiId);
+            stages = Collections.unmodifiableList(sortedStages);
+            currentStagesByWiki.put(wikiId, stages);
+        }
+
+        return stages;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal.publication;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.bookversions.BookVersionsManager;
+import org.xwiki.contrib.bookversions.PublicationTransformationContext;
+import org.xwiki.contrib.bookversions.PublicationTransformationStage;
+import org.xwiki.contrib.bookversions.internal.BookPublicationReferencesTransformationHelper;
+import org.xwiki.contrib.bookversions.internal.BookVersionsConstants;
+import org.xwiki.contrib.bookversions.internal.SpaceReferenceTrie;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.query.QueryException;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.ImageBlock;
+import org.xwiki.rendering.block.LinkBlock;
+import org.xwiki.rendering.block.MacroBlock;
+
+import com.xpn.xwiki.XWikiException;
+
+/**
+ * Updates the references of the links, images and macro parameters to point to the published spaces.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+@Component
+@Named("references")
+@Singleton
+public class ReferencesPublicationTransformationStage implements PublicationTransformationStage
+{
+    private static final int PRIORITY = 500;
+
+    private static final String PROPERTY_SPACEREFERENCES = "references.spaceReferences";
+
+    private static final String PROPERTY_COLLECTIONREFERENCES = "references.collectionReferences";
+
+    private static final String PROPERTY_EQUIVALENTREFERENCES = "references.equivalentReferences";
+
+    @Inject
+    private BookPublicationReferencesTransformationHelper publicationReferencesTransformationHelper;
+
+    @Inject
+    private Provider<BookVersionsManager> bookVersionsManagerProvider;
+
+    @Override
+    public int getPriority()
+    {
+        return PRIORITY;
+    }
+
+    @Override
+    public Block transform(Block block, PublicationTransformationContext context)
+        throws XWikiException, QueryException
+    {
+        if (!(block instanceof LinkBlock || block instanceof ImageBlock || block instanceof MacroBlock)) {
+            return block;
+        }
+
+        SpaceReferenceTrie spaceReferences = getSpaceReferences(context);
+        if (spaceReferences.isEmpty()) {
+            // The configuration has no source, there is nothing to map
+            return block;
+        }
+        SpaceReferenceTrie collectionReferences =
+            (SpaceReferenceTrie) context.getPublicationProperty(PROPERTY_COLLECTIONREFERENCES);
+        @SuppressWarnings("unchecked")
+        Map<DocumentReference, DocumentReference> equivalentReferences =
+            (Map<DocumentReference, DocumentReference>) context.getPublicationProperty(PROPERTY_EQUIVALENTREFERENCES);
+        DocumentReference originalReference = context.getOriginalDocumentReference();
+
+        if (block instanceof LinkBlock) {
+            return publicationReferencesTransformationHelper.transformLinkBlock((LinkBlock) block, originalReference,
+                spaceReferences, collectionReferences, equivalentReferences);
+        } else if (block instanceof ImageBlock) {
+            return publicationReferencesTransformationHelper.transformImageBlock((ImageBlock) block,
+                originalReference, spaceReferences, collectionReferences, equivalentReferences);
+        } else if (publicationReferencesTransformationHelper.transformMacroBlock((MacroBlock) block,
+            originalReference, spaceReferences, collectionReferences, equivalentReferences))
+        {
+            context.setChanged();
+        }
+
+        return block;
+    }
+
+    private SpaceReferenceTrie getSpaceReferences(PublicationTransformationContext context)
+        throws XWikiException, QueryException
+    {
+        // The mappings are the same for all the pages of the publication, so they are compiled once, and so are the
+        // equivalent references computed with them
+        SpaceReferenceTrie spaceReferences =
+            (SpaceReferenceTrie) context.getPublicationProperty(PROPERTY_SPACEREFERENCES);
+        if (spaceReferences == null) {
+            BookVersionsManager bookVersionsManager = bookVersionsManagerProvider.get();
+            Map<String, Object> configuration = context.getConfiguration();
+            DocumentReference versionReference =
+                (DocumentReference) configuration.get(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_VERSION);
+            Map<String, Map<DocumentReference, DocumentReference>> publishedLibraries =
+                context.getPublishedLibraries();
+            Map<DocumentReference, DocumentReference> currentPublishedLibraries =
+                publishedLibraries != null && versionReference != null
+                    ? publishedLibraries.get(bookVersionsManager.getVersionName(versionReference)) : null;
+
+            Map<SpaceReference, SpaceReference> spaceReferencesMap = publicationReferencesTransformationHelper
+                .getSpaceReferencesMap(context.getPublicationSourceReference(), currentPublishedLibraries,
+                    configuration);
+            spaceReferences =
+                new SpaceReferenceTrie(spaceReferencesMap != null ? spaceReferencesMap : Collections.emptyMap());
+            DocumentReference sourceCollectionReference =
+                bookVersionsManager.getVersionedCollectionReference(context.getPublicationSourceReference());
+            context.setPublicationProperty(PROPERTY_COLLECTIONREFERENCES, new SpaceReferenceTrie(
+                publicationReferencesTransformationHelper.getCollectionReferencesMap(sourceCollectionReference,
+                    configuration)));
+            context.setPublicationProperty(PROPERTY_EQUIVALENTREFERENCES, new ConcurrentHashMap<>());
+            // Stored last, as the other properties are expected once it is found
+            context.setPublicationProperty(PROPERTY_SPACEREFERENCES, spaceReferences);
+        }
+
+        return spaceReferences;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal.publication;
+
+import java.util.Map;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.bookversions.PublicationTransformationContext;
+import org.xwiki.contrib.bookversions.PublicationTransformationStage;
+import org.xwiki.contrib.bookversions.internal.BookVersionsConstants;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.MacroBlock;
+
+/**
+ * Transforms the includeSiblingBookPage macros to display macros. The reference itself is updated to the published
+ * page by the references stage.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+@Component
+@Named("siblingBookPage")
+@Singleton
+public class SiblingBookPagePublicationTransformationStage implements PublicationTransformationStage
+{
+    private static final int PRIORITY = 400;
+
+    @Override
+    public int getPriority()
+    {
+        return PRIORITY;
+    }
+
+    @Override
+    public Block transform(Block block, PublicationTransformationContext context)
+    {
+        if (!(block instanceof MacroBlock)
+            || !BookVersionsConstants.INCLUDESIBLINGBOOKPAGE_MACRO_ID.equals(((MacroBlock) block).getId()))
+        {
+            return block;
+        }
+
+        MacroBlock macroBlock = (MacroBlock) block;
+        // Get the reference
+        String refString = macroBlock.getParameter(BookVersionsConstants.INCLUDESIBLINGBOOKPAGE_MACRO_PROP_REFERENCE);
+        if (StringUtils.isEmpty(refString)) {
+            return block;
+        }
+
+        // Replace the macro by display macro and change to the published reference
+        MacroBlock newMacroBlock = new MacroBlock(BookVersionsConstants.DISPLAY_MACRO_ID,
+            Map.of(BookVersionsConstants.DISPLAY_MACRO_PROP_REFERENCE, refString), macroBlock.isInline());
+        macroBlock.getParent().replaceChild(newMacroBlock, macroBlock);
+
+        return newMacroBlock;
+    }
+}
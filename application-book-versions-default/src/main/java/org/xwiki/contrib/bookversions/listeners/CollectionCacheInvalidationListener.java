@@ -0,0 +1,79 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.listeners;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.event.WikiDeletedEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.bookversions.internal.BookVersionsConstants;
+import org.xwiki.contrib.bookversions.internal.cache.CollectionReferenceCache;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+import org.xwiki.refactoring.event.DocumentRenamedEvent;
+
+import com.xpn.xwiki.internal.event.XObjectAddedEvent;
+import com.xpn.xwiki.internal.event.XObjectDeletedEvent;
+import com.xpn.xwiki.objects.BaseObjectReference;
+
+/**
+ * Invalidate the cached collection references when a collection is created, removed or moved.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+@Component
+@Named(CollectionCacheInvalidationListener.NAME)
+@Singleton
+public class CollectionCacheInvalidationListener extends AbstractEventListener
+{
+    static final String NAME = "org.xwiki.contrib.bookversions.listeners.CollectionCacheInvalidationListener";
+
+    private static final List<Event> EVENT_LIST = List.of(
+        new XObjectAddedEvent(BaseObjectReference.any(BookVersionsConstants.BOOK_CLASS_SERIALIZED)),
+        new XObjectDeletedEvent(BaseObjectReference.any(BookVersionsConstants.BOOK_CLASS_SERIALIZED)),
+        new XObjectAddedEvent(BaseObjectReference.any(BookVersionsConstants.LIBRARY_CLASS_SERIALIZED)),
+        new XObjectDeletedEvent(BaseObjectReference.any(BookVersionsConstants.LIBRARY_CLASS_SERIALIZED)),
+        new XObjectAddedEvent(BaseObjectReference.any(BookVersionsConstants.PUBLISHED_BOOK_CLASS_SERIALIZED)),
+        new XObjectDeletedEvent(BaseObjectReference.any(BookVersionsConstants.PUBLISHED_BOOK_CLASS_SERIALIZED)),
+        new DocumentRenamedEvent(), new WikiDeletedEvent());
+
+    @Inject
+    private CollectionReferenceCache collectionReferenceCache;
+
+    /**
+     * Constructor.
+     */
+    public CollectionCacheInvalidationListener()
+    {
+        super(NAME, EVENT_LIST);
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        // A collection definition change impacts all the documents located under it, so we don't try to be smart.
+        this.collectionReferenceCache.invalidate();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.listeners;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.bookversions.internal.BookVersionsConstants;
+import org.xwiki.contrib.bookversions.internal.cache.CollectionCatalogCache;
+import org.xwiki.contrib.bookversions.internal.cache.VersionGraphCache;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+import org.xwiki.query.QueryException;
+
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * Keep the cached collection catalogs and version graphs up to date when a version or a variant is created, updated,
+ * deleted or renamed. Any modification of a version or variant document updates its catalog entry, as the entry also
+ * holds the title and creation date of the document. The catalog is updated before the version graph, which is built
+ * from it.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+@Component
+@Named(CollectionCatalogListener.NAME)
+@Singleton
+public class CollectionCatalogListener extends AbstractEventListener
+{
+    static final String NAME = "org.xwiki.contrib.bookversions.listeners.CollectionCatalogListener";
+
+    private static final List<Event> EVENT_LIST =
+        List.of(new DocumentCreatedEvent(), new DocumentUpdatedEvent(), new DocumentDeletedEvent());
+
+    @Inject
+    private CollectionCatalogCache collectionCatalogCache;
+
+    @Inject
+    private VersionGraphCache versionGraphCache;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * Constructor.
+     */
+    public CollectionCatalogListener()
+    {
+        super(NAME, EVENT_LIST);
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        XWikiDocument document = (XWikiDocument) source;
+        DocumentReference documentReference = document.getDocumentReference();
+        // A deleted document is only available as the original document
+        XWikiDocument previousDocument = document.getOriginalDocument();
+        boolean wasVersion = hasObject(previousDocument, BookVersionsConstants.VERSION_CLASS_REFERENCE);
+        boolean wasVariant = hasObject(previousDocument, BookVersionsConstants.VARIANT_CLASS_REFERENCE);
+        boolean isDeleted = event instanceof DocumentDeletedEvent;
+        boolean isVersion = !isDeleted && hasObject(document, BookVersionsConstants.VERSION_CLASS_REFERENCE);
+        boolean isVariant =
+            !isDeleted && !isVersion && hasObject(document, BookVersionsConstants.VARIANT_CLASS_REFERENCE);
+
+        try {
+            if (wasVersion && !isVersion || wasVariant && !isVariant) {
+                this.collectionCatalogCache.remove(documentReference);
+                if (wasVersion && !isVersion) {
+                    this.versionGraphCache.removeVersion(documentReference);
+                }
+            }
+            if (isVersion) {
+                this.collectionCatalogCache.updateVersion(document);
+                this.versionGraphCache.updateVersion(document);
+            } else if (isVariant) {
+                this.collectionCatalogCache.updateVariant(document);
+            }
+        } catch (XWikiException | QueryException e) {
+            logger.error("Could not update the collection catalog for [{}].", documentReference, e);
+        }
+    }
+
+    private boolean hasObject(XWikiDocument document, EntityReference classReference)
+    {
+        return document != null && document.getXObject(classReference) != null;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.listeners;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.bookversions.internal.BookVersionsConstants;
+import org.xwiki.contrib.bookversions.internal.cache.ContentPresenceIndexCache;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+import org.xwiki.query.QueryException;
+
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.event.XObjectAddedEvent;
+import com.xpn.xwiki.internal.event.XObjectDeletedEvent;
+import com.xpn.xwiki.objects.BaseObjectReference;
+
+/**
+ * Keep the cached content presence indexes up to date when versioned content is created or deleted.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+@Component
+@Named(ContentPresenceIndexListener.NAME)
+@Singleton
+public class ContentPresenceIndexListener extends AbstractEventListener
+{
+    static final String NAME = "org.xwiki.contrib.bookversions.listeners.ContentPresenceIndexListener";
+
+    private static final List<Event> EVENT_LIST = List.of(
+        new XObjectAddedEvent(BaseObjectReference.any(BookVersionsConstants.BOOKVERSIONEDCONTENT_CLASS_SERIALIZED)),
+        new XObjectDeletedEvent(
+            BaseObjectReference.any(BookVersionsConstants.BOOKVERSIONEDCONTENT_CLASS_SERIALIZED)));
+
+    @Inject
+    private ContentPresenceIndexCache contentPresenceIndexCache;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * Constructor.
+     */
+    public ContentPresenceIndexListener()
+    {
+        super(NAME, EVENT_LIST);
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        DocumentReference contentReference = ((XWikiDocument) source).getDocumentReference();
+
+        try {
+            if (event instanceof XObjectDeletedEvent) {
+                this.contentPresenceIndexCache.removeContent(contentReference);
+            } else {
+                this.contentPresenceIndexCache.addContent(contentReference);
+            }
+        } catch (XWikiException | QueryException e) {
+            logger.error("Could not update the content presence index for [{}].", contentReference, e);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.listeners;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.bookversions.internal.BookVersionsTypeResolver;
+import org.xwiki.contrib.bookversions.internal.RequestResolutionCache;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * Invalidate the cached book versions types of a document when it's saved or deleted, as well as the resolutions
+ * memoized for the current request.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+@Component
+@Named(DocumentTypeCacheInvalidationListener.NAME)
+@Singleton
+public class DocumentTypeCacheInvalidationListener extends AbstractEventListener
+{
+    static final String NAME = "org.xwiki.contrib.bookversions.listeners.DocumentTypeCacheInvalidationListener";
+
+    private static final List<Event> EVENT_LIST =
+        List.of(new DocumentCreatedEvent(), new DocumentUpdatedEvent(), new DocumentDeletedEvent());
+
+    @Inject
+    private BookVersionsTypeResolver typeResolver;
+
+    @Inject
+    private RequestResolutionCache requestResolutionCache;
+
+    /**
+     * Constructor.
+     */
+    public DocumentTypeCacheInvalidationListener()
+    {
+        super(NAME, EVENT_LIST);
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        this.typeResolver.invalidate(((XWikiDocument) source).getDocumentReference());
+        this.requestResolutionCache.clear();
+    }
+}
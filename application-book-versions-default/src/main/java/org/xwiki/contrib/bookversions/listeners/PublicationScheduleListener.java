@@ -0,0 +1,95 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.listeners;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.bookversions.internal.BookVersionsConstants;
+import org.xwiki.contrib.bookversions.internal.ScheduledPublicationRunner;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+
+/**
+ * Load the publication schedules again when a publication configuration is saved or deleted, and remove the schedule
+ * claim of the configurations which are not scheduled anymore. Being a listener, it also starts checking the schedules
+ * as soon as the extension is installed.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+@Component
+@Named(PublicationScheduleListener.NAME)
+@Singleton
+public class PublicationScheduleListener extends AbstractEventListener
+{
+    static final String NAME = "org.xwiki.contrib.bookversions.listeners.PublicationScheduleListener";
+
+    private static final List<Event> EVENT_LIST =
+        List.of(new DocumentCreatedEvent(), new DocumentUpdatedEvent(), new DocumentDeletedEvent());
+
+    @Inject
+    private ScheduledPublicationRunner scheduledPublicationRunner;
+
+    /**
+     * Constructor.
+     */
+    public PublicationScheduleListener()
+    {
+        super(NAME, EVENT_LIST);
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        XWikiDocument document = (XWikiDocument) source;
+        if (isConfiguration(document) || isConfiguration(document.getOriginalDocument())) {
+            this.scheduledPublicationRunner.invalidate();
+            if (isScheduled(document.getOriginalDocument()) && !isScheduled(document)) {
+                this.scheduledPublicationRunner.removeClaim(document.getDocumentReference());
+            }
+        }
+    }
+
+    private boolean isScheduled(XWikiDocument document)
+    {
+        BaseObject configurationObject = document != null
+            ? document.getXObject(BookVersionsConstants.PUBLICATIONCONFIGURATION_CLASS_REFERENCE) : null;
+        return configurationObject != null && StringUtils.isNotBlank(
+            configurationObject.getStringValue(BookVersionsConstants.PUBLICATIONCONFIGURATION_PROP_SCHEDULE));
+    }
+
+    private boolean isConfiguration(XWikiDocument document)
+    {
+        return document != null
+            && document.getXObject(BookVersionsConstants.PUBLICATIONCONFIGURATION_CLASS_REFERENCE) != null;
+    }
+}
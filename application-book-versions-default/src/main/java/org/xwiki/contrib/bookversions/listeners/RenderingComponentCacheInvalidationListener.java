@@ -0,0 +1,90 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.listeners;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.event.ComponentDescriptorAddedEvent;
+import org.xwiki.component.event.ComponentDescriptorEvent;
+import org.xwiki.component.event.ComponentDescriptorRemovedEvent;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.contrib.bookversions.PublicationTransformationStage;
+import org.xwiki.contrib.bookversions.internal.cache.MacroReferenceParametersCache;
+import org.xwiki.contrib.bookversions.internal.publication.PublicationTransformationPipeline;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+import org.xwiki.rendering.macro.Macro;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.renderer.BlockRenderer;
+
+/**
+ * Invalidate the cached macro reference parameters when a macro is registered or unregistered, and the publication
+ * transformation stages, parsers and renderers used for the publication when one of them is.
+ *
+ * @version $Id$
+ * @since 1.31
+ */
+@Component
+@Named(RenderingComponentCacheInvalidationListener.NAME)
+@Singleton
+public class RenderingComponentCacheInvalidationListener extends AbstractEventListener
+{
+    static final String NAME = "org.xwiki.contrib.bookversions.listeners.RenderingComponentCacheInvalidationListener";
+
+    private static final List<Event> EVENT_LIST = List.of(new ComponentDescriptorAddedEvent(Macro.class),
+        new ComponentDescriptorRemovedEvent(Macro.class), new ComponentDescriptorAddedEvent(Parser.class),
+        new ComponentDescriptorRemovedEvent(Parser.class), new ComponentDescriptorAddedEvent(BlockRenderer.class),
+        new ComponentDescriptorRemovedEvent(BlockRenderer.class),
+        new ComponentDescriptorAddedEvent(PublicationTransformationStage.class),
+        new ComponentDescriptorRemovedEvent(PublicationTransformationStage.class));
+
+    @Inject
+    private MacroReferenceParametersCache macroReferenceParametersCache;
+
+    @Inject
+    private PublicationTransformationPipeline publicationTransformationPipeline;
+
+    /**
+     * Constructor.
+     */
+    public RenderingComponentCacheInvalidationListener()
+    {
+        super(NAME, EVENT_LIST);
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        // Macros are registered in bulk at startup, or one at a time for wiki macros: clearing everything is cheap
+        Class<?> role = ReflectionUtils.getTypeClass(((ComponentDescriptorEvent) event).getRoleType());
+        if (Macro.class.equals(role)) {
+            this.macroReferenceParametersCache.invalidateAll();
+        } else if (PublicationTransformationStage.class.equals(role)) {
+            this.publicationTransformationPipeline.invalidateStages();
+        } else {
+            this.publicationTransformationPipeline.invalidateRenderingComponents();
+        }
+    }
+}
@@ -20,6 +20,9 @@
 
 package org.xwiki.contrib.bookversions.script;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -31,6 +34,9 @@ import javax.inject.Singleton;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.contrib.bookversions.BookVersionsManager;
+import org.xwiki.contrib.bookversions.internal.PageMetadata;
+import org.xwiki.contrib.bookversions.internal.PageMetadataLoader;
+import org.xwiki.contrib.bookversions.internal.RequestResolutionCache;
 import org.xwiki.job.JobException;
 import org.xwiki.livedata.LiveDataConfiguration;
 import org.xwiki.model.reference.DocumentReference;
@@ -63,6 +69,12 @@ public class BookVersionsScriptService implements ScriptService
     @Inject
     private Provider<BookVersionsManager> bookVersionsManagerProvider;
 
+    @Inject
+    private RequestResolutionCache requestResolutionCache;
+
+    @Inject
+    private PageMetadataLoader pageMetadataLoader;
+
     /**
      * Check if the given reference is a book.
      *
@@ -362,7 +374,48 @@ public class BookVersionsScriptService implements ScriptService
     public DocumentReference getVersionedCollectionReference(DocumentReference pageReference)
         throws XWikiException, QueryException
     {
-        return bookVersionsManagerProvider.get().getVersionedCollectionReference(pageReference);
+        return requestResolutionCache.get("versionedCollectionReference", Arrays.asList(pageReference),
+            () -> bookVersionsManagerProvider.get().getVersionedCollectionReference(pageReference));
+    }
+
+    /**
+     * Get the versioned collection (book or library) references of several pages at once.
+     *
+     * @param pageReferences the pages from which to take the collection references
+     * @return the versioned collection reference of each page, or null for the pages not part of a collection
+     * @throws QueryException If any exception occurs while querying the database.
+     */
+    public Map<DocumentReference, DocumentReference> getVersionedCollectionReferences(
+        Collection<DocumentReference> pageReferences) throws QueryException
+    {
+        return bookVersionsManagerProvider.get().getVersionedCollectionReferences(pageReferences);
+    }
+
+    /**
+     * Get the status, deleted mark, variants and translations of all the pages under a page at once.
+     *
+     * @param rootReference the reference of the top page
+     * @return the metadata of the pages under the top page (included), the pages without any being left out. The
+     *     metadata of a page is a map with the {@code status} ({@code null} if the page has none),
+     *     {@code markedDeleted}, {@code variants} and {@code languageData} (as returned by
+     *     {@link BookVersionsManager#getLanguageData(DocumentReference)}) keys
+     * @throws QueryException If any exception occurs while querying the database.
+     */
+    public Map<DocumentReference, Map<String, Object>> getPagesMetadata(DocumentReference rootReference)
+        throws QueryException
+    {
+        Map<DocumentReference, Map<String, Object>> result = new HashMap<>();
+        for (Map.Entry<DocumentReference, PageMetadata> entry : pageMetadataLoader.load(rootReference).entrySet()) {
+            PageMetadata pageMetadata = entry.getValue();
+            Map<String, Object> pageData = new HashMap<>();
+            pageData.put("status", pageMetadata.getStatus());
+            pageData.put("markedDeleted", pageMetadata.isMarkedDeleted());
+            pageData.put("variants", pageMetadata.getVariants());
+            pageData.put("languageData", pageMetadata.getLanguageData());
+            result.put(entry.getKey(), pageData);
+        }
+
+        return result;
     }
 
     /**
@@ -458,7 +511,8 @@ public class BookVersionsScriptService implements ScriptService
     public DocumentReference getVersionedContentReference(DocumentReference documentReference, String version)
         throws QueryException, XWikiException
     {
-        return bookVersionsManagerProvider.get().getVersionedContentReference(documentReference, version);
+        return requestResolutionCache.get("versionedContentReference", Arrays.asList(documentReference, version),
+            () -> bookVersionsManagerProvider.get().getVersionedContentReference(documentReference, version));
     }
 
     /**
@@ -487,7 +541,8 @@ public class BookVersionsScriptService implements ScriptService
     public DocumentReference getInheritedVersionedContentReference(DocumentReference documentReference)
         throws XWikiException, QueryException
     {
-        return bookVersionsManagerProvider.get().getInheritedVersionedContentReference(documentReference);
+        return requestResolutionCache.get("inheritedVersionedContentReference", Arrays.asList(documentReference),
+            () -> bookVersionsManagerProvider.get().getInheritedVersionedContentReference(documentReference));
     }
 
     /**
@@ -516,7 +571,10 @@ public class BookVersionsScriptService implements ScriptService
     public DocumentReference getInheritedContentVersionReference(DocumentReference pageReference,
         DocumentReference versionReference) throws QueryException, XWikiException
     {
-        return bookVersionsManagerProvider.get().getInheritedContentVersionReference(pageReference, versionReference);
+        return requestResolutionCache.get("inheritedContentVersionReference",
+            Arrays.asList(pageReference, versionReference),
+            () -> bookVersionsManagerProvider.get().getInheritedContentVersionReference(pageReference,
+                versionReference));
     }
 
     /**
@@ -533,7 +591,9 @@ public class BookVersionsScriptService implements ScriptService
     public DocumentReference getInheritedContentReference(DocumentReference pageReference,
         DocumentReference versionReference) throws QueryException, XWikiException
     {
-        return bookVersionsManagerProvider.get().getInheritedContentReference(pageReference, versionReference);
+        return requestResolutionCache.get("inheritedContentReference",
+            Arrays.asList(pageReference, versionReference),
+            () -> bookVersionsManagerProvider.get().getInheritedContentReference(pageReference, versionReference));
     }
 
     /**
@@ -707,6 +767,31 @@ public class BookVersionsScriptService implements ScriptService
         return bookVersionsManagerProvider.get().publish(configurationReference);
     }
 
+    /**
+     * Continue an interrupted publication from its last checkpoint.
+     *
+     * @param configurationReference the configuration reference
+     * @return the publication job's ID
+     * @since 1.31
+     */
+    public String resumePublication(DocumentReference configurationReference) throws JobException
+    {
+        return bookVersionsManagerProvider.get().resumePublication(configurationReference);
+    }
+
+    /**
+     * Check if an interrupted publication of the provided configuration can be resumed.
+     *
+     * @param configurationReference the configuration reference
+     * @return true if a checkpoint of the publication exists
+     * @throws XWikiException In case the system can't provide an answer.
+     * @since 1.31
+     */
+    public boolean hasPublicationCheckpoint(DocumentReference configurationReference) throws XWikiException
+    {
+        return bookVersionsManagerProvider.get().hasPublicationCheckpoint(configurationReference);
+    }
+
     /**
      * Check if the given language is the default one for the given reference.
      *
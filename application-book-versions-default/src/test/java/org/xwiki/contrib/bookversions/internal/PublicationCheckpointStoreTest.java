@@ -0,0 +1,106 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.user.UserReference;
+
+import com.xpn.xwiki.test.MockitoOldcore;
+import com.xpn.xwiki.test.junit5.mockito.InjectMockitoOldcore;
+import com.xpn.xwiki.test.junit5.mockito.OldcoreTest;
+import com.xpn.xwiki.test.reference.ReferenceComponentList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit tests for {@link PublicationCheckpointStore}.
+ *
+ * @version $Id$
+ */
+@OldcoreTest
+@ReferenceComponentList
+class PublicationCheckpointStoreTest
+{
+    private static final DocumentReference CONFIGURATION_REFERENCE =
+        new DocumentReference("xwiki", Arrays.asList("Books", "Publications"), "MyConfiguration");
+
+    @InjectMockitoOldcore
+    private MockitoOldcore oldcore;
+
+    @InjectMockComponents
+    private PublicationCheckpointStore store;
+
+    @Test
+    void saveAndLoad() throws Exception
+    {
+        assertFalse(this.store.exists(CONFIGURATION_REFERENCE));
+        assertNull(this.store.load(CONFIGURATION_REFERENCE));
+
+        PublicationCheckpoint checkpoint = new PublicationCheckpoint("stamp");
+        checkpoint.markProcessed("Books.Book.WebHome");
+        checkpoint.markProcessed("Books.Book.Chapter 1.WebHome");
+        List<DocumentReference> deletionQueue =
+            Collections.singletonList(new DocumentReference("xwiki", Arrays.asList("Published", "Old"), "WebHome"));
+        Set<DocumentReference> publishedPages = new HashSet<>(Arrays.asList(
+            new DocumentReference("xwiki", "Published", "WebHome"),
+            new DocumentReference("xwiki", Arrays.asList("Published", "Chapter 1"), "WebHome")));
+
+        this.store.save(CONFIGURATION_REFERENCE, checkpoint, deletionQueue, publishedPages,
+            mock(UserReference.class));
+
+        assertTrue(this.store.exists(CONFIGURATION_REFERENCE));
+        PublicationCheckpoint loadedCheckpoint = this.store.load(CONFIGURATION_REFERENCE);
+        assertEquals("stamp", loadedCheckpoint.getStamp());
+        assertEquals(checkpoint.getProcessedPages(), loadedCheckpoint.getProcessedPages());
+        assertTrue(loadedCheckpoint.isProcessed("Books.Book.Chapter 1.WebHome"));
+        assertEquals(deletionQueue, loadedCheckpoint.getDeletionQueue());
+        assertEquals(publishedPages, loadedCheckpoint.getPublishedPages());
+
+        this.store.delete(CONFIGURATION_REFERENCE);
+
+        assertFalse(this.store.exists(CONFIGURATION_REFERENCE));
+        assertNull(this.store.load(CONFIGURATION_REFERENCE));
+    }
+
+    @Test
+    void saveEmptyCheckpoint() throws Exception
+    {
+        this.store.save(CONFIGURATION_REFERENCE, new PublicationCheckpoint("stamp"), Collections.emptyList(),
+            Collections.emptySet(), mock(UserReference.class));
+
+        PublicationCheckpoint loadedCheckpoint = this.store.load(CONFIGURATION_REFERENCE);
+        assertEquals("stamp", loadedCheckpoint.getStamp());
+        assertTrue(loadedCheckpoint.getProcessedPages().isEmpty());
+        assertTrue(loadedCheckpoint.getDeletionQueue().isEmpty());
+        assertTrue(loadedCheckpoint.getPublishedPages().isEmpty());
+    }
+}
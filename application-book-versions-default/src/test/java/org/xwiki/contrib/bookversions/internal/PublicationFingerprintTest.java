@@ -0,0 +1,98 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.test.MockitoOldcore;
+import com.xpn.xwiki.test.junit5.mockito.InjectMockitoOldcore;
+import com.xpn.xwiki.test.junit5.mockito.OldcoreTest;
+import com.xpn.xwiki.test.reference.ReferenceComponentList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link PublicationFingerprint}.
+ *
+ * @version $Id$
+ */
+@OldcoreTest
+@ReferenceComponentList
+class PublicationFingerprintTest
+{
+    private static final String SOURCE = "Books.Book.Chapter 1.WebHome";
+
+    @InjectMockitoOldcore
+    private MockitoOldcore oldcore;
+
+    private XWikiDocument document;
+
+    @BeforeEach
+    void setUp()
+    {
+        this.document =
+            new XWikiDocument(new DocumentReference("xwiki", Arrays.asList("Published", "Chapter 1"), "WebHome"));
+        this.document.setContent("content");
+    }
+
+    @Test
+    void isPublishedFromWithoutFingerprint()
+    {
+        assertFalse(PublicationFingerprint.isPublishedFrom(this.document, SOURCE));
+    }
+
+    @Test
+    void isPublishedFrom()
+    {
+        setFingerprintSource(SOURCE);
+
+        assertTrue(PublicationFingerprint.isPublishedFrom(this.document, SOURCE));
+        assertFalse(PublicationFingerprint.isPublishedFrom(this.document, "Books.Book.Chapter 2.WebHome"));
+    }
+
+    @Test
+    void computeIgnoresTheFingerprintObject() throws Exception
+    {
+        String fingerprint = PublicationFingerprint.compute(this.document, this.oldcore.getXWikiContext());
+
+        setFingerprintSource(SOURCE);
+        assertEquals(fingerprint, PublicationFingerprint.compute(this.document, this.oldcore.getXWikiContext()));
+
+        this.document.setContent("other content");
+        assertNotEquals(fingerprint, PublicationFingerprint.compute(this.document, this.oldcore.getXWikiContext()));
+    }
+
+    private void setFingerprintSource(String source)
+    {
+        BaseObject fingerprintObject = new BaseObject();
+        fingerprintObject.setXClassReference(BookVersionsConstants.PUBLICATIONFINGERPRINT_CLASS_REFERENCE);
+        this.document.addXObject(fingerprintObject);
+        fingerprintObject.setStringValue(BookVersionsConstants.PUBLICATIONFINGERPRINT_PROP_SOURCE, source);
+    }
+}
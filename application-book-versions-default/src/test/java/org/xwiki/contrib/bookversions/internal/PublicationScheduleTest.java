@@ -0,0 +1,139 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link PublicationSchedule}.
+ *
+ * @version $Id$
+ */
+class PublicationScheduleTest
+{
+    private static ZonedDateTime at(int month, int day, int hour, int minute)
+    {
+        return ZonedDateTime.of(2026, month, day, hour, minute, 0, 0, ZoneOffset.UTC);
+    }
+
+    @Test
+    void windowTriggeredOncePerOpening()
+    {
+        PublicationSchedule schedule = PublicationSchedule.parse(" 9:30 - 11:00 ");
+
+        assertNull(schedule.getTrigger(at(10, 5, 9, 0), at(10, 5, 9, 29), null));
+        assertEquals(at(10, 5, 9, 30), schedule.getTrigger(at(10, 5, 9, 0), at(10, 5, 9, 45), null));
+        assertNull(schedule.getTrigger(at(10, 5, 9, 45), at(10, 5, 10, 0), at(10, 5, 9, 30)));
+        assertNull(schedule.getTrigger(at(10, 5, 10, 0), at(10, 5, 11, 0), null));
+        assertEquals(at(10, 6, 9, 30), schedule.getTrigger(at(10, 6, 9, 0), at(10, 6, 10, 0), at(10, 5, 9, 30)));
+    }
+
+    @Test
+    void windowOverMidnight()
+    {
+        PublicationSchedule schedule = PublicationSchedule.parse("22:00-02:00");
+
+        assertEquals(at(10, 5, 22, 0), schedule.getTrigger(at(10, 5, 22, 0), at(10, 5, 23, 0), null));
+        assertEquals(at(10, 5, 22, 0), schedule.getTrigger(at(10, 6, 0, 0), at(10, 6, 1, 0), null));
+        assertNull(schedule.getTrigger(at(10, 6, 0, 0), at(10, 6, 1, 0), at(10, 5, 22, 0)));
+        assertTrue(schedule.canStart(at(10, 6, 1, 59)));
+        assertFalse(schedule.canStart(at(10, 6, 2, 0)));
+        assertFalse(schedule.canStart(at(10, 6, 21, 59)));
+    }
+
+    @Test
+    void invalidWindow()
+    {
+        assertThrows(IllegalArgumentException.class, () -> PublicationSchedule.parse("24:00-02:00"));
+        assertThrows(IllegalArgumentException.class, () -> PublicationSchedule.parse("22:60-23:00"));
+        assertThrows(IllegalArgumentException.class, () -> PublicationSchedule.parse("10:00-10:00"));
+    }
+
+    @Test
+    void cronReturnsLatestMatchingMinute()
+    {
+        PublicationSchedule schedule = PublicationSchedule.parse("*/15 * * * *");
+
+        assertEquals(at(10, 5, 10, 30), schedule.getTrigger(at(10, 5, 10, 7), at(10, 5, 10, 31), null));
+        assertNull(schedule.getTrigger(at(10, 5, 10, 31), at(10, 5, 10, 44), null));
+        assertNull(schedule.getTrigger(at(10, 5, 10, 7), at(10, 5, 10, 31), at(10, 5, 10, 30)));
+        // The last check is excluded, the current time included
+        assertNull(schedule.getTrigger(at(10, 5, 10, 30), at(10, 5, 10, 44), null));
+        assertEquals(at(10, 5, 10, 45), schedule.getTrigger(at(10, 5, 10, 44), at(10, 5, 10, 45), null));
+    }
+
+    @Test
+    void cronListsRangesAndSteps()
+    {
+        PublicationSchedule schedule = PublicationSchedule.parse("5/20 8-10,14 * * *");
+
+        assertEquals(at(10, 5, 8, 45), schedule.getTrigger(at(10, 5, 8, 30), at(10, 5, 8, 50), null));
+        assertEquals(at(10, 5, 14, 25), schedule.getTrigger(at(10, 5, 14, 0), at(10, 5, 14, 30), null));
+        assertNull(schedule.getTrigger(at(10, 5, 11, 0), at(10, 5, 13, 59), null));
+    }
+
+    @Test
+    void cronDayRestrictions()
+    {
+        // 2026-10-01 is a Thursday, 2026-10-05 a Monday and 2026-10-11 a Sunday
+        PublicationSchedule dayOfMonthOrMonday = PublicationSchedule.parse("0 9 1 * 1");
+        assertTrue(dayOfMonthOrMonday.isTriggered(at(10, 1, 8, 0), at(10, 1, 9, 0), null));
+        assertTrue(dayOfMonthOrMonday.isTriggered(at(10, 5, 8, 0), at(10, 5, 9, 0), null));
+        assertFalse(dayOfMonthOrMonday.isTriggered(at(10, 6, 8, 0), at(10, 6, 9, 0), null));
+
+        // A step on any day is not a restriction, both fields have to match
+        PublicationSchedule oddMonday = PublicationSchedule.parse("0 9 */2 * 1");
+        assertTrue(oddMonday.isTriggered(at(10, 5, 8, 0), at(10, 5, 9, 0), null));
+        assertFalse(oddMonday.isTriggered(at(10, 12, 8, 0), at(10, 12, 9, 0), null));
+        assertFalse(oddMonday.isTriggered(at(10, 7, 8, 0), at(10, 7, 9, 0), null));
+
+        assertTrue(PublicationSchedule.parse("0 9 * * 7").isTriggered(at(10, 11, 8, 0), at(10, 11, 9, 0), null));
+        assertTrue(PublicationSchedule.parse("0 9 * * 0").isTriggered(at(10, 11, 8, 0), at(10, 11, 9, 0), null));
+    }
+
+    @Test
+    void cronIgnoresTriggersMissedForMoreThanADay()
+    {
+        PublicationSchedule schedule = PublicationSchedule.parse("0 9 15 10 *");
+
+        assertEquals(at(10, 15, 9, 0), schedule.getTrigger(at(10, 14, 0, 0), at(10, 16, 8, 0), null));
+        assertNull(schedule.getTrigger(at(10, 14, 0, 0), at(10, 17, 8, 0), null));
+    }
+
+    @Test
+    void invalidCron()
+    {
+        assertThrows(IllegalArgumentException.class, () -> PublicationSchedule.parse(""));
+        assertThrows(IllegalArgumentException.class, () -> PublicationSchedule.parse("* * *"));
+        assertThrows(IllegalArgumentException.class, () -> PublicationSchedule.parse("60 * * * *"));
+        assertThrows(IllegalArgumentException.class, () -> PublicationSchedule.parse("* * 0 * *"));
+        assertThrows(IllegalArgumentException.class, () -> PublicationSchedule.parse("a * * * *"));
+        assertThrows(IllegalArgumentException.class, () -> PublicationSchedule.parse("*/0 * * * *"));
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.bookversions.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.SpaceReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link SpaceReferenceTrie}.
+ *
+ * @version $Id$
+ */
+class SpaceReferenceTrieTest
+{
+    private static final String WIKI = "wiki";
+
+    private static final String WEB_HOME = "WebHome";
+
+    private static SpaceReference space(String... spaces)
+    {
+        return new SpaceReference(WIKI, Arrays.asList(spaces));
+    }
+
+    private static DocumentReference document(String name, String... spaces)
+    {
+        return new DocumentReference(WIKI, Arrays.asList(spaces), name);
+    }
+
+    @Test
+    void emptyTrie()
+    {
+        SpaceReferenceTrie trie = new SpaceReferenceTrie(Collections.emptyMap());
+
+        assertTrue(trie.isEmpty());
+        assertNull(trie.replaceMatchingSpace(document(WEB_HOME, "A")));
+    }
+
+    @Test
+    void replaceMatchingSpace()
+    {
+        Map<SpaceReference, SpaceReference> mappings = new HashMap<>();
+        mappings.put(space("A", "B"), space("X"));
+        mappings.put(space("C"), space("Y", "Z"));
+        SpaceReferenceTrie trie = new SpaceReferenceTrie(mappings);
+
+        assertFalse(trie.isEmpty());
+        assertEquals(document(WEB_HOME, "X"), trie.replaceMatchingSpace(document(WEB_HOME, "A", "B")));
+        assertEquals(document("Page", "X", "D"), trie.replaceMatchingSpace(document("Page", "A", "B", "D")));
+        assertEquals(document(WEB_HOME, "Y", "Z", "D"), trie.replaceMatchingSpace(document(WEB_HOME, "C", "D")));
+    }
+
+    @Test
+    void noMatchingSpace()
+    {
+        SpaceReferenceTrie trie = new SpaceReferenceTrie(Collections.singletonMap(space("A", "B"), space("X")));
+
+        assertNull(trie.replaceMatchingSpace(document(WEB_HOME, "A")));
+        assertNull(trie.replaceMatchingSpace(document(WEB_HOME, "A", "C")));
+        // A document named as a mapped space is not in that space
+        assertNull(trie.replaceMatchingSpace(document("B", "A")));
+        assertNull(trie.replaceMatchingSpace(new DocumentReference("otherwiki", Arrays.asList("A", "B"), WEB_HOME)));
+    }
+
+    @Test
+    void spaceClosestToTheWikiIsUsed()
+    {
+        Map<SpaceReference, SpaceReference> mappings = new HashMap<>();
+        mappings.put(space("A"), space("X"));
+        mappings.put(space("A", "B"), space("Y"));
+        SpaceReferenceTrie trie = new SpaceReferenceTrie(mappings);
+
+        assertEquals(document(WEB_HOME, "X", "B", "C"), trie.replaceMatchingSpace(document(WEB_HOME, "A", "B", "C")));
+    }
+
+    @Test
+    void nullSourceIsIgnored()
+    {
+        Map<SpaceReference, SpaceReference> mappings = new HashMap<>();
+        mappings.put(null, space("X"));
+        mappings.put(space("A"), space("Y"));
+        SpaceReferenceTrie trie = new SpaceReferenceTrie(mappings);
+
+        assertEquals(document(WEB_HOME, "Y"), trie.replaceMatchingSpace(document(WEB_HOME, "A")));
+        assertNull(trie.replaceMatchingSpace(document(WEB_HOME, "B")));
+    }
+}